@@ -14,4 +14,12 @@ public class ClientTradingRequest implements Serializable {
     private String instrument;
     private String action;
     private int amount;
+    private String clOrdId;     // optional, echoed in the response
+
+    public ClientTradingRequest(String target,
+                                String instrument,
+                                String action,
+                                int amount) {
+        this(target, instrument, action, amount, null);
+    }
 }
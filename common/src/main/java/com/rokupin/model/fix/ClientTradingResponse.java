@@ -5,6 +5,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
 
+import java.util.Map;
+
 @AllArgsConstructor
 @NoArgsConstructor
 @ToString
@@ -16,6 +18,9 @@ public class ClientTradingResponse {
     private String ordStatus;
     private String rejectionReason;
     private int amount;
+    private String clOrdId;
+    private boolean late; // answers an order that was rejected as timed out
+    private Map<String, Long> latencyMicros; // per hop, if order was stamped
 
     public ClientTradingResponse(FixResponse fix) throws FixMessageMisconfiguredException {
         this.sender = fix.getSender();
@@ -38,5 +43,10 @@ public class ClientTradingResponse {
         };
         if (fix.getRejectionReason() != FixResponse.UNSPECIFIED)
             this.rejectionReason = fix.getDescription();
+        this.clOrdId = fix.getClOrdId();
+        this.late = fix.isUnsolicited();
+        Map<String, Long> latencies = fix.getTimestamps().hopLatencies();
+        if (!latencies.isEmpty())
+            this.latencyMicros = latencies;
     }
 }
@@ -0,0 +1,83 @@
+package com.rokupin.model.fix;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Sent by broker on each of its router connections, once router assigned
+ * the connection an ID. Connections logged on with the same name are
+ * treated by router as a single broker.
+ */
+@NoArgsConstructor
+@Data
+public class FixLogon extends FixMessage {
+    public static final String MSG_LOGON = "A";
+
+    private String msgType;     // MsgType (35)
+    private String sender;      // SenderCompID (49)
+    private String target;      // TargetCompID (56)
+    private String username;    // Username (553) - name of the broker
+
+    public FixLogon(String sender,
+                    String target,
+                    String username) throws FixMessageMisconfiguredException {
+        if (Objects.nonNull(sender) && Objects.nonNull(target) && Objects.nonNull(username)) {
+            this.msgType = MSG_LOGON;
+            this.sender = sender;
+            this.target = target;
+            this.username = username;
+        } else {
+            throw new FixMessageMisconfiguredException("Sender, target and username can't be null.");
+        }
+    }
+
+    @Override
+    protected void parseFields(Map<Integer, String> fixFields) throws FixMessageMisconfiguredException {
+        this.msgType = getRequiredField(fixFields, TAG_MSG_TYPE);
+        this.sender = getRequiredField(fixFields, TAG_SOURCE_COMP_ID);
+        this.target = getRequiredField(fixFields, TAG_TARGET_COMP_ID);
+        this.username = getRequiredField(fixFields, TAG_USERNAME);
+    }
+
+    @Override
+    protected void appendFields(StringBuilder fixMessage) throws FixMessageMisconfiguredException {
+        appendTag(fixMessage, TAG_MSG_TYPE, msgType);
+        appendTag(fixMessage, TAG_SOURCE_COMP_ID, sender);
+        appendTag(fixMessage, TAG_TARGET_COMP_ID, target);
+        appendTag(fixMessage, TAG_USERNAME, username);
+    }
+
+    @Override
+    protected void validateFields() throws FixMessageMisconfiguredException {
+        if (!msgType.equals(MSG_LOGON))
+            throw new FixMessageMisconfiguredException(
+                    "'message type' [MsgType (35)] for this type of message is " +
+                            "expected to be 'A'. Provided: '" + msgType + "'");
+        if (username.isBlank())
+            throw new FixMessageMisconfiguredException(
+                    "'username' [Username (553)] can't be blank");
+    }
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FixLogon that)) return false;
+
+        return msgType.equals(that.msgType) &&
+                sender.equals(that.sender) &&
+                target.equals(that.target) &&
+                username.equals(that.username);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = msgType.hashCode();
+        result = 31 * result + sender.hashCode();
+        result = 31 * result + target.hashCode();
+        result = 31 * result + username.hashCode();
+        return result;
+    }
+}
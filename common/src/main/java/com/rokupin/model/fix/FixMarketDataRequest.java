@@ -0,0 +1,144 @@
+package com.rokupin.model.fix;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Subscribes the sender to stock state of given exchanges and instruments
+ * only, or drops such a subscription. Instead of NoRelatedSym repeating
+ * groups exchanges and instruments are comma-separated lists, an empty
+ * list stands for all of them.
+ */
+@NoArgsConstructor
+@Data
+public class FixMarketDataRequest extends FixMessage {
+    public static final String MSG_MARKET_DATA_REQUEST = "V";
+    public static final int SUBSCRIBE = 1;      // Snapshot + Updates
+    public static final int UNSUBSCRIBE = 2;    // Disable previous Snapshot + Update Request
+
+    private static final String LIST_SEPARATOR = ",";
+
+    private String msgType;                 // MsgType (35)
+    private String sender;                  // SenderCompID (49)
+    private String target;                  // TargetCompID (56)
+    private String mdReqId;                 // MDReqID (262)
+    private int subscriptionRequestType;    // SubscriptionRequestType (263)
+    private List<String> exchanges;         // SecurityExchange (207)
+    private List<String> instruments;       // Symbol (55)
+
+    public FixMarketDataRequest(String sender,
+                                String target,
+                                String mdReqId,
+                                int subscriptionRequestType,
+                                List<String> exchanges,
+                                List<String> instruments) throws FixMessageMisconfiguredException {
+        if (Objects.isNull(sender) || Objects.isNull(target) || Objects.isNull(mdReqId))
+            throw new FixMessageMisconfiguredException("No fields can be null.");
+
+        this.msgType = MSG_MARKET_DATA_REQUEST;
+        this.sender = sender;
+        this.target = target;
+        this.mdReqId = mdReqId;
+        this.subscriptionRequestType = subscriptionRequestType;
+        this.exchanges = Objects.isNull(exchanges) ? List.of() : List.copyOf(exchanges);
+        this.instruments = Objects.isNull(instruments) ? List.of() : List.copyOf(instruments);
+        validateFields();
+    }
+
+    @Override
+    protected void parseFields(Map<Integer, String> fixFields) throws FixMessageMisconfiguredException {
+        this.msgType = getRequiredField(fixFields, TAG_MSG_TYPE);
+        this.sender = getRequiredField(fixFields, TAG_SOURCE_COMP_ID);
+        this.target = getRequiredField(fixFields, TAG_TARGET_COMP_ID);
+        this.mdReqId = getRequiredField(fixFields, TAG_MD_REQ_ID);
+        this.exchanges = parseList(fixFields.get(TAG_SECURITY_EXCHANGE));
+        this.instruments = parseList(fixFields.get(TAG_SYMBOL));
+        try {
+            this.subscriptionRequestType = Integer.parseInt(
+                    getRequiredField(fixFields, TAG_SUBSCRIPTION_REQUEST_TYPE));
+        } catch (NumberFormatException e) {
+            throw new FixMessageMisconfiguredException(
+                    "SubscriptionRequestType (263) should be a number");
+        }
+    }
+
+    @Override
+    protected void appendFields(StringBuilder fixMessage) throws FixMessageMisconfiguredException {
+        appendTag(fixMessage, TAG_MSG_TYPE, msgType);
+        appendTag(fixMessage, TAG_SOURCE_COMP_ID, sender);
+        appendTag(fixMessage, TAG_TARGET_COMP_ID, target);
+        appendTag(fixMessage, TAG_MD_REQ_ID, mdReqId);
+        appendTag(fixMessage, TAG_SUBSCRIPTION_REQUEST_TYPE, String.valueOf(subscriptionRequestType));
+        if (!exchanges.isEmpty())
+            appendTag(fixMessage, TAG_SECURITY_EXCHANGE, String.join(LIST_SEPARATOR, exchanges));
+        if (!instruments.isEmpty())
+            appendTag(fixMessage, TAG_SYMBOL, String.join(LIST_SEPARATOR, instruments));
+    }
+
+    @Override
+    protected void validateFields() throws FixMessageMisconfiguredException {
+        if (!msgType.equals(MSG_MARKET_DATA_REQUEST))
+            throw new FixMessageMisconfiguredException(
+                    "'message type' [MsgType (35)] for this type of message is " +
+                            "expected to be 'V'. Provided: '" + msgType + "'");
+        if (subscriptionRequestType != SUBSCRIBE && subscriptionRequestType != UNSUBSCRIBE)
+            throw new FixMessageMisconfiguredException(
+                    "SubscriptionRequestType (263) should be 1 (Subscribe) or " +
+                            "2 (Unsubscribe). Provided: '" + subscriptionRequestType + "'");
+        for (String name : exchanges)
+            validateListItem(TAG_SECURITY_EXCHANGE, name);
+        for (String name : instruments)
+            validateListItem(TAG_SYMBOL, name);
+    }
+
+    public boolean isSubscribe() {
+        return subscriptionRequestType == SUBSCRIBE;
+    }
+
+    private static List<String> parseList(String value) {
+        if (Objects.isNull(value) || value.isEmpty())
+            return List.of();
+        return Arrays.stream(value.split(LIST_SEPARATOR))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .toList();
+    }
+
+    private static void validateListItem(int tag, String name) throws FixMessageMisconfiguredException {
+        if (Objects.isNull(name) || name.isBlank() || name.contains(LIST_SEPARATOR) ||
+                name.indexOf('\u0001') >= 0)
+            throw new FixMessageMisconfiguredException(
+                    "Tag " + tag + " holds malformed name: '" + name + "'");
+    }
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FixMarketDataRequest that)) return false;
+
+        return subscriptionRequestType == that.subscriptionRequestType &&
+                msgType.equals(that.msgType) &&
+                sender.equals(that.sender) &&
+                target.equals(that.target) &&
+                mdReqId.equals(that.mdReqId) &&
+                exchanges.equals(that.exchanges) &&
+                instruments.equals(that.instruments);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = msgType.hashCode();
+        result = 31 * result + sender.hashCode();
+        result = 31 * result + target.hashCode();
+        result = 31 * result + mdReqId.hashCode();
+        result = 31 * result + subscriptionRequestType;
+        result = 31 * result + exchanges.hashCode();
+        result = 31 * result + instruments.hashCode();
+        return result;
+    }
+}
@@ -12,6 +12,7 @@ public abstract class FixMessage implements Serializable {
     public static final int TAG_BEGIN_STRING = 8;
     public static final int TAG_BODY_LENGTH = 9;
     public static final int TAG_CHECKSUM = 10;
+    public static final int TAG_CL_ORD_ID = 11;
     public static final int TAG_MSG_TYPE = 35;
     public static final int TAG_ORDER_QTY = 38;
     public static final int TAG_SOURCE_COMP_ID = 49;
@@ -22,6 +23,15 @@ public abstract class FixMessage implements Serializable {
     public static final int TAG_TARGET_SUB_ID = 57;
     public static final int TAG_TEXT = 58;
     public static final int TAG_ORD_REJ_REASON = 103;
+    public static final int TAG_TEST_REQ_ID = 112;
+    public static final int TAG_ON_BEHALF_OF_COMP_ID = 115;
+    public static final int TAG_SECURITY_EXCHANGE = 207;
+    public static final int TAG_UNSOLICITED_INDICATOR = 325;
+    public static final int TAG_SECONDARY_CL_ORD_ID = 526;
+    public static final int TAG_MD_REQ_ID = 262;
+    public static final int TAG_SUBSCRIPTION_REQUEST_TYPE = 263;
+    public static final int TAG_USERNAME = 553;
+    public static final int MAX_CL_ORD_ID_LENGTH = 64;
 
     public static <T extends FixMessage> T fromFix(String fixMessage, T message) throws FixMessageMisconfiguredException {
         Map<Integer, String> fixFields = Arrays.stream(fixMessage.split("\u0001"))
@@ -47,6 +57,13 @@ public abstract class FixMessage implements Serializable {
         return message;
     }
 
+    /**
+     * Cheap check of the message type, without parsing the message
+     */
+    public static boolean isOfType(String fixMessage, String msgType) {
+        return fixMessage.contains("\u0001" + TAG_MSG_TYPE + "=" + msgType + "\u0001");
+    }
+
     protected static String getRequiredField(Map<Integer, String> fields,
                                              int tag) throws FixMessageMisconfiguredException {
         return Optional.ofNullable(fields.get(tag))
@@ -83,6 +100,16 @@ public abstract class FixMessage implements Serializable {
         stringBuilder.append(tag).append("=").append(value).append("\u0001");
     }
 
+    protected static void validateClOrdId(String clOrdId) throws FixMessageMisconfiguredException {
+        if (Objects.isNull(clOrdId))
+            return;
+        if (clOrdId.isEmpty() || clOrdId.length() > MAX_CL_ORD_ID_LENGTH ||
+                clOrdId.indexOf('\u0001') >= 0)
+            throw new FixMessageMisconfiguredException(
+                    "ClOrdID (11) should be 1 to " + MAX_CL_ORD_ID_LENGTH +
+                            " characters long. Provided: '" + clOrdId + "'");
+    }
+
     protected int getSide(String action) throws FixMessageMisconfiguredException {
         return switch (action) {
             case "buy" -> 1;
@@ -12,6 +12,8 @@ import java.util.Objects;
 public class FixRequest extends FixMessage {
     public static final int SIDE_BUY = 1;
     public static final int SIDE_SELL = 2;
+    // router picks the exchange for the order
+    public static final String TARGET_ANY = "*";
 
     private static final String MSG_TYPE_NEW_ORDER = "D";
 
@@ -22,6 +24,9 @@ public class FixRequest extends FixMessage {
     private String instrument;  // Symbol (55)
     private int action;         // Side (54) - 1 = Buy, 2 = Sell
     private int amount;         // OrderQty (38)
+    private String clOrdId;     // ClOrdID (11) - optional, set by client
+    private String trackingId;  // SecondaryClOrdID (526) - set by router, echoed by exchange
+    private HopTimestamps timestamps = new HopTimestamps();
 
     public FixRequest(String sender,
                       String senderSubId,
@@ -55,6 +60,7 @@ public class FixRequest extends FixMessage {
             this.instrument = clientMsg.getInstrument();
             this.action = getSide(clientMsg.getAction());
             this.amount = clientMsg.getAmount();
+            this.clOrdId = clientMsg.getClOrdId();
             validateFields();
         } else {
             throw new FixMessageMisconfiguredException("No fields of JSON clientMsg can be null.");
@@ -70,6 +76,9 @@ public class FixRequest extends FixMessage {
         this.instrument = getRequiredField(fixFields, TAG_SYMBOL);
         this.action = Integer.parseInt(getRequiredField(fixFields, TAG_SIDE));
         this.amount = Integer.parseInt(getRequiredField(fixFields, TAG_ORDER_QTY));
+        this.clOrdId = fixFields.get(TAG_CL_ORD_ID);
+        this.trackingId = fixFields.get(TAG_SECONDARY_CL_ORD_ID);
+        this.timestamps.parseFields(fixFields);
         validateFields();
     }
 
@@ -82,6 +91,11 @@ public class FixRequest extends FixMessage {
         appendTag(fixMessage, TAG_SIDE, String.valueOf(action));
         appendTag(fixMessage, TAG_ORDER_QTY, String.valueOf(amount));
         appendTag(fixMessage, TAG_TARGET_COMP_ID, String.valueOf(target));
+        if (Objects.nonNull(clOrdId))
+            appendTag(fixMessage, TAG_CL_ORD_ID, clOrdId);
+        if (Objects.nonNull(trackingId))
+            appendTag(fixMessage, TAG_SECONDARY_CL_ORD_ID, trackingId);
+        timestamps.appendFields(fixMessage);
     }
 
     @Override
@@ -99,6 +113,7 @@ public class FixRequest extends FixMessage {
             throw new FixMessageMisconfiguredException(
                     "'message type' [MsgType (35)] for this type of message is " +
                             "expected to be 'D'. Provided: '" + msgType + "'");
+        validateClOrdId(clOrdId);
     }
 
     @Override
@@ -112,6 +127,7 @@ public class FixRequest extends FixMessage {
                 Objects.equals(sender, request.sender) &&
                 Objects.equals(senderSubId, request.senderSubId) &&
                 Objects.equals(target, request.target) &&
+                Objects.equals(clOrdId, request.clOrdId) &&
                 instrument.equals(request.instrument);
     }
 
@@ -124,6 +140,7 @@ public class FixRequest extends FixMessage {
         result = 31 * result + instrument.hashCode();
         result = 31 * result + action;
         result = 31 * result + amount;
+        result = 31 * result + Objects.hashCode(clOrdId);
         return result;
     }
 }
@@ -22,6 +22,9 @@ public class FixResponse extends FixMessage {
     public static final int TOO_MUCH = 6;
     public static final int SEND_FAILED = 7;
     public static final int DB_TIMED_OUT = 8;
+    public static final int THROTTLED = 9;
+    public static final int EXCHANGE_TIMED_OUT = 10;
+    private static final int MAX_REJECTION_REASON = EXCHANGE_TIMED_OUT;
     private static final int TAG_EXEC_ID = 17;
     private static final int TAG_LAST_PX = 31;
     private static final int TAG_LAST_SHARES = 32;
@@ -36,6 +39,10 @@ public class FixResponse extends FixMessage {
     private int amount;             // OrderQty (38)
     private int ordStatus;          // OrdStatus (39) - 0 = New, 2 = Filled, 8 = Rejected
     private int rejectionReason;    // OrdRejReason (103)
+    private String clOrdId;         // ClOrdID (11)         >> echoed from request
+    private String trackingId;      // SecondaryClOrdID (526) >> echoed from request, router-internal
+    private boolean unsolicited;    // UnsolicitedIndicator (325) >> order was already rejected as timed out
+    private HopTimestamps timestamps = new HopTimestamps();
 
     public FixResponse(String sender,
                        String target,
@@ -66,7 +73,7 @@ public class FixResponse extends FixMessage {
 
     public static FixResponse autoGenerateResponseOnFail(FixRequest request,
                                                          int reason) throws FixMessageMisconfiguredException {
-        return new FixResponse(
+        FixResponse response = new FixResponse(
                 request.getTarget(),
                 request.getSender(),
                 request.getSenderSubId(),
@@ -76,6 +83,18 @@ public class FixResponse extends FixMessage {
                 FixResponse.MSG_ORD_REJECTED,
                 reason
         );
+        response.echoRequest(request);
+        return response;
+    }
+
+    /**
+     * Copies client order ID, router's tracking ID and hop timestamps of
+     * the request being answered
+     */
+    public void echoRequest(FixRequest request) {
+        this.clOrdId = request.getClOrdId();
+        this.trackingId = request.getTrackingId();
+        this.timestamps = new HopTimestamps(request.getTimestamps());
     }
 
     @Override
@@ -91,6 +110,10 @@ public class FixResponse extends FixMessage {
         this.rejectionReason = 0;
         if (fixFields.containsKey(TAG_ORD_REJ_REASON))
             this.rejectionReason = Integer.parseInt(fixFields.get(TAG_ORD_REJ_REASON));
+        this.clOrdId = fixFields.get(TAG_CL_ORD_ID);
+        this.trackingId = fixFields.get(TAG_SECONDARY_CL_ORD_ID);
+        this.unsolicited = "Y".equals(fixFields.get(TAG_UNSOLICITED_INDICATOR));
+        this.timestamps.parseFields(fixFields);
         validateFields();
     }
 
@@ -106,6 +129,13 @@ public class FixResponse extends FixMessage {
         appendTag(fixMessage, TAG_ORD_STATUS, String.valueOf(ordStatus));
         if (rejectionReason > 0)
             appendTag(fixMessage, TAG_ORD_REJ_REASON, String.valueOf(rejectionReason));
+        if (Objects.nonNull(clOrdId))
+            appendTag(fixMessage, TAG_CL_ORD_ID, clOrdId);
+        if (Objects.nonNull(trackingId))
+            appendTag(fixMessage, TAG_SECONDARY_CL_ORD_ID, trackingId);
+        if (unsolicited)
+            appendTag(fixMessage, TAG_UNSOLICITED_INDICATOR, "Y");
+        timestamps.appendFields(fixMessage);
     }
 
     @Override
@@ -123,15 +153,17 @@ public class FixResponse extends FixMessage {
                     "OrdStatus (39) should be 0 (New), 2 (Filled) or 8 (Rejected)." +
                             " Provided: '" + ordStatus + "'");
 
-        if (rejectionReason < 0 || rejectionReason > 8)
+        if (rejectionReason < 0 || rejectionReason > MAX_REJECTION_REASON)
             throw new FixMessageMisconfiguredException(
-                    "OrdRejReason (103) should be >= 0 and <= 8 Provided: '" +
+                    "OrdRejReason (103) should be >= 0 and <= " +
+                            MAX_REJECTION_REASON + " Provided: '" +
                             rejectionReason + "'");
 
         if (!msgType.equals(MSG_EXECUTION_REPORT))
             throw new FixMessageMisconfiguredException(
                     "'message type' [MsgType (35)] for this type of message is " +
                             "expected to be '8'. Provided: '" + msgType + "'");
+        validateClOrdId(clOrdId);
     }
 
     public String getDescription() {
@@ -148,6 +180,10 @@ public class FixResponse extends FixMessage {
             case SEND_FAILED -> "Target service can't be reached. Retry later.";
             case DB_TIMED_OUT ->
                     "Due to high demand on server your order was not processed. You can retry now.";
+            case THROTTLED ->
+                    "Order rate limit of your broker is exceeded. Retry later.";
+            case EXCHANGE_TIMED_OUT ->
+                    "Target exchange didn't answer in time. Order may still be executed, check the stock state before retrying.";
             default -> "Reason unknown";
         };
     }
@@ -165,6 +201,7 @@ public class FixResponse extends FixMessage {
                 Objects.equals(sender, that.sender) &&
                 Objects.equals(target, that.target) &&
                 Objects.equals(targetSubId, that.targetSubId) &&
+                Objects.equals(clOrdId, that.clOrdId) &&
                 Objects.equals(instrument, that.instrument);
     }
 
@@ -179,6 +216,7 @@ public class FixResponse extends FixMessage {
         result = 31 * result + amount;
         result = 31 * result + ordStatus;
         result = 31 * result + rejectionReason;
+        result = 31 * result + Objects.hashCode(clOrdId);
         return result;
     }
 }
\ No newline at end of file
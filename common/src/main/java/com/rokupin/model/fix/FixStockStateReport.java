@@ -5,6 +5,7 @@ import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
 import java.util.Map;
+import java.util.Objects;
 
 @EqualsAndHashCode(callSuper = true)
 @NoArgsConstructor
@@ -17,6 +18,7 @@ public class FixStockStateReport extends FixMessage {
     private String sender;      // SenderCompID (49)
     private String target;      // TargetCompID (56)
     private String stockJson;   // Text (58)
+    private String group;       // OnBehalfOfCompID (115) - optional, logical exchange ID
 
     public FixStockStateReport(String sender, String stockJson) {
         this.msgType = MSG_STOCK_REPORT;
@@ -24,17 +26,29 @@ public class FixStockStateReport extends FixMessage {
         this.stockJson = stockJson;
     }
 
+    /**
+     * @param group logical exchange, on behalf of which the sender trades
+     *              together with other exchanges of the same group
+     */
+    public FixStockStateReport(String sender, String group, String stockJson) {
+        this(sender, stockJson);
+        this.group = Objects.isNull(group) || group.isBlank() ? null : group;
+    }
+
     @Override
     protected void parseFields(Map<Integer, String> fixFields) throws FixMessageMisconfiguredException {
         this.msgType = getRequiredField(fixFields, TAG_MSG_TYPE);
         this.sender = getRequiredField(fixFields, TAG_SOURCE_COMP_ID);
         this.stockJson = getRequiredField(fixFields, TAG_TEXT);
+        this.group = fixFields.get(TAG_ON_BEHALF_OF_COMP_ID);
     }
 
     @Override
     protected void appendFields(StringBuilder fixMessage) throws FixMessageMisconfiguredException {
         appendTag(fixMessage, TAG_MSG_TYPE, MSG_STOCK_REPORT);
         appendTag(fixMessage, TAG_SOURCE_COMP_ID, sender);
+        if (Objects.nonNull(group))
+            appendTag(fixMessage, TAG_ON_BEHALF_OF_COMP_ID, group);
         appendTag(fixMessage, TAG_TEXT, stockJson);
     }
 
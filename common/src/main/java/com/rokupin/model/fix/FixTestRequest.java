@@ -0,0 +1,78 @@
+package com.rokupin.model.fix;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+import java.util.Objects;
+
+@NoArgsConstructor
+@Data
+public class FixTestRequest extends FixMessage {
+    // Forces the peer to answer with a Heartbeat, carrying the same TestReqID
+    public static final String MSG_TEST_REQUEST = "1";
+
+    private String msgType;     // MsgType (35)
+    private String sender;      // SenderCompID (49)
+    private String target;      // TargetCompID (56)
+    private String testReqId;   // TestReqID (112)
+
+    public FixTestRequest(String sender,
+                          String target,
+                          String testReqId) throws FixMessageMisconfiguredException {
+        if (Objects.nonNull(sender) &&
+                Objects.nonNull(target) &&
+                Objects.nonNull(testReqId)) {
+            this.msgType = MSG_TEST_REQUEST;
+            this.sender = sender;
+            this.target = target;
+            this.testReqId = testReqId;
+        } else {
+            throw new FixMessageMisconfiguredException("No fields can be null.");
+        }
+    }
+
+    @Override
+    protected void parseFields(Map<Integer, String> fixFields) throws FixMessageMisconfiguredException {
+        this.msgType = getRequiredField(fixFields, TAG_MSG_TYPE);
+        this.sender = getRequiredField(fixFields, TAG_SOURCE_COMP_ID);
+        this.target = getRequiredField(fixFields, TAG_TARGET_COMP_ID);
+        this.testReqId = getRequiredField(fixFields, TAG_TEST_REQ_ID);
+    }
+
+    @Override
+    protected void appendFields(StringBuilder fixMessage) throws FixMessageMisconfiguredException {
+        appendTag(fixMessage, TAG_MSG_TYPE, msgType);
+        appendTag(fixMessage, TAG_SOURCE_COMP_ID, sender);
+        appendTag(fixMessage, TAG_TARGET_COMP_ID, target);
+        appendTag(fixMessage, TAG_TEST_REQ_ID, testReqId);
+    }
+
+    @Override
+    protected void validateFields() throws FixMessageMisconfiguredException {
+        if (!msgType.equals(MSG_TEST_REQUEST))
+            throw new FixMessageMisconfiguredException(
+                    "'message type' [MsgType (35)] for this type of message is " +
+                            "expected to be '1'. Provided: '" + msgType + "'");
+    }
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FixTestRequest that)) return false;
+
+        return msgType.equals(that.msgType) &&
+                sender.equals(that.sender) &&
+                target.equals(that.target) &&
+                testReqId.equals(that.testReqId);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = msgType.hashCode();
+        result = 31 * result + sender.hashCode();
+        result = 31 * result + target.hashCode();
+        result = 31 * result + testReqId.hashCode();
+        return result;
+    }
+}
@@ -0,0 +1,107 @@
+package com.rokupin.model.fix;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Times (epoch microseconds) at which an order passed each hop on its way
+ * broker -> router -> exchange and back. Every service stamps its own hops,
+ * exchange copies request stamps to the response. 0 means "not stamped".
+ * Per-hop latencies between different hosts are only as accurate as
+ * their clocks are synchronized, round trip is measured by broker alone.
+ */
+@Data
+@NoArgsConstructor
+public class HopTimestamps implements Serializable {
+    public static final int TAG_BROKER_OUT_TIME = 9001;
+    public static final int TAG_ROUTER_IN_TIME = 9002;
+    public static final int TAG_EXCHANGE_IN_TIME = 9003;
+    public static final int TAG_EXCHANGE_OUT_TIME = 9004;
+    public static final int TAG_ROUTER_OUT_TIME = 9005;
+
+    private long brokerOut;     // (9001) order sent by broker
+    private long routerIn;      // (9002) order received by router
+    private long exchangeIn;    // (9003) order received by exchange
+    private long exchangeOut;   // (9004) response sent by exchange
+    private long routerOut;     // (9005) response forwarded by router
+    private long brokerIn;      // response received by broker, never sent
+
+    public HopTimestamps(HopTimestamps other) {
+        this.brokerOut = other.brokerOut;
+        this.routerIn = other.routerIn;
+        this.exchangeIn = other.exchangeIn;
+        this.exchangeOut = other.exchangeOut;
+        this.routerOut = other.routerOut;
+        this.brokerIn = other.brokerIn;
+    }
+
+    public static long nowMicros() {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now());
+    }
+
+    void parseFields(Map<Integer, String> fixFields) throws FixMessageMisconfiguredException {
+        brokerOut = parseTimestamp(fixFields, TAG_BROKER_OUT_TIME);
+        routerIn = parseTimestamp(fixFields, TAG_ROUTER_IN_TIME);
+        exchangeIn = parseTimestamp(fixFields, TAG_EXCHANGE_IN_TIME);
+        exchangeOut = parseTimestamp(fixFields, TAG_EXCHANGE_OUT_TIME);
+        routerOut = parseTimestamp(fixFields, TAG_ROUTER_OUT_TIME);
+    }
+
+    void appendFields(StringBuilder fixMessage) {
+        appendTimestamp(fixMessage, TAG_BROKER_OUT_TIME, brokerOut);
+        appendTimestamp(fixMessage, TAG_ROUTER_IN_TIME, routerIn);
+        appendTimestamp(fixMessage, TAG_EXCHANGE_IN_TIME, exchangeIn);
+        appendTimestamp(fixMessage, TAG_EXCHANGE_OUT_TIME, exchangeOut);
+        appendTimestamp(fixMessage, TAG_ROUTER_OUT_TIME, routerOut);
+    }
+
+    /**
+     * @return latency of each hop, for which both ends are stamped, in
+     * microseconds. Empty if the order wasn't stamped by broker.
+     */
+    public Map<String, Long> hopLatencies() {
+        Map<String, Long> latencies = new LinkedHashMap<>();
+
+        if (brokerOut == 0)
+            return latencies;
+        putLatency(latencies, "brokerToRouter", brokerOut, routerIn);
+        putLatency(latencies, "routerToExchange", routerIn, exchangeIn);
+        putLatency(latencies, "exchange", exchangeIn, exchangeOut);
+        putLatency(latencies, "exchangeToRouter", exchangeOut, routerOut);
+        putLatency(latencies, "routerToBroker", routerOut, brokerIn);
+        putLatency(latencies, "roundTrip", brokerOut, brokerIn);
+        return latencies;
+    }
+
+    private static void putLatency(Map<String, Long> latencies,
+                                   String hop, long from, long to) {
+        if (from > 0 && to > 0)
+            latencies.put(hop, Math.max(0, to - from));
+    }
+
+    private static long parseTimestamp(Map<Integer, String> fixFields,
+                                       int tag) throws FixMessageMisconfiguredException {
+        String value = fixFields.get(tag);
+
+        if (value == null)
+            return 0;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new FixMessageMisconfiguredException(
+                    "Timestamp (" + tag + ") should be a number of " +
+                            "microseconds. Provided: '" + value + "'");
+        }
+    }
+
+    private static void appendTimestamp(StringBuilder fixMessage, int tag, long value) {
+        if (value > 0)
+            fixMessage.append(tag).append("=").append(value).append("\u0001");
+    }
+}
@@ -0,0 +1,40 @@
+package com.rokupin.throttling;
+
+/**
+ * Allows bursts of up to {@code burst} orders, refilled at a constant rate.
+ * Used for order rate limits both by brokers and by router.
+ */
+public class TokenBucket {
+    private final double tokensPerNano;
+    private final double capacity;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double ratePerSecond, int burst, long nowNanos) {
+        this.tokensPerNano = ratePerSecond / 1_000_000_000d;
+        this.capacity = burst;
+        this.tokens = burst;
+        this.lastRefill = nowNanos;
+    }
+
+    public synchronized boolean tryConsume(int permits, long nowNanos) {
+        refill(nowNanos);
+        if (tokens >= permits) {
+            tokens -= permits;
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized void refund(int permits) {
+        tokens = Math.min(capacity, tokens + permits);
+    }
+
+    private void refill(long nowNanos) {
+        long elapsed = nowNanos - lastRefill;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+            lastRefill = nowNanos;
+        }
+    }
+}
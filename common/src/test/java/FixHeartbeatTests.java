@@ -0,0 +1,39 @@
+import com.rokupin.model.fix.FixHeartbeat;
+import com.rokupin.model.fix.FixMessage;
+import com.rokupin.model.fix.FixMessageMisconfiguredException;
+import com.rokupin.model.fix.FixTestRequest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class FixHeartbeatTests {
+    @Test
+    public void fixHeartbeatAnswersTestRequestTest() throws FixMessageMisconfiguredException {
+        FixTestRequest request = new FixTestRequest("R0000", "B00000", "42");
+        String requestFix = request.asFix();
+
+        Assertions.assertTrue(FixMessage.isOfType(requestFix, FixTestRequest.MSG_TEST_REQUEST));
+        Assertions.assertFalse(FixMessage.isOfType(requestFix, FixHeartbeat.MSG_HEARTBEAT));
+
+        FixTestRequest received = FixMessage.fromFix(requestFix, new FixTestRequest());
+        String heartbeatFix = FixHeartbeat.answer(received, "B00000").asFix();
+        FixHeartbeat heartbeat = FixMessage.fromFix(heartbeatFix, new FixHeartbeat());
+
+        Assertions.assertTrue(FixMessage.isOfType(heartbeatFix, FixHeartbeat.MSG_HEARTBEAT));
+        Assertions.assertEquals("B00000", heartbeat.getSender());
+        Assertions.assertEquals("R0000", heartbeat.getTarget());
+        Assertions.assertEquals("42", heartbeat.getTestReqId());
+    }
+
+    @Test
+    public void fixTestRequestWithoutIdTest() {
+        String invalidFix = FixMessage.TAG_BEGIN_STRING + "=FIX.5.0" + "\u0001" +
+                FixMessage.TAG_BODY_LENGTH + "=" + "26" + "\u0001" +
+                FixMessage.TAG_MSG_TYPE + "=1" + "\u0001" +
+                FixMessage.TAG_SOURCE_COMP_ID + "=R0000" + "\u0001" +
+                FixMessage.TAG_TARGET_COMP_ID + "=B00000" + "\u0001" +
+                FixMessage.TAG_CHECKSUM + "=000" + "\u0001";
+
+        Assertions.assertThrows(FixMessageMisconfiguredException.class,
+                () -> FixMessage.fromFix(invalidFix, new FixTestRequest()));
+    }
+}
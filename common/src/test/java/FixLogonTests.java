@@ -0,0 +1,34 @@
+import com.rokupin.model.fix.FixLogon;
+import com.rokupin.model.fix.FixMessage;
+import com.rokupin.model.fix.FixMessageMisconfiguredException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class FixLogonTests {
+    @Test
+    public void fixLogonRoundTripTest() throws FixMessageMisconfiguredException {
+        String fix = new FixLogon("B00001", "R0000", "broker-1").asFix();
+
+        Assertions.assertTrue(FixMessage.isOfType(fix, FixLogon.MSG_LOGON));
+
+        FixLogon logon = FixMessage.fromFix(fix, new FixLogon());
+        Assertions.assertEquals("B00001", logon.getSender());
+        Assertions.assertEquals("R0000", logon.getTarget());
+        Assertions.assertEquals("broker-1", logon.getUsername());
+    }
+
+    @Test
+    public void fixLogonWithoutUsernameTest() {
+        String invalidFix = FixMessage.TAG_BEGIN_STRING + "=FIX.5.0" + "\u0001" +
+                FixMessage.TAG_BODY_LENGTH + "=" + "26" + "\u0001" +
+                FixMessage.TAG_MSG_TYPE + "=A" + "\u0001" +
+                FixMessage.TAG_SOURCE_COMP_ID + "=B00001" + "\u0001" +
+                FixMessage.TAG_TARGET_COMP_ID + "=R0000" + "\u0001" +
+                FixMessage.TAG_CHECKSUM + "=000" + "\u0001";
+
+        Assertions.assertThrows(FixMessageMisconfiguredException.class,
+                () -> FixMessage.fromFix(invalidFix, new FixLogon()));
+        Assertions.assertThrows(FixMessageMisconfiguredException.class,
+                () -> new FixLogon("B00001", "R0000", null));
+    }
+}
@@ -0,0 +1,44 @@
+import com.rokupin.model.fix.FixMarketDataRequest;
+import com.rokupin.model.fix.FixMessage;
+import com.rokupin.model.fix.FixMessageMisconfiguredException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class FixMarketDataRequestTests {
+    @Test
+    public void fixMarketDataRequestRoundTripTest() throws FixMessageMisconfiguredException {
+        FixMarketDataRequest request = new FixMarketDataRequest("B00000", "R0000", "1",
+                FixMarketDataRequest.SUBSCRIBE, List.of("E00000", "E00001"), List.of("TEST1"));
+        String fix = request.asFix();
+
+        Assertions.assertTrue(FixMessage.isOfType(fix, FixMarketDataRequest.MSG_MARKET_DATA_REQUEST));
+
+        FixMarketDataRequest received = FixMessage.fromFix(fix, new FixMarketDataRequest());
+        Assertions.assertEquals(request, received);
+        Assertions.assertTrue(received.isSubscribe());
+        Assertions.assertEquals(List.of("E00000", "E00001"), received.getExchanges());
+        Assertions.assertEquals(List.of("TEST1"), received.getInstruments());
+    }
+
+    @Test
+    public void fixMarketDataRequestWithoutListsTest() throws FixMessageMisconfiguredException {
+        String fix = new FixMarketDataRequest("B00000", "R0000", "1",
+                FixMarketDataRequest.UNSUBSCRIBE, null, null).asFix();
+        FixMarketDataRequest received = FixMessage.fromFix(fix, new FixMarketDataRequest());
+
+        Assertions.assertFalse(received.isSubscribe());
+        Assertions.assertTrue(received.getExchanges().isEmpty());
+        Assertions.assertTrue(received.getInstruments().isEmpty());
+    }
+
+    @Test
+    public void fixMarketDataRequestInvalidTypeTest() {
+        Assertions.assertThrows(FixMessageMisconfiguredException.class,
+                () -> new FixMarketDataRequest("B00000", "R0000", "1", 0, null, null));
+        Assertions.assertThrows(FixMessageMisconfiguredException.class,
+                () -> new FixMarketDataRequest("B00000", "R0000", "1",
+                        FixMarketDataRequest.SUBSCRIBE, List.of("E0,E1"), null));
+    }
+}
@@ -83,4 +83,27 @@ public class FixRequestPositiveTests {
         String fix = request.asFix();
         Assertions.assertEquals(fix, expected);
     }
+
+    @Test
+    public void fixRequestClOrdIdAndTimestampsRoundTripTest() throws FixMessageMisconfiguredException {
+        FixRequest request = new FixRequest(new ClientTradingRequest(
+                "E00000",
+                "TEST",
+                "buy",
+                1,
+                "order-1"
+        ));
+        request.setSender("B00000");
+        request.setSenderSubId("0");
+        request.getTimestamps().setBrokerOut(1_000);
+        request.getTimestamps().setRouterIn(1_250);
+
+        FixRequest parsed = FixMessage.fromFix(request.asFix(), new FixRequest());
+
+        Assertions.assertEquals("order-1", parsed.getClOrdId());
+        Assertions.assertEquals(1_000, parsed.getTimestamps().getBrokerOut());
+        Assertions.assertEquals(1_250, parsed.getTimestamps().getRouterIn());
+        Assertions.assertEquals(0, parsed.getTimestamps().getExchangeIn());
+        Assertions.assertEquals(request, parsed);
+    }
 }
@@ -73,4 +73,77 @@ public class FixResponsePositiveTests {
         Assertions.assertEquals(clientTradingResponse.getRejectionReason(),
                 "Target exchange doesn't operate with requested instrument");
     }
+
+    @Test
+    public void fixResponseEchoesRequestTest() throws FixMessageMisconfiguredException {
+        FixRequest request = new FixRequest(
+                "B00000",
+                "0",
+                "E00000",
+                "TEST",
+                FixRequest.SIDE_BUY,
+                1
+        );
+        request.setClOrdId("order-1");
+        request.getTimestamps().setBrokerOut(1_000);
+        request.getTimestamps().setRouterIn(1_250);
+        request.getTimestamps().setExchangeIn(1_500);
+
+        FixResponse response = FixResponse.autoGenerateResponseOnFail(
+                request, FixResponse.INSTRUMENT_NOT_SUPPORTED);
+        response.getTimestamps().setExchangeOut(1_600);
+        response.getTimestamps().setRouterOut(1_900);
+
+        FixResponse parsed = FixMessage.fromFix(response.asFix(), new FixResponse());
+        parsed.getTimestamps().setBrokerIn(2_000);
+        ClientTradingResponse clientResponse = new ClientTradingResponse(parsed);
+
+        Assertions.assertEquals("order-1", clientResponse.getClOrdId());
+        Assertions.assertEquals(250L, clientResponse.getLatencyMicros().get("brokerToRouter"));
+        Assertions.assertEquals(100L, clientResponse.getLatencyMicros().get("exchange"));
+        Assertions.assertEquals(100L, clientResponse.getLatencyMicros().get("routerToBroker"));
+        Assertions.assertEquals(1_000L, clientResponse.getLatencyMicros().get("roundTrip"));
+    }
+
+    @Test
+    public void fixResponseThrottledFromFixTest() throws FixMessageMisconfiguredException {
+        FixRequest request = new FixRequest(
+                "B00000",
+                "0",
+                "E00000",
+                "TEST",
+                FixRequest.SIDE_SELL,
+                5
+        );
+        FixResponse response = FixResponse.autoGenerateResponseOnFail(
+                request, FixResponse.THROTTLED);
+
+        FixResponse parsed = FixMessage.fromFix(response.asFix(), new FixResponse());
+
+        Assertions.assertEquals(FixResponse.THROTTLED, parsed.getRejectionReason());
+        Assertions.assertEquals(response, parsed);
+    }
+
+    @Test
+    public void fixResponseEchoesTrackingIdAndMarksLateTest() throws FixMessageMisconfiguredException {
+        FixRequest request = new FixRequest("B00001", "1", "E00000", "TEST1", FixRequest.SIDE_BUY, 1);
+        request.setTrackingId("r-42");
+        FixRequest received = FixMessage.fromFix(request.asFix(), new FixRequest());
+
+        FixResponse response = FixResponse.autoGenerateResponseOnFail(
+                received, FixResponse.EXCHANGE_LACKS_REQUESTED_AMOUNT);
+        response.setUnsolicited(true);
+        FixResponse parsed = FixMessage.fromFix(response.asFix(), new FixResponse());
+
+        Assertions.assertEquals("r-42", received.getTrackingId());
+        Assertions.assertEquals("r-42", parsed.getTrackingId());
+        Assertions.assertTrue(parsed.isUnsolicited());
+        Assertions.assertTrue(new ClientTradingResponse(parsed).isLate());
+
+        parsed.setTrackingId(null);
+        parsed.setUnsolicited(false);
+        FixResponse plain = FixMessage.fromFix(parsed.asFix(), new FixResponse());
+        Assertions.assertNull(plain.getTrackingId());
+        Assertions.assertFalse(plain.isUnsolicited());
+    }
 }
@@ -105,4 +105,21 @@ public class FixStockStateReportTests {
         Assertions.assertTrue(exception.getMessage().contains("Missing required tag: 10")); // TAG_CHECKSUM
     }
 
+    @Test
+    public void fixStockStateReportWithGroupTest() throws FixMessageMisconfiguredException {
+        String expected = FixMessage.TAG_BEGIN_STRING + "=FIX.5.0" + "\u0001" +
+                FixMessage.TAG_BODY_LENGTH + "=" + "41" + "\u0001" +
+                FixMessage.TAG_MSG_TYPE + "=U2" + "\u0001" +
+                FixMessage.TAG_SOURCE_COMP_ID + "=E00001" + "\u0001" +
+                FixMessage.TAG_ON_BEHALF_OF_COMP_ID + "=NYSE" + "\u0001" +
+                FixMessage.TAG_TEXT + "={\"AAPL\":100}" + "\u0001" +
+                FixMessage.TAG_CHECKSUM + "=242" + "\u0001";
+
+        FixStockStateReport report = new FixStockStateReport("E00001", "NYSE", "{\"AAPL\":100}");
+        Assertions.assertEquals(expected, report.asFix());
+
+        FixStockStateReport parsed = FixMessage.fromFix(expected, new FixStockStateReport());
+        Assertions.assertEquals("E00001", parsed.getSender());
+        Assertions.assertEquals("NYSE", parsed.getGroup());
+    }
 }
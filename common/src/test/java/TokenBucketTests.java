@@ -0,0 +1,34 @@
+import com.rokupin.throttling.TokenBucket;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TokenBucketTests {
+    @Test
+    public void tokenBucketAllowsBurstThenRefillsTest() {
+        TokenBucket bucket = new TokenBucket(10, 3, 0);
+
+        Assertions.assertTrue(bucket.tryConsume(3, 0));
+        Assertions.assertFalse(bucket.tryConsume(1, 0));
+        // 10 tokens per second - one every 100 ms
+        Assertions.assertTrue(bucket.tryConsume(1, 100_000_000L));
+        Assertions.assertFalse(bucket.tryConsume(1, 100_000_000L));
+    }
+
+    @Test
+    public void tokenBucketNeverExceedsBurstTest() {
+        TokenBucket bucket = new TokenBucket(10, 2, 0);
+
+        Assertions.assertFalse(bucket.tryConsume(3, 10_000_000_000L));
+        Assertions.assertTrue(bucket.tryConsume(2, 10_000_000_000L));
+    }
+
+    @Test
+    public void tokenBucketRefundTest() {
+        TokenBucket bucket = new TokenBucket(0.001, 2, 0);
+
+        Assertions.assertTrue(bucket.tryConsume(2, 0));
+        bucket.refund(5);
+        Assertions.assertTrue(bucket.tryConsume(2, 0));
+        Assertions.assertFalse(bucket.tryConsume(1, 0));
+    }
+}
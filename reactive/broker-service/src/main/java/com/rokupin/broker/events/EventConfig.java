@@ -1,7 +1,9 @@
 package com.rokupin.broker.events;
 
+import com.rokupin.broker.model.FixRequestBatch;
 import com.rokupin.broker.model.StocksStateMessage;
 import com.rokupin.model.fix.FixMessage;
+import com.rokupin.model.fix.FixRequest;
 import com.rokupin.model.fix.FixResponse;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
@@ -33,9 +35,16 @@ public class EventConfig {
         return new InputEventPublisher<>(executor);
     }
 
+    // orders of different clients are taken in turns
     @Bean
     public Consumer<FluxSink<BrokerEvent<FixMessage>>> tradeRequestEventPublisher(
             @Qualifier("eventPublisherExecutor") Executor executor) {
-        return new InputEventPublisher<>(executor);
+        return new FairInputEventPublisher<>(executor, source -> {
+            if (source instanceof FixRequest request)
+                return request.getSenderSubId();
+            if (source instanceof FixRequestBatch batch)
+                return batch.getClientId();
+            return "";
+        });
     }
 }
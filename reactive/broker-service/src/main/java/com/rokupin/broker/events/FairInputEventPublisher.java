@@ -0,0 +1,78 @@
+package com.rokupin.broker.events;
+
+import org.springframework.context.ApplicationListener;
+import org.springframework.util.ReflectionUtils;
+import reactor.core.publisher.FluxSink;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Same as InputEventPublisher, but instead of a single FIFO keeps a queue
+ * per key (client session) and drains them round-robin, one event per
+ * turn. A client that floods the broker only delays its own events.
+ */
+@SuppressWarnings("rawtypes")
+public class FairInputEventPublisher<E extends BrokerEvent> implements
+        ApplicationListener<E>, Consumer<FluxSink<E>> {
+
+    private final Executor executor;
+    private final Function<Object, String> keyExtractor;
+
+    // key has an entry here as long as it has events waiting
+    private final Map<String, Queue<E>> queues = new HashMap<>();
+    // each key with waiting events appears here exactly once
+    private final BlockingQueue<String> turns = new LinkedBlockingQueue<>();
+
+    /**
+     * @param keyExtractor maps event source to the key events are grouped by
+     */
+    public FairInputEventPublisher(Executor executor,
+                                   Function<Object, String> keyExtractor) {
+        this.executor = executor;
+        this.keyExtractor = keyExtractor;
+    }
+
+    @Override
+    public void onApplicationEvent(E event) {
+        String key = keyExtractor.apply(event.getSource());
+
+        synchronized (queues) {
+            Queue<E> queue = queues.computeIfAbsent(key, k -> new ArrayDeque<>());
+            queue.add(event);
+            if (queue.size() == 1)
+                turns.offer(key);
+        }
+    }
+
+    @Override
+    public void accept(FluxSink<E> sink) {
+        this.executor.execute(() -> {
+            while (true)
+                try {
+                    String key = turns.take();
+                    E event;
+
+                    synchronized (queues) {
+                        Queue<E> queue = queues.get(key);
+                        event = queue.poll();
+                        if (queue.isEmpty()) {
+                            queues.remove(key);
+                        } else {
+                            turns.offer(key);
+                        }
+                    }
+                    sink.next(event);
+                } catch (InterruptedException e) {
+                    ReflectionUtils.rethrowRuntimeException(e);
+                }
+        });
+    }
+}
@@ -0,0 +1,17 @@
+package com.rokupin.broker.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class BatchCommunicationReport implements Serializable {
+    private int accepted;
+    // aligned with the submitted orders, null if the order was accepted
+    private List<String> reasons;
+}
@@ -0,0 +1,33 @@
+package com.rokupin.broker.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Client's request to get only a part of the stock state, or to stop
+ * getting some part of it, e.g.
+ * {@code {"subscribe":{"exchanges":["E00000"],"instruments":["TEST1"]}}}.
+ * Empty or missing list stands for all exchanges (instruments).
+ * {@code {"snapshot":true}} only asks for the current state, e.g. after
+ * client missed some changes.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class ClientSubscriptionRequest implements Serializable {
+    private Selection subscribe;
+    private Selection unsubscribe;
+    private boolean snapshot;
+
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Data
+    public static class Selection implements Serializable {
+        private List<String> exchanges;
+        private List<String> instruments;
+    }
+}
@@ -0,0 +1,22 @@
+package com.rokupin.broker.model;
+
+import com.rokupin.model.fix.FixRequest;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Orders submitted by a single client in one WebSocket frame. Travels
+ * through the broker as a single event and is written to the router
+ * in a single TCP write.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class FixRequestBatch implements Serializable {
+    private String clientId;
+    private List<FixRequest> requests;
+}
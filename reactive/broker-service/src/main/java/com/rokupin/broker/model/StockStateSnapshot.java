@@ -0,0 +1,69 @@
+package com.rokupin.broker.model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable version of the stock state. A new snapshot is built for each
+ * change and swapped in atomically, so readers always get a consistent
+ * view without copying. Per-exchange maps that didn't change are shared
+ * with the previous version.
+ */
+@Getter
+public final class StockStateSnapshot {
+    public static final StockStateSnapshot EMPTY = new StockStateSnapshot(0, Map.of());
+
+    private final long version;
+    // StockId : {Instrument : AmountAvailable}
+    private final Map<String, Map<String, Integer>> stocks;
+    private volatile String json;
+
+    private StockStateSnapshot(long version, Map<String, Map<String, Integer>> stocks) {
+        this.version = version;
+        this.stocks = stocks;
+    }
+
+    /**
+     * @return snapshot holding the received state, or this one if nothing
+     * has changed since the last received state
+     */
+    public StockStateSnapshot apply(Map<String, Map<String, Integer>> received) {
+        Map<String, Map<String, Integer>> next = new HashMap<>(received.size());
+        boolean changed = version == 0 || received.size() != stocks.size();
+
+        for (Map.Entry<String, Map<String, Integer>> entry : received.entrySet()) {
+            Map<String, Integer> previous = stocks.get(entry.getKey());
+            if (entry.getValue().equals(previous)) {
+                next.put(entry.getKey(), previous);
+            } else {
+                next.put(entry.getKey(), Map.copyOf(entry.getValue()));
+                changed = true;
+            }
+        }
+        return changed ? new StockStateSnapshot(version + 1, Map.copyOf(next)) : this;
+    }
+
+    public StockStateSnapshot without(String stockId) {
+        if (!stocks.containsKey(stockId))
+            return this;
+        Map<String, Map<String, Integer>> next = new HashMap<>(stocks);
+        next.remove(stockId);
+        return new StockStateSnapshot(version + 1, Map.copyOf(next));
+    }
+
+    /**
+     * Serialized at most once per version.
+     */
+    public String toJson(ObjectMapper objectMapper) throws JsonProcessingException {
+        String cached = json;
+        if (cached == null) {
+            cached = objectMapper.writeValueAsString(new StocksStateMessage(stocks, version));
+            json = cached;
+        }
+        return cached;
+    }
+}
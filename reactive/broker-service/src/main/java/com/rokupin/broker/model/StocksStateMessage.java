@@ -13,6 +13,7 @@ import java.util.Objects;
 @Data
 public class StocksStateMessage implements Serializable {
     private Map<String, Map<String, Integer>> stocks;
+    private long version;
 
     @Override
     public boolean equals(Object o) {
@@ -20,11 +21,11 @@ public class StocksStateMessage implements Serializable {
         if (o == null || getClass() != o.getClass()) return false;
 
         StocksStateMessage that = (StocksStateMessage) o;
-        return Objects.equals(stocks, that.stocks);
+        return version == that.version && Objects.equals(stocks, that.stocks);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(stocks);
+        return 31 * Objects.hashCode(stocks) + Long.hashCode(version);
     }
 }
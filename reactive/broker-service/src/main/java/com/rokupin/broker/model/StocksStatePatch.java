@@ -0,0 +1,24 @@
+package com.rokupin.broker.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * Changes of the stock state since version {@code base}, in JSON merge
+ * patch form: amounts are new values, null removes an instrument (or a
+ * whole exchange). Client holding version in [base, version) applies it,
+ * client holding a version older than base has missed some changes and
+ * should ask for a snapshot.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class StocksStatePatch implements Serializable {
+    private long version;
+    private long base;
+    private Map<String, Map<String, Integer>> patch;
+}
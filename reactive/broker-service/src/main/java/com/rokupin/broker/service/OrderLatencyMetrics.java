@@ -0,0 +1,38 @@
+package com.rokupin.broker.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Histograms of per-hop order latencies, taken from timestamps of the
+ * trading responses.
+ */
+public class OrderLatencyMetrics {
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> timers;
+
+    public OrderLatencyMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.timers = new ConcurrentHashMap<>();
+    }
+
+    public void record(Map<String, Long> latencyMicros) {
+        latencyMicros.forEach((hop, micros) ->
+                timers.computeIfAbsent(hop, this::makeTimer)
+                        .record(micros, TimeUnit.MICROSECONDS));
+    }
+
+    private Timer makeTimer(String hop) {
+        return Timer.builder("broker.order.latency")
+                .tag("hop", hop)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(10_000))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(meterRegistry);
+    }
+}
@@ -1,16 +1,27 @@
 package com.rokupin.broker.service;
 
+import com.rokupin.broker.model.StockStateSnapshot;
 import com.rokupin.model.fix.ClientTradingRequest;
 
+import java.util.List;
+
 public interface TradingService {
     void handleMessageFromRouter(String message);
 
     String handleMessageFromClient(ClientTradingRequest clientMsg,
                                    String clientId);
 
+    List<String> handleMessagesFromClient(List<ClientTradingRequest> clientMsgs,
+                                          String clientId);
+
     String getAssignedId();
 
     void setAssignedId(String id);
 
     String getState();
+
+    /**
+     * @return current stock state, without asking router for it
+     */
+    StockStateSnapshot getSnapshot();
 }
\ No newline at end of file
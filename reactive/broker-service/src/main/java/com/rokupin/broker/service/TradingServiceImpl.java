@@ -4,17 +4,22 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rokupin.broker.events.BrokerEvent;
+import com.rokupin.broker.model.FixRequestBatch;
+import com.rokupin.broker.model.StockStateSnapshot;
 import com.rokupin.broker.model.StocksStateMessage;
 import com.rokupin.model.fix.*;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
 @Service
@@ -28,15 +33,17 @@ public class TradingServiceImpl implements TradingService {
 
     private final ObjectMapper objectMapper;
     private final ApplicationEventPublisher publisher;
-    // StockId : {Instrument : AmountAvailable}
-    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Integer>> currentStockState;
+    private final AtomicReference<StockStateSnapshot> currentStockState;
+    private final OrderLatencyMetrics latencyMetrics;
 
     public TradingServiceImpl(ApplicationEventPublisher publisher,
-                              ObjectMapper objectMapper) {
+                              ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry) {
         this.assignedId = "not assigned";
         this.publisher = publisher;
         this.objectMapper = objectMapper;
-        this.currentStockState = new ConcurrentHashMap<>();
+        this.currentStockState = new AtomicReference<>(StockStateSnapshot.EMPTY);
+        this.latencyMetrics = new OrderLatencyMetrics(meterRegistry);
     }
 
     @Override
@@ -53,6 +60,8 @@ public class TradingServiceImpl implements TradingService {
             try { // received trading response
                 FixResponse response =
                         FixMessage.fromFix(message, new FixResponse());
+                response.getTimestamps().setBrokerIn(HopTimestamps.nowMicros());
+                latencyMetrics.record(response.getTimestamps().hopLatencies());
                 updateStateOnResponse(response);
             } catch (FixMessageMisconfiguredException ex) {
                 try { // received follow-up update
@@ -68,31 +77,30 @@ public class TradingServiceImpl implements TradingService {
 
     private void updateState(String stock) {
         try {
-            ConcurrentHashMap<String, ConcurrentHashMap<String, Integer>> state =
+            Map<String, Map<String, Integer>> state =
                     objectMapper.readValue(stock, new TypeReference<>() {
                     });
-            currentStockState.clear();
-
-            state.forEach((stockId, stockState) -> {
-                if (currentStockState.containsKey(stockId)) {
-                    currentStockState.replace(stockId, stockState);
-                } else {
-                    currentStockState.put(stockId,
-                            new ConcurrentHashMap<>(stockState));
-                }
-            });
+            StockStateSnapshot previous = currentStockState.get();
+            StockStateSnapshot updated =
+                    currentStockState.updateAndGet(current -> current.apply(state));
 
-            publishCurrentStockState();
+            if (updated != previous) {
+                publishCurrentStockState(updated);
+            } else {
+                log.debug("Trading service: received stock state is unchanged");
+            }
         } catch (JsonProcessingException e) {
             log.warn("Trading service: received stock state JSON parsing failed");
         }
     }
 
     private void updateStateOnResponse(FixResponse response) {
-        if (response.getRejectionReason() == FixResponse.EXCHANGE_IS_NOT_AVAILABLE &&
-                currentStockState.containsKey(response.getSender())) {
-            currentStockState.remove(response.getSender());
-            publishCurrentStockState();
+        if (response.getRejectionReason() == FixResponse.EXCHANGE_IS_NOT_AVAILABLE) {
+            StockStateSnapshot previous = currentStockState.get();
+            StockStateSnapshot updated = currentStockState.updateAndGet(
+                    current -> current.without(response.getSender()));
+            if (updated != previous)
+                publishCurrentStockState(updated);
         }
         publisher.publishEvent(new BrokerEvent<>(response));
     }
@@ -101,10 +109,7 @@ public class TradingServiceImpl implements TradingService {
     public String handleMessageFromClient(ClientTradingRequest clientMsg,
                                           String clientId) {
         try {
-            FixRequest request = new FixRequest(clientMsg);
-            request.setSender(assignedId);
-            request.setSenderSubId(clientId);
-            publisher.publishEvent(new BrokerEvent<>(request));
+            publisher.publishEvent(new BrokerEvent<>(toFixRequest(clientMsg, clientId)));
             return "";
         } catch (FixMessageMisconfiguredException e) {
             log.warn("WSHandler [{}]: Fix Request creation failed: {}",
@@ -114,10 +119,49 @@ public class TradingServiceImpl implements TradingService {
         }
     }
 
+    @Override
+    public List<String> handleMessagesFromClient(List<ClientTradingRequest> clientMsgs,
+                                                 String clientId) {
+        List<FixRequest> requests = new ArrayList<>(clientMsgs.size());
+        List<String> reports = new ArrayList<>(clientMsgs.size());
+
+        for (ClientTradingRequest clientMsg : clientMsgs) {
+            try {
+                requests.add(toFixRequest(clientMsg, clientId));
+                reports.add("");
+            } catch (FixMessageMisconfiguredException e) {
+                log.warn("WSHandler [{}]: Fix Request creation failed: {}",
+                        clientId, e.toString());
+                reports.add("Provided input can't be converted to the " +
+                        "Fix Request because " + e);
+            }
+        }
+        if (!requests.isEmpty())
+            publisher.publishEvent(new BrokerEvent<>(
+                    new FixRequestBatch(clientId, requests)));
+        return reports;
+    }
+
+    /**
+     * Builds the request and renders it once, so that an order reported as
+     * accepted can't fail later on its way to router
+     */
+    private FixRequest toFixRequest(ClientTradingRequest clientMsg,
+                                    String clientId) throws FixMessageMisconfiguredException {
+        if (Objects.isNull(clientMsg))
+            throw new FixMessageMisconfiguredException("Order is missing.");
+
+        FixRequest request = new FixRequest(clientMsg);
+        request.setSender(assignedId);
+        request.setSenderSubId(clientId);
+        request.asFix();
+        return request;
+    }
+
     @Override
     public String getState() {
         BrokerEvent<FixStateUpdateRequest> event = null;
-        if (currentStockState.isEmpty() && Objects.nonNull(routerId)) {
+        if (currentStockState.get().getStocks().isEmpty() && Objects.nonNull(routerId)) {
             event = new BrokerEvent<>(
                     new FixStateUpdateRequest(assignedId, routerId));
         } else if (Objects.isNull(routerId)) {
@@ -129,18 +173,21 @@ public class TradingServiceImpl implements TradingService {
         return serializeCurrentState();
     }
 
-    private void publishCurrentStockState() {
+    @Override
+    public StockStateSnapshot getSnapshot() {
+        return currentStockState.get();
+    }
+
+    private void publishCurrentStockState(StockStateSnapshot snapshot) {
         publisher.publishEvent(new BrokerEvent<>(
-                new StocksStateMessage(
-                        Map.copyOf(currentStockState))));
-        log.debug("Trading service: published stock update event");
+                new StocksStateMessage(snapshot.getStocks(), snapshot.getVersion())));
+        log.debug("Trading service: published stock update event, version {}",
+                snapshot.getVersion());
     }
 
     private String serializeCurrentState() {
         try {
-            return objectMapper.writeValueAsString(
-                    new StocksStateMessage(
-                            Map.copyOf(currentStockState)));
+            return currentStockState.get().toJson(objectMapper);
         } catch (JsonProcessingException e) {
             throw new IllegalStateException("Trading service: failed to serialize currentStockState");
         }
@@ -2,29 +2,66 @@ package com.rokupin.broker.tcp;
 
 import com.rokupin.broker.events.BrokerEvent;
 import com.rokupin.broker.service.TradingService;
-import com.rokupin.broker.tcp.service.TcpConfigurer;
+import com.rokupin.broker.tcp.service.MarketDataInterest;
 import com.rokupin.broker.tcp.service.TcpHandlerImpl;
+import com.rokupin.fix.transport.ShmOptions;
+import com.rokupin.fix.transport.SocketOptions;
+import com.rokupin.fix.transport.TransportProfile;
+import com.rokupin.fix.transport.shm.WaitStrategy;
 import com.rokupin.model.fix.FixMessage;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import reactor.core.publisher.FluxSink;
 
+import java.time.Duration;
+import java.util.UUID;
 import java.util.function.Consumer;
 
 @Configuration
 public class TcpConfig {
+    // all router connections share one loop group, separate from WebSocket's
+    @Bean(destroyMethod = "dispose")
+    TransportProfile routerTransport(@Value("${tcp.transport.native}") boolean nativeTransport,
+                                     @Value("${tcp.transport.threads}") int threads,
+                                     @Value("${tcp.transport.unix-socket}") String unixSocket,
+                                     @Value("${tcp.transport.socket.no-delay}") boolean noDelay,
+                                     @Value("${tcp.transport.socket.keep-alive}") boolean keepAlive,
+                                     @Value("${tcp.transport.socket.send-buffer}") int sendBuffer,
+                                     @Value("${tcp.transport.socket.receive-buffer}") int receiveBuffer,
+                                     @Value("${tcp.transport.shm.dir}") String shmDir,
+                                     @Value("${tcp.transport.shm.ring-size}") int ringSize,
+                                     @Value("${tcp.transport.shm.wait-strategy}") String waitStrategy) {
+        return new TransportProfile("broker-router", nativeTransport, threads,
+                new SocketOptions(noDelay, keepAlive, sendBuffer, receiveBuffer, 0, 0),
+                unixSocket,
+                new ShmOptions(shmDir, ringSize, WaitStrategy.of(waitStrategy)));
+    }
+
     @Bean
-    TcpConfigurer tcpHandler(
+    TcpHandlerImpl tcpHandler(
             @Qualifier("tradeRequestEventPublisher")
             Consumer<FluxSink<BrokerEvent<FixMessage>>> consumer,
             @Qualifier("tcpConnectivityProviderImpl")
             ConnectivityProvider connectivityProvider,
             @Value("${tcp.host}") String host,
             @Value("${tcp.port}") int port,
-            TradingService tradingService
+            @Value("${tcp.connections}") int connections,
+            @Value("${tcp.broker-name}") String brokerName,
+            @Value("${tcp.buffer.capacity}") int bufferCapacity,
+            @Value("${tcp.buffer.ttl}") Duration bufferTtl,
+            @Value("${tcp.market-data.exchanges}") String exchanges,
+            @Value("${tcp.market-data.instruments}") String instruments,
+            TradingService tradingService,
+            MeterRegistry meterRegistry
     ) {
-        return new TcpHandlerImpl(host, port, consumer, connectivityProvider, tradingService);
+        // links of an unnamed broker are still told apart from other brokers' links
+        String name = brokerName.isBlank() ? "broker-" + UUID.randomUUID() : brokerName.trim();
+        return new TcpHandlerImpl(host, port, connections, name,
+                bufferCapacity, bufferTtl,
+                MarketDataInterest.of(exchanges, instruments),
+                consumer, connectivityProvider, tradingService, meterRegistry);
     }
 }
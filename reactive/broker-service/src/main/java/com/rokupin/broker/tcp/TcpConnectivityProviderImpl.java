@@ -1,9 +1,11 @@
 package com.rokupin.broker.tcp;
 
 import com.rokupin.broker.tcp.service.TcpConfigurer;
+import com.rokupin.fix.transport.TransportProfile;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
 import reactor.netty.tcp.TcpClient;
 import reactor.util.retry.Retry;
 
@@ -12,14 +14,23 @@ import java.time.Duration;
 @Slf4j
 @Component
 public class TcpConnectivityProviderImpl implements ConnectivityProvider {
+    private final TransportProfile transport;
+
+    public TcpConnectivityProviderImpl(TransportProfile routerTransport) {
+        this.transport = routerTransport;
+    }
+
     @Override
     public void connect(TcpConfigurer service, String host, int port) {
-        TcpClient.create()
-                .host(host)
-                .port(port)
-                .doOnConnected(service::configureConnection)
-                .connect()
-                .retryWhen(retrySpec())
+        Mono<? extends Connection> connect = transport.isSharedMemory() ?
+                transport.shmClient()
+                        .doOnConnected(service::configureConnection)
+                        .connect() :
+                transport.configure(TcpClient.create(), host, port)
+                        .doOnConnected(service::configureConnection)
+                        .connect();
+
+        connect.retryWhen(retrySpec())
                 .doOnError(service::handleNotConnected)
                 .doOnSuccess(service::handleConnected)
                 .onErrorResume(e -> {
@@ -0,0 +1,54 @@
+package com.rokupin.broker.tcp.service;
+
+import com.rokupin.model.fix.FixMarketDataRequest;
+import com.rokupin.model.fix.FixMessageMisconfiguredException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Exchanges and instruments the broker needs the stock state of. If any
+ * are set, each router link subscribes to them as soon as router assigns
+ * it an ID, and router only sends that part of the state afterwards.
+ * Empty list stands for all exchanges (instruments).
+ */
+public record MarketDataInterest(List<String> exchanges, List<String> instruments) {
+    public static final String MD_REQ_ID = "state";
+
+    public MarketDataInterest {
+        exchanges = List.copyOf(exchanges);
+        instruments = List.copyOf(instruments);
+    }
+
+    /**
+     * @param exchanges   comma-separated exchange IDs
+     * @param instruments comma-separated instrument symbols
+     */
+    public static MarketDataInterest of(String exchanges, String instruments) {
+        return new MarketDataInterest(split(exchanges), split(instruments));
+    }
+
+    /**
+     * @return whether the whole state is needed, so there's nothing to subscribe to
+     */
+    public boolean isEverything() {
+        return exchanges.isEmpty() && instruments.isEmpty();
+    }
+
+    public FixMarketDataRequest subscription(String sender,
+                                             String routerId) throws FixMessageMisconfiguredException {
+        return new FixMarketDataRequest(sender, routerId, MD_REQ_ID,
+                FixMarketDataRequest.SUBSCRIBE, exchanges, instruments);
+    }
+
+    private static List<String> split(String names) {
+        if (Objects.isNull(names) || names.isBlank())
+            return List.of();
+        return Arrays.stream(names.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .distinct()
+                .toList();
+    }
+}
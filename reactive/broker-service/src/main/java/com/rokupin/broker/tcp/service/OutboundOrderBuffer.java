@@ -0,0 +1,78 @@
+package com.rokupin.broker.tcp.service;
+
+import com.rokupin.model.fix.FixRequest;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Bounded FIFO of orders that can't be sent right now, each with its own
+ * deadline. Not thread-safe, access is guarded by the owning RouterLink.
+ */
+public class OutboundOrderBuffer {
+    private final int capacity;
+    private final long ttlNanos;
+    private final Deque<PendingOrder> pending;
+
+    public OutboundOrderBuffer(int capacity, long ttlNanos) {
+        this.capacity = capacity;
+        this.ttlNanos = ttlNanos;
+        this.pending = new ArrayDeque<>();
+    }
+
+    /**
+     * @return false if buffer is full
+     */
+    public boolean offer(FixRequest request, long nowNanos) {
+        if (pending.size() >= capacity)
+            return false;
+        pending.addLast(new PendingOrder(request, nowNanos + ttlNanos));
+        return true;
+    }
+
+    /**
+     * Puts orders back in front of the buffer, keeping their deadlines.
+     */
+    public void restore(List<PendingOrder> orders) {
+        for (int i = orders.size() - 1; i >= 0; i--)
+            pending.addFirst(orders.get(i));
+    }
+
+    /**
+     * Empties the buffer, splitting orders in still valid and expired ones.
+     */
+    public void drain(long nowNanos, List<PendingOrder> live, List<FixRequest> expired) {
+        PendingOrder order;
+        while ((order = pending.pollFirst()) != null) {
+            if (order.deadline() - nowNanos < 0) {
+                expired.add(order.request());
+            } else {
+                live.add(order);
+            }
+        }
+    }
+
+    /**
+     * Orders share the same TTL and are kept in arrival order, so expired
+     * ones are always at the head of the buffer.
+     */
+    public void expire(long nowNanos, List<FixRequest> expired) {
+        PendingOrder order;
+        while ((order = pending.peekFirst()) != null &&
+                order.deadline() - nowNanos < 0) {
+            expired.add(pending.pollFirst().request());
+        }
+    }
+
+    public boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    public record PendingOrder(FixRequest request, long deadline) {
+    }
+}
@@ -0,0 +1,349 @@
+package com.rokupin.broker.tcp.service;
+
+import com.rokupin.broker.service.TradingService;
+import com.rokupin.broker.tcp.ConnectivityProvider;
+import com.rokupin.fix.FixMessageProcessor;
+import com.rokupin.model.fix.*;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.netty.Connection;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One of the TCP connections from broker to router. Every link has its own
+ * assigned ID, which should be used as a sender of the messages sent over
+ * it. Once welcomed, the link logs on with the broker's name, so router
+ * treats all links of the broker as a single broker.
+ * <p>
+ * Orders that can't be sent because the link is down or has no ID yet are
+ * kept in the bounded buffer and replayed in order, as soon as router
+ * welcomes the link. Orders that outlive their deadline are rejected.
+ */
+@Slf4j
+public class RouterLink implements TcpConfigurer {
+    private static final String MSG_TYPE_ID_ASSIGNATION_WITH_STOCKS =
+            "\u0001" + FixMessage.TAG_MSG_TYPE + "=U3\u0001";
+
+    @Getter
+    private final int index;
+    private final String host;
+    private final int port;
+    private final String brokerName;
+    private final TradingService tradingService;
+    private final ConnectivityProvider connectivityProvider;
+
+    private final AtomicBoolean connectionInProgress;
+    private final Sinks.Many<String> toRouterSink;
+    private final OutboundOrderBuffer buffer;
+    private final MarketDataInterest interest;
+    private final Counter expiredCounter;
+    private final Counter overflowCounter;
+    private final Counter replayedCounter;
+    private volatile Connection connection;
+    private volatile String assignedId;
+    private FixMessageProcessor routerInputProcessor;
+
+    public RouterLink(int index,
+                      String host,
+                      int port,
+                      String brokerName,
+                      OutboundOrderBuffer buffer,
+                      MarketDataInterest interest,
+                      ConnectivityProvider connectivityProvider,
+                      TradingService tradingService,
+                      MeterRegistry meterRegistry) {
+        this.toRouterSink = Sinks.many().multicast().directAllOrNothing();
+        this.buffer = buffer;
+        this.interest = interest;
+        this.connectionInProgress = new AtomicBoolean(false);
+        this.connectivityProvider = connectivityProvider;
+        this.tradingService = tradingService;
+        this.index = index;
+        this.host = host;
+        this.port = port;
+        this.brokerName = brokerName;
+
+        String link = String.valueOf(index);
+        Gauge.builder("broker.outbound.buffer.size", this, RouterLink::bufferedOrders)
+                .tag("link", link)
+                .register(meterRegistry);
+        this.expiredCounter = Counter.builder("broker.outbound.buffer.expired")
+                .tag("link", link)
+                .register(meterRegistry);
+        this.overflowCounter = Counter.builder("broker.outbound.buffer.overflow")
+                .tag("link", link)
+                .register(meterRegistry);
+        this.replayedCounter = Counter.builder("broker.outbound.buffer.replayed")
+                .tag("link", link)
+                .register(meterRegistry);
+    }
+
+    public void startConnection() {
+        if (Objects.isNull(connection) &&
+                connectionInProgress.compareAndSet(false, true)) {
+            connectivityProvider.connect(this, host, port);
+        }
+    }
+
+    public boolean isConnected() {
+        return Objects.nonNull(connection);
+    }
+
+    public boolean isConnectionInProgress() {
+        return connectionInProgress.get();
+    }
+
+    /**
+     * @return ID assigned to this link by router or, if welcome message
+     * wasn't received yet, the last ID known to the trading service
+     */
+    public String getAssignedId() {
+        String id = assignedId;
+        return Objects.nonNull(id) ? id : tradingService.getAssignedId();
+    }
+
+    /**
+     * Link is ready when it is connected and router has assigned it an ID
+     */
+    public boolean isReady() {
+        return Objects.nonNull(connection) && Objects.nonNull(assignedId);
+    }
+
+    public boolean send(String fix) {
+        return toRouterSink.tryEmitNext(fix).isSuccess();
+    }
+
+    /**
+     * Sends orders right away if the link is ready and nothing is waiting
+     * before them, otherwise adds them to the buffer.
+     */
+    public void submit(List<FixRequest> requests) {
+        List<FixRequest> rejected = new ArrayList<>();
+        long now = System.nanoTime();
+
+        synchronized (buffer) {
+            if (!isReady() || !buffer.isEmpty() || !sendOrders(requests)) {
+                for (FixRequest request : requests) {
+                    if (!buffer.offer(request, now))
+                        rejected.add(request);
+                }
+            }
+        }
+        if (!rejected.isEmpty()) {
+            log.warn("TCPHandler [{}]: outbound buffer is full, {} orders rejected",
+                    index, rejected.size());
+            overflowCounter.increment(rejected.size());
+            rejected.forEach(this::rejectNotSent);
+        }
+        if (!isConnected())
+            startConnection();
+    }
+
+    /**
+     * Rejects buffered orders which deadline has passed.
+     */
+    public void expirePending() {
+        List<FixRequest> expired = new ArrayList<>();
+
+        synchronized (buffer) {
+            buffer.expire(System.nanoTime(), expired);
+        }
+        rejectExpired(expired);
+    }
+
+    public int bufferedOrders() {
+        synchronized (buffer) {
+            return buffer.size();
+        }
+    }
+
+    private void replayPending() {
+        List<OutboundOrderBuffer.PendingOrder> live = new ArrayList<>();
+        List<FixRequest> expired = new ArrayList<>();
+
+        synchronized (buffer) {
+            buffer.drain(System.nanoTime(), live, expired);
+            if (!live.isEmpty()) {
+                List<FixRequest> requests = live.stream()
+                        .map(OutboundOrderBuffer.PendingOrder::request)
+                        .toList();
+                if (sendOrders(requests)) {
+                    log.info("TCPHandler [{}]: replayed {} buffered orders",
+                            index, requests.size());
+                    replayedCounter.increment(requests.size());
+                } else {
+                    buffer.restore(live);
+                }
+            }
+        }
+        rejectExpired(expired);
+    }
+
+    // all frames go out in a single write
+    private boolean sendOrders(List<FixRequest> requests) {
+        String id = assignedId;
+        StringBuilder frames = new StringBuilder();
+        long sentAt = HopTimestamps.nowMicros();
+
+        for (FixRequest request : requests) {
+            request.setSender(id);
+            request.getTimestamps().setBrokerOut(sentAt);
+            try {
+                frames.append(request.asFix());
+            } catch (FixMessageMisconfiguredException e) {
+                log.warn("TCPHandler [{}]: Order '{}' dropped: {}",
+                        index, request.getClOrdId(), e.getMessage());
+            }
+        }
+        log.debug("TCPHandler [{}]: Publishing {} fix messages", index, requests.size());
+        return frames.isEmpty() || send(frames.toString());
+    }
+
+    private void rejectExpired(List<FixRequest> expired) {
+        if (!expired.isEmpty()) {
+            log.info("TCPHandler [{}]: {} buffered orders expired before " +
+                    "router became available", index, expired.size());
+            expiredCounter.increment(expired.size());
+            expired.forEach(this::rejectNotSent);
+        }
+    }
+
+    private void rejectNotSent(FixRequest request) {
+        try {
+            FixResponse autogen = FixResponse.autoGenerateResponseOnFail(
+                    request, FixResponse.SEND_FAILED
+            );
+            tradingService.handleMessageFromRouter(autogen.asFix());
+        } catch (FixMessageMisconfiguredException e) {
+            log.error("TCPHandler [{}]: Response autogeneration failed", index);
+        }
+    }
+
+    @Override
+    public void configureConnection(Connection connection) {
+        configureInputProcessing(connection);
+        configureOutputProcessing(connection);
+
+        // discard connection if router disconnects
+        connection.onDispose().doFinally(signalType -> {
+            log.info("TCPHandler [{}]: Router disconnected", index);
+            this.connection = null;
+            this.assignedId = null;
+        }).subscribe();
+    }
+
+    private void configureOutputProcessing(Connection connection) {
+        Flux<String> outputFlux = toRouterSink.asFlux()
+                .doOnNext(msg -> log.debug("TCPHandler [{}]: sending message {}",
+                        index, msg));
+
+        connection.outbound()
+                .sendString(outputFlux, StandardCharsets.UTF_8)
+                .then()
+                .subscribe();
+    }
+
+    private void configureInputProcessing(Connection connection) {
+        if (routerInputProcessor != null) {
+            log.debug("TCPHandler [{}]: Cleaning up existing processor " +
+                    "before re-initialization.", index);
+            routerInputProcessor.complete();
+        }
+
+        routerInputProcessor = new FixMessageProcessor();
+
+        // redirect all router input to processor (message un-chunking)
+        connection.inbound()
+                .receive()
+                .asString()
+                .doOnNext(routerInputProcessor::processInput)
+                .subscribe();
+
+        // complete messages - to be processed one-by one
+        routerInputProcessor.getFlux()
+                .doOnNext(this::handleMessageFromRouter)
+                .subscribe();
+    }
+
+    private void handleMessageFromRouter(String message) {
+        if (FixMessage.isOfType(message, FixTestRequest.MSG_TEST_REQUEST)) {
+            answerTestRequest(message);
+        } else if (FixMessage.isOfType(message, FixHeartbeat.MSG_HEARTBEAT)) {
+            log.debug("TCPHandler [{}]: heartbeat received", index);
+        } else if (message.contains(MSG_TYPE_ID_ASSIGNATION_WITH_STOCKS)) {
+            try {
+                FixIdAssignationStockState welcome = FixMessage.fromFix(message,
+                        new FixIdAssignationStockState());
+                assignedId = welcome.getTarget();
+                log.info("TCPHandler [{}]: Router assigned ID {}", index, assignedId);
+                logon(welcome.getSender());
+                subscribe(welcome.getSender());
+            } catch (FixMessageMisconfiguredException e) {
+                log.warn("TCPHandler [{}]: Invalid ID assignation message", index);
+            }
+            tradingService.handleMessageFromRouter(message);
+            replayPending();
+        } else {
+            tradingService.handleMessageFromRouter(message);
+        }
+    }
+
+    private void logon(String routerId) {
+        try {
+            send(new FixLogon(assignedId, routerId, brokerName).asFix());
+        } catch (FixMessageMisconfiguredException e) {
+            log.warn("TCPHandler [{}]: Invalid logon: {}", index, e.getMessage());
+        }
+    }
+
+    // router sends the narrowed state right after the welcome
+    private void subscribe(String routerId) {
+        if (interest.isEverything())
+            return;
+        try {
+            send(interest.subscription(assignedId, routerId).asFix());
+        } catch (FixMessageMisconfiguredException e) {
+            log.warn("TCPHandler [{}]: Invalid market data subscription: {}",
+                    index, e.getMessage());
+        }
+    }
+
+    // router disconnects links that don't answer
+    private void answerTestRequest(String message) {
+        try {
+            FixTestRequest request = FixMessage.fromFix(message, new FixTestRequest());
+            send(FixHeartbeat.answer(request, getAssignedId()).asFix());
+        } catch (FixMessageMisconfiguredException e) {
+            log.warn("TCPHandler [{}]: Invalid test request: {}", index, e.getMessage());
+        }
+    }
+
+    @Override
+    public void handleConnected(Connection connection) {
+        this.connection = connection;
+        connectionInProgress.set(false);
+        log.info("TCPHandler [{}]: Connected successfully to {}:{}", index, host, port);
+    }
+
+    @Override
+    public void handleNotConnected(Throwable e) {
+        connection = null;
+        log.warn("TCPHandler [{}]: Connection failed: {}", index, e.getMessage());
+    }
+
+    @Override
+    public void handleConnectionFailed(Throwable e) {
+        connectionInProgress.set(false);
+        log.error("TCPHandler [{}]: Connection can't be established right now", index);
+    }
+}
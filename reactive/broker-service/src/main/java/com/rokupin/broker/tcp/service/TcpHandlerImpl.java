@@ -1,164 +1,103 @@
 package com.rokupin.broker.tcp.service;
 
 import com.rokupin.broker.events.BrokerEvent;
+import com.rokupin.broker.model.FixRequestBatch;
 import com.rokupin.broker.service.TradingService;
 import com.rokupin.broker.tcp.ConnectivityProvider;
-import com.rokupin.fix.FixMessageProcessor;
-import com.rokupin.model.fix.*;
+import com.rokupin.model.fix.FixMessage;
+import com.rokupin.model.fix.FixMessageMisconfiguredException;
+import com.rokupin.model.fix.FixRequest;
+import com.rokupin.model.fix.FixStateUpdateRequest;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
-import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.FluxSink;
-import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
-import reactor.netty.Connection;
 
-import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.EventObject;
-import java.util.Objects;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.List;
 import java.util.function.Consumer;
 
+/**
+ * Keeps a pool of connections to the router. Client sessions are striped
+ * across the links by their ID, so all orders of the same session go over
+ * the same connection and keep their order. Each link buffers orders while
+ * it is unavailable, buffered orders are periodically checked for expiry.
+ */
 @Slf4j
-public class TcpHandlerImpl implements TcpConfigurer {
-    private final TradingService tradingService;
-    private final ConnectivityProvider connectivityProvider;
-    private final String host;
-    private final int port;
+public class TcpHandlerImpl {
+    private final List<RouterLink> links;
 
-    private final AtomicBoolean connectionInProgress;
-    private final Sinks.Many<String> toRouterSink;
-    private volatile Connection connection;
-    private FixMessageProcessor routerInputProcessor;
-
-    public TcpHandlerImpl(String host, int port,
+    public TcpHandlerImpl(String host, int port, int connections, String brokerName,
+                          int bufferCapacity, Duration bufferTtl,
+                          MarketDataInterest interest,
                           Consumer<FluxSink<BrokerEvent<FixMessage>>> consumer,
                           ConnectivityProvider connectivityProvider,
-                          TradingService tradingService
+                          TradingService tradingService,
+                          MeterRegistry meterRegistry
     ) {
-        this.toRouterSink = Sinks.many().multicast().directAllOrNothing();
-        this.connectivityProvider = connectivityProvider;
-        this.tradingService = tradingService;
-        this.connectionInProgress = new AtomicBoolean(false);
-        this.host = host;
-        this.port = port;
+        if (connections < 1)
+            throw new IllegalArgumentException(
+                    "TCPHandler: at least one router connection is required");
+
+        this.links = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++)
+            links.add(new RouterLink(i, host, port, brokerName,
+                    new OutboundOrderBuffer(bufferCapacity, bufferTtl.toNanos()),
+                    interest,
+                    connectivityProvider,
+                    tradingService,
+                    meterRegistry));
 
         Flux.create(consumer)
                 .share()
                 .map(EventObject::getSource)
-                .flatMap(this::requestEventToStringPublisher)
-                .doOnNext(toRouterSink::tryEmitNext)
+                .doOnNext(this::handleRequestEvent)
                 .subscribe();
-    }
-
-    @PostConstruct
-    public void startConnection() {
-        if (Objects.isNull(connection) &&
-                connectionInProgress.compareAndSet(false, true)) {
-            connectivityProvider.connect(this, host, port);
-        }
-    }
 
-    @Override
-    public void configureConnection(Connection connection) {
-        configureInputProcessing(connection);
-        configureOutputProcessing(connection);
-
-        // discard connection if router disconnects
-        connection.onDispose().doFinally(signalType -> {
-            log.info("TCPHandler: Router disconnected");
-            this.connection = null;
-        }).subscribe();
-    }
-
-    private void configureOutputProcessing(Connection connection) {
-        Flux<String> outputFlux = toRouterSink.asFlux()
-                .doOnNext(msg -> log.debug("TCPHandler: sending message {}", msg));
-
-        connection.outbound()
-                .sendString(outputFlux, StandardCharsets.UTF_8)
-                .then()
+        Flux.interval(Duration.ofMillis(Math.max(10, bufferTtl.toMillis() / 10)))
+                .doOnNext(tick -> links.forEach(RouterLink::expirePending))
                 .subscribe();
     }
 
-    private void configureInputProcessing(Connection connection) {
-        if (routerInputProcessor != null) {
-            log.debug("TCPHandler: Cleaning up existing processor before re-initialization.");
-            routerInputProcessor.complete();
-        }
-
-        routerInputProcessor = new FixMessageProcessor();
-
-        // redirect all router input to processor (message un-chunking)
-        connection.inbound()
-                .receive()
-                .asString()
-                .doOnNext(routerInputProcessor::processInput)
-                .subscribe();
-
-        // complete messages - to be processed one-by one
-        routerInputProcessor.getFlux()
-                .doOnNext(tradingService::handleMessageFromRouter)
-                .subscribe();
-    }
-
-    @Override
-    public void handleConnected(Connection connection) {
-        this.connection = connection;
-        connectionInProgress.set(false);
-        log.info("TCPHandler: Connected successfully to {}:{}", host, port);
-    }
-
-    @Override
-    public void handleNotConnected(Throwable e) {
-        connection = null;
-        log.warn("TCPHandler: Connection failed: {}", e.getMessage());
+    @PostConstruct
+    public void startConnection() {
+        links.forEach(RouterLink::startConnection);
     }
 
-    @Override
-    public void handleConnectionFailed(Throwable e) {
-        connectionInProgress.set(false);
-        log.error("TCPHandler: Connection can't be established right now");
+    private RouterLink linkFor(String clientId) {
+        return links.get(Math.floorMod(clientId.hashCode(), links.size()));
     }
 
-    private Publisher<String> requestEventToStringPublisher(Object event) {
+    private void handleRequestEvent(Object event) {
         if (event instanceof FixRequest request) {
-            if (Objects.nonNull(connection)) {
-                request.setSender(tradingService.getAssignedId());
-                return publishFixMessage(request);
-            } else if (!connectionInProgress.get()) {
-                log.info("TCPHandler: trading request not sent: Router service is unavailable.");
-                try {
-                    FixResponse autogen = FixResponse.autoGenerateResponseOnFail(
-                            request, FixResponse.SEND_FAILED
-                    );
-                    tradingService.handleMessageFromRouter(autogen.asFix());
-                } catch (FixMessageMisconfiguredException e) {
-                    log.error("TCPHandler: Response autogeneration failed");
-                }
-                startConnection();
-            }
+            linkFor(request.getSenderSubId()).submit(List.of(request));
+        } else if (event instanceof FixRequestBatch batch) {
+            linkFor(batch.getClientId()).submit(batch.getRequests());
         } else if (event instanceof FixStateUpdateRequest stateRequest) {
-            if (Objects.nonNull(connection) &&
-                    !stateRequest.getTarget().equals("not assigned")) {
-                return publishFixMessage(stateRequest);
-            } else if (!connectionInProgress.get()) {
+            RouterLink link = links.stream()
+                    .filter(RouterLink::isReady)
+                    .findFirst()
+                    .orElse(null);
+            if (link != null && !stateRequest.getTarget().equals("not assigned")) {
+                stateRequest.setSender(link.getAssignedId());
+                publishFixMessage(link, stateRequest);
+            } else if (link == null) {
                 log.info("TCPHandler: State update request not sent: Router service is unavailable.");
                 startConnection();
             }
         }
-        return Mono.empty();
     }
 
-    private Publisher<String> publishFixMessage(FixMessage msg) {
+    private void publishFixMessage(RouterLink link, FixMessage msg) {
         try {
             String fix = msg.asFix();
             log.debug("TCPHandler: Publishing fix message '{}'", fix);
-            return Mono.just(fix);
+            link.send(fix);
         } catch (FixMessageMisconfiguredException e) {
             log.info("TCPHandler: '{}'", e.getMessage());
         }
-        return Mono.empty();
     }
 }
@@ -2,9 +2,17 @@ package com.rokupin.broker.websocket.publishers;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rokupin.broker.model.BatchCommunicationReport;
+import com.rokupin.broker.model.ClientSubscriptionRequest;
 import com.rokupin.broker.model.CommunicationReport;
+import com.rokupin.broker.model.StockStateSnapshot;
+import com.rokupin.broker.model.StocksStateMessage;
 import com.rokupin.broker.service.TradingService;
+import com.rokupin.broker.websocket.subscriptions.StateSubscriptions;
+import com.rokupin.broker.websocket.subscriptions.StateTopic;
+import com.rokupin.broker.websocket.throttling.OrderRateLimiter;
 import com.rokupin.model.fix.ClientTradingRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.reactivestreams.Publisher;
@@ -13,38 +21,82 @@ import org.springframework.web.reactive.socket.WebSocketSession;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
 @Slf4j
 public class ClientInputHandler implements WebSocketSessionEventHandler {
     private final ObjectMapper objectMapper;
     private final TradingService service;
+    private final int maxBatchSize;
+    private final OrderRateLimiter rateLimiter;
+    private final StateSubscriptions subscriptions;
 
     public ClientInputHandler(ObjectMapper objectMapper,
-                              TradingService service) {
+                              TradingService service,
+                              int maxBatchSize,
+                              OrderRateLimiter rateLimiter,
+                              StateSubscriptions subscriptions) {
         this.objectMapper = objectMapper;
         this.service = service;
+        this.maxBatchSize = maxBatchSize;
+        this.rateLimiter = rateLimiter;
+        this.subscriptions = subscriptions;
     }
 
     @Override
     public Publisher<String> handle(WebSocketSession session) {
         log.debug("WSHandler [{}]: client input handler is ready", session.getId());
 
-        return Flux.just(service.getState())
-                .mergeWith(session.receive()
-                        .map(WebSocketMessage::getPayloadAsText)
-                        .flatMap(msg -> clientInputHandler(msg, session)));
+        return resolveUser(session).flatMapMany(user ->
+                Flux.just(service.getState())
+                        .mergeWith(session.receive()
+                                .map(WebSocketMessage::getPayloadAsText)
+                                .flatMap(msg -> clientInputHandler(msg, session,
+                                        user.isEmpty() ? null : user)))
+                        .doFinally(signalType -> {
+                            rateLimiter.release(session.getId(), user.isEmpty() ? null : user);
+                            subscriptions.remove(session.getId());
+                        })
+        );
+    }
+
+    // user is only needed for per-user limits
+    private Mono<String> resolveUser(WebSocketSession session) {
+        if (!rateLimiter.isPerUserEnabled())
+            return Mono.just("");
+        return session.getHandshakeInfo()
+                .getPrincipal()
+                .map(Principal::getName)
+                .defaultIfEmpty("");
     }
 
     private Publisher<String> clientInputHandler(String msg,
-                                            WebSocketSession session) {
+                                                 WebSocketSession session,
+                                                 String user) {
         String report;
 
         log.debug("WSHandler [{}]: processing request '{}'", session.getId(), msg);
 
         try {
-            ClientTradingRequest clientMsg = objectMapper.readValue(msg,
+            JsonNode node = objectMapper.readTree(msg);
+
+            if (node.isArray())
+                return clientBatchHandler(node, session, user);
+            if (isSubscription(node))
+                return clientSubscriptionHandler(node, session);
+
+            ClientTradingRequest clientMsg = objectMapper.treeToValue(node,
                     ClientTradingRequest.class
             );
-            report = service.handleMessageFromClient(clientMsg, session.getId());
+            if (rateLimiter.tryAcquire(session.getId(), user, 1)) {
+                report = service.handleMessageFromClient(clientMsg, session.getId());
+            } else {
+                report = throttledReport(1);
+            }
         } catch (JsonMappingException e) {
             log.warn("WSHandler [{}]: Mapping failed: {}",
                     session.getId(), e.toString());
@@ -67,4 +119,125 @@ public class ClientInputHandler implements WebSocketSessionEventHandler {
         }
         return Mono.empty();
     }
+
+    private String throttledReport(int orders) {
+        return "Order rate limit exceeded, " + orders + " order(s) not sent. " +
+                "Retry later.";
+    }
+
+    // decided by the top-level fields only, order fields are free text
+    private boolean isSubscription(JsonNode node) {
+        return node.isObject() &&
+                (node.has("subscribe") || node.has("unsubscribe") || node.has("snapshot"));
+    }
+
+    // answered with the part of the state client is subscribed to from now on
+    private Publisher<String> clientSubscriptionHandler(JsonNode node,
+                                                        WebSocketSession session) {
+        try {
+            ClientSubscriptionRequest request = objectMapper.treeToValue(node,
+                    ClientSubscriptionRequest.class
+            );
+            Set<StateTopic> topics = subscriptions.topicsOf(session.getId());
+
+            // {"snapshot":false} asks for nothing
+            if (Objects.isNull(request.getSubscribe()) &&
+                    Objects.isNull(request.getUnsubscribe()) && !request.isSnapshot())
+                return Mono.empty();
+            if (Objects.nonNull(request.getSubscribe()))
+                topics = subscriptions.subscribe(session.getId(),
+                        StateTopic.of(request.getSubscribe()));
+            if (Objects.nonNull(request.getUnsubscribe()))
+                topics = subscriptions.unsubscribe(session.getId(),
+                        StateTopic.of(request.getUnsubscribe()));
+            log.debug("WSHandler [{}]: subscribed to {}", session.getId(), topics);
+
+            if (Objects.isNull(topics) || topics.isEmpty())
+                return Mono.just(service.getState());
+            StockStateSnapshot snapshot = service.getSnapshot();
+            return Mono.just(objectMapper.writeValueAsString(new StocksStateMessage(
+                    StateSubscriptions.slice(snapshot.getStocks(), topics),
+                    snapshot.getVersion())));
+        } catch (JsonProcessingException e) {
+            log.warn("WSHandler [{}]: Subscription parsing failed: {}",
+                    session.getId(), e.toString());
+            try {
+                return Mono.just(objectMapper.writeValueAsString(
+                        new CommunicationReport("Subscription is incorrect: " + e))
+                );
+            } catch (JsonProcessingException ex) {
+                log.warn("WSHandler [{}]: parsing to JSON failed: {}",
+                        session.getId(), ex.toString());
+            }
+        }
+        return Mono.empty();
+    }
+
+    private Publisher<String> clientBatchHandler(JsonNode node,
+                                                 WebSocketSession session,
+                                                 String user) {
+        String report;
+
+        try {
+            List<ClientTradingRequest> clientMsgs = objectMapper.treeToValue(node,
+                    objectMapper.getTypeFactory().constructCollectionType(
+                            List.class, ClientTradingRequest.class)
+            );
+            if (clientMsgs.size() > maxBatchSize) {
+                log.warn("WSHandler [{}]: batch of {} orders rejected",
+                        session.getId(), clientMsgs.size());
+                report = "Batch of " + clientMsgs.size() + " orders exceeds " +
+                        "the limit of " + maxBatchSize;
+            } else if (!rateLimiter.tryAcquire(session.getId(), user, clientMsgs.size())) {
+                report = throttledReport(clientMsgs.size());
+            } else {
+                return makeBatchReport(
+                        service.handleMessagesFromClient(clientMsgs, session.getId()),
+                        session
+                );
+            }
+        } catch (JsonMappingException e) {
+            log.warn("WSHandler [{}]: Batch mapping failed: {}",
+                    session.getId(), e.toString());
+            report = "Mapping to FIX failed: " + e;
+        } catch (JsonProcessingException e) {
+            log.warn("WSHandler [{}]: Batch JSON parsing failed: {}",
+                    session.getId(), e.toString());
+            report = "JSON syntax is incorrect: " + e;
+        }
+
+        try {
+            return Mono.just(objectMapper.writeValueAsString(
+                    new CommunicationReport(report))
+            );
+        } catch (JsonProcessingException e) {
+            log.warn("WSHandler [{}]: parsing to JSON failed: {}",
+                    session.getId(), e.toString());
+        }
+        return Mono.empty();
+    }
+
+    private Publisher<String> makeBatchReport(List<String> reports,
+                                              WebSocketSession session) {
+        int accepted = 0;
+        List<String> reasons = new ArrayList<>(reports.size());
+
+        for (String report : reports) {
+            if (report.isEmpty()) {
+                accepted++;
+                reasons.add(null);
+            } else {
+                reasons.add(report);
+            }
+        }
+        try {
+            return Mono.just(objectMapper.writeValueAsString(
+                    new BatchCommunicationReport(accepted, reasons))
+            );
+        } catch (JsonProcessingException e) {
+            log.warn("WSHandler [{}]: parsing to JSON failed: {}",
+                    session.getId(), e.toString());
+        }
+        return Mono.empty();
+    }
 }
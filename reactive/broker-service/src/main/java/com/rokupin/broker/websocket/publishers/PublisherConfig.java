@@ -5,8 +5,12 @@ import com.rokupin.broker.events.BrokerEvent;
 import com.rokupin.broker.events.EventConfig;
 import com.rokupin.broker.model.StocksStateMessage;
 import com.rokupin.broker.service.TradingService;
+import com.rokupin.broker.websocket.subscriptions.StateSubscriptions;
+import com.rokupin.broker.websocket.throttling.OrderRateLimiter;
 import com.rokupin.model.fix.FixResponse;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
@@ -19,9 +23,32 @@ import java.util.function.Consumer;
 @Import(EventConfig.class)
 public class PublisherConfig {
     @Bean
-    WebSocketSessionEventHandler clientInputHandler(ObjectMapper objectMapper,
-                                                    TradingService service) {
-        return new ClientInputHandler(objectMapper, service);
+    WebSocketSessionEventHandler clientInputHandler(
+            ObjectMapper objectMapper,
+            TradingService service,
+            @Value("${broker.websocket.max-batch-size}") int maxBatchSize,
+            OrderRateLimiter orderRateLimiter,
+            StateSubscriptions stateSubscriptions
+    ) {
+        return new ClientInputHandler(objectMapper, service, maxBatchSize,
+                orderRateLimiter, stateSubscriptions);
+    }
+
+    @Bean
+    StateSubscriptions stateSubscriptions(MeterRegistry meterRegistry) {
+        return new StateSubscriptions(meterRegistry);
+    }
+
+    @Bean
+    OrderRateLimiter orderRateLimiter(
+            @Value("${broker.rate-limit.session.rate}") double sessionRate,
+            @Value("${broker.rate-limit.session.burst}") int sessionBurst,
+            @Value("${broker.rate-limit.user.rate}") double userRate,
+            @Value("${broker.rate-limit.user.burst}") int userBurst,
+            MeterRegistry meterRegistry
+    ) {
+        return new OrderRateLimiter(sessionRate, sessionBurst,
+                userRate, userBurst, meterRegistry);
     }
 
     @Bean
@@ -35,8 +62,11 @@ public class PublisherConfig {
     @Bean
     WebSocketSessionEventHandler stocksStateMessageEventHandler(
             ObjectMapper objectMapper,
-            Consumer<FluxSink<BrokerEvent<StocksStateMessage>>> stocksStateMessagePublisher
+            Consumer<FluxSink<BrokerEvent<StocksStateMessage>>> stocksStateMessagePublisher,
+            StateSubscriptions stateSubscriptions,
+            MeterRegistry meterRegistry
     ) {
-        return new StocksStateMessageEventHandler(objectMapper, stocksStateMessagePublisher);
+        return new StocksStateMessageEventHandler(objectMapper, stocksStateMessagePublisher,
+                stateSubscriptions, meterRegistry);
     }
 }
@@ -4,6 +4,11 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rokupin.broker.events.BrokerEvent;
 import com.rokupin.broker.model.StocksStateMessage;
+import com.rokupin.broker.model.StocksStatePatch;
+import com.rokupin.broker.websocket.subscriptions.StateSubscriptions;
+import com.rokupin.broker.websocket.subscriptions.StateTopic;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.reactivestreams.Publisher;
 import org.springframework.web.reactive.socket.WebSocketSession;
@@ -12,42 +17,171 @@ import reactor.core.publisher.FluxSink;
 import reactor.core.publisher.Mono;
 
 import java.util.EventObject;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
+/**
+ * Pushes stock state updates to the WebSocket sessions. Sessions without
+ * subscriptions get the whole state, subscribed ones - only their slice of
+ * it, and only if something in it changed. Who gets an update is worked
+ * out once per update, each session then just picks its message.
+ * <p>
+ * Each session gets the full state once, and {@link StocksStatePatch}es
+ * with only the changed amounts afterwards.
+ */
 @Slf4j
 public class StocksStateMessageEventHandler implements WebSocketSessionEventHandler {
+    private static final long NOTHING_SENT = -1;
 
     private final ObjectMapper objectMapper;
-    private final Flux<Object> inputFlux;
+    private final StateSubscriptions subscriptions;
+    private final Flux<StateDelivery> inputFlux;
+    private final Counter skipped;
+    // state of the previous update, updates are prepared one at a time
+    private Map<String, Map<String, Integer>> previous;
 
     public StocksStateMessageEventHandler(ObjectMapper objectMapper,
-                                          Consumer<FluxSink<BrokerEvent<StocksStateMessage>>> stockStateUpdateEventPublisher) {
+                                          Consumer<FluxSink<BrokerEvent<StocksStateMessage>>> stockStateUpdateEventPublisher,
+                                          StateSubscriptions subscriptions,
+                                          MeterRegistry meterRegistry) {
         this.objectMapper = objectMapper;
+        this.subscriptions = subscriptions;
+        this.previous = Map.of();
+        this.skipped = Counter.builder("broker.state.updates.skipped")
+                .register(meterRegistry);
         this.inputFlux = Flux.create(stockStateUpdateEventPublisher)
-                .share()
-                .map(EventObject::getSource);
+                .map(EventObject::getSource)
+                .ofType(StocksStateMessage.class)
+                .map(this::prepare)
+                .share();
     }
 
     @Override
     public Publisher<String> handle(WebSocketSession session) {
         log.debug("WSHandler [{}]: stock state handler is ready", session.getId());
-        return inputFlux.flatMap(event -> handleEmission(event, session));
-    }
-
-    private Publisher<String> handleEmission(Object event, WebSocketSession session) {
-        if (event instanceof StocksStateMessage stocksStateMessage) {
-            try {
-                String stocksStateJson = objectMapper.writeValueAsString(stocksStateMessage);
-                log.debug("WSHandler [{}]: broadcasting a stock " +
-                        "state update: '{}'", session.getId(), stocksStateJson);
-                return Mono.just(stocksStateJson);
-            } catch (JsonProcessingException e) {
-                log.warn("WSHandler [{}]: state update event: '{}' can't be " +
-                        "serialized to JSON", session.getId(), stocksStateMessage);
-                return Mono.empty();
-            }
-        } else {
+        AtomicLong sentVersion = new AtomicLong(NOTHING_SENT);
+        return inputFlux.flatMap(delivery -> handleEmission(delivery, session, sentVersion));
+    }
+
+    private StateDelivery prepare(StocksStateMessage message) {
+        Map<String, Map<String, Integer>> stocks = message.getStocks();
+        Map<String, Map<String, Integer>> patch = diff(previous, stocks);
+        Set<String> affected = subscriptions.isEmpty() ?
+                Set.of() : subscriptions.affected(changes(previous, patch));
+
+        previous = stocks;
+        return new StateDelivery(message, patch, affected, new ConcurrentHashMap<>());
+    }
+
+    // session gets the full state first, patches since the last version it got afterwards
+    private Publisher<String> handleEmission(StateDelivery delivery,
+                                             WebSocketSession session,
+                                             AtomicLong sentVersion) {
+        Set<StateTopic> topics = subscriptions.topicsOf(session.getId());
+
+        if (Objects.nonNull(topics) && !delivery.affected().contains(session.getId())) {
+            skipped.increment();
             return Mono.empty();
         }
+        Set<StateTopic> view = Objects.isNull(topics) ? Set.of() : topics;
+        long base = sentVersion.getAndSet(delivery.message().getVersion());
+        try {
+            String stocksStateJson = base == NOTHING_SENT ?
+                    delivery.json(view, NOTHING_SENT, () -> serializeState(delivery.message(), view)) :
+                    delivery.json(view, base, () -> serializePatch(delivery, view, base));
+            log.debug("WSHandler [{}]: broadcasting a stock " +
+                    "state update: '{}'", session.getId(), stocksStateJson);
+            return Mono.just(stocksStateJson);
+        } catch (JsonProcessingException e) {
+            log.warn("WSHandler [{}]: state update event: '{}' can't be " +
+                    "serialized to JSON", session.getId(), delivery.message());
+            return Mono.empty();
+        }
+    }
+
+    private String serializeState(StocksStateMessage message,
+                                  Set<StateTopic> topics) throws JsonProcessingException {
+        if (topics.isEmpty())
+            return objectMapper.writeValueAsString(message);
+        return objectMapper.writeValueAsString(new StocksStateMessage(
+                StateSubscriptions.slice(message.getStocks(), topics), message.getVersion()));
+    }
+
+    private String serializePatch(StateDelivery delivery,
+                                  Set<StateTopic> topics,
+                                  long base) throws JsonProcessingException {
+        Map<String, Map<String, Integer>> patch = topics.isEmpty() ?
+                delivery.patch() : StateSubscriptions.slicePatch(delivery.patch(), topics);
+        return objectMapper.writeValueAsString(
+                new StocksStatePatch(delivery.message().getVersion(), base, patch));
+    }
+
+    /**
+     * @return merge patch turning one state into the other: changed and
+     * added amounts, nulls for removed instruments and exchanges
+     */
+    private static Map<String, Map<String, Integer>> diff(Map<String, Map<String, Integer>> before,
+                                                          Map<String, Map<String, Integer>> after) {
+        Map<String, Map<String, Integer>> patch = new HashMap<>();
+
+        after.forEach((exchange, stocks) -> {
+            Map<String, Integer> old = before.getOrDefault(exchange, Map.of());
+            if (old == stocks)  // snapshots share maps of unchanged exchanges
+                return;
+            Map<String, Integer> changed = new HashMap<>();
+            stocks.forEach((instrument, amount) -> {
+                if (!amount.equals(old.get(instrument)))
+                    changed.put(instrument, amount);
+            });
+            old.keySet().forEach(instrument -> {
+                if (!stocks.containsKey(instrument))
+                    changed.put(instrument, null);
+            });
+            if (!changed.isEmpty())
+                patch.put(exchange, changed);
+        });
+        before.keySet().forEach(exchange -> {
+            if (!after.containsKey(exchange))
+                patch.put(exchange, null);
+        });
+        return patch;
+    }
+
+    // instruments whose amount changed, appeared or disappeared, by exchange
+    private static Map<String, Set<String>> changes(Map<String, Map<String, Integer>> before,
+                                                    Map<String, Map<String, Integer>> patch) {
+        Map<String, Set<String>> changes = new HashMap<>();
+
+        patch.forEach((exchange, stocks) -> changes.put(exchange, Objects.isNull(stocks) ?
+                before.get(exchange).keySet() : stocks.keySet()));
+        return changes;
+    }
+
+    private interface Serializer {
+        String serialize() throws JsonProcessingException;
+    }
+
+    private record View(Set<StateTopic> topics, long base) {
+    }
+
+    // sessions with the same subscriptions and base version share the serialized message
+    private record StateDelivery(StocksStateMessage message,
+                                 Map<String, Map<String, Integer>> patch,
+                                 Set<String> affected,
+                                 Map<View, String> serialized) {
+        String json(Set<StateTopic> topics, long base, Serializer serializer) throws JsonProcessingException {
+            View view = new View(topics, base);
+            String json = serialized.get(view);
+            if (Objects.isNull(json)) {
+                json = serializer.serialize();
+                serialized.put(view, json);
+            }
+            return json;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,192 @@
+package com.rokupin.broker.websocket.subscriptions;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stock state subscriptions of the WebSocket sessions. Sessions without
+ * subscriptions get the whole state. Subscribed sessions get only the
+ * instruments they are subscribed to, and only when one of them changes.
+ * <p>
+ * Sessions are indexed by instrument (and by exchange, for subscriptions
+ * to all instruments of an exchange), so finding who has to get a change
+ * only touches the sessions interested in it.
+ */
+public class StateSubscriptions {
+    private final Map<String, Set<StateTopic>> topics;
+    private final Map<String, Set<String>> byInstrument;    // guarded by this
+    private final Map<String, Set<String>> byExchange;      // guarded by this
+    private final Set<String> byAny;                        // guarded by this
+
+    public StateSubscriptions(MeterRegistry meterRegistry) {
+        this.topics = new ConcurrentHashMap<>();
+        this.byInstrument = new HashMap<>();
+        this.byExchange = new HashMap<>();
+        this.byAny = new HashSet<>();
+        Gauge.builder("broker.state.subscribed-sessions", topics, Map::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return all topics session is subscribed to now
+     */
+    public synchronized Set<StateTopic> subscribe(String sessionId, Set<StateTopic> added) {
+        Set<StateTopic> current = topics.getOrDefault(sessionId, Set.of());
+        Set<StateTopic> next = new HashSet<>(current);
+
+        next.addAll(added);
+        return replace(sessionId, current, next);
+    }
+
+    /**
+     * @return all topics session is subscribed to now, empty if it gets
+     * the whole state again
+     */
+    public synchronized Set<StateTopic> unsubscribe(String sessionId, Set<StateTopic> removed) {
+        Set<StateTopic> current = topics.getOrDefault(sessionId, Set.of());
+        Set<StateTopic> next = new HashSet<>(current);
+
+        next.removeAll(removed);
+        return replace(sessionId, current, next);
+    }
+
+    public synchronized void remove(String sessionId) {
+        Set<StateTopic> current = topics.remove(sessionId);
+
+        if (Objects.nonNull(current))
+            current.forEach(topic -> unindex(sessionId, topic));
+    }
+
+    /**
+     * @return topics session is subscribed to, null if it gets the whole state
+     */
+    public Set<StateTopic> topicsOf(String sessionId) {
+        return topics.get(sessionId);
+    }
+
+    public boolean isEmpty() {
+        return topics.isEmpty();
+    }
+
+    /**
+     * @param changes changed instruments of each exchange
+     * @return subscribed sessions that have to get the change
+     */
+    public synchronized Set<String> affected(Map<String, Set<String>> changes) {
+        Set<String> sessions = new HashSet<>(byAny);
+
+        changes.forEach((exchange, instruments) -> {
+            sessions.addAll(byExchange.getOrDefault(exchange, Set.of()));
+            for (String instrument : instruments)
+                for (String session : byInstrument.getOrDefault(instrument, Set.of()))
+                    if (!sessions.contains(session) && sees(session, exchange, instrument))
+                        sessions.add(session);
+        });
+        return sessions;
+    }
+
+    /**
+     * @return part of the state visible through the topics
+     */
+    public static Map<String, Map<String, Integer>> slice(Map<String, Map<String, Integer>> stocks,
+                                                          Set<StateTopic> topics) {
+        Map<String, Map<String, Integer>> slice = new LinkedHashMap<>();
+
+        stocks.forEach((exchange, instruments) -> {
+            Map<String, Integer> visible = new LinkedHashMap<>();
+            instruments.forEach((instrument, amount) -> {
+                for (StateTopic topic : topics)
+                    if (topic.matches(exchange, instrument)) {
+                        visible.put(instrument, amount);
+                        break;
+                    }
+            });
+            if (!visible.isEmpty())
+                slice.put(exchange, visible);
+        });
+        return slice;
+    }
+
+    /**
+     * @return part of the merge patch visible through the topics, removed
+     * exchanges are kept if any topic covers them
+     */
+    public static Map<String, Map<String, Integer>> slicePatch(Map<String, Map<String, Integer>> patch,
+                                                               Set<StateTopic> topics) {
+        Map<String, Map<String, Integer>> slice = new HashMap<>();
+
+        patch.forEach((exchange, instruments) -> {
+            if (Objects.isNull(instruments)) {
+                for (StateTopic topic : topics)
+                    if (Objects.isNull(topic.exchange()) || topic.exchange().equals(exchange)) {
+                        slice.put(exchange, null);
+                        break;
+                    }
+                return;
+            }
+            Map<String, Integer> visible = new HashMap<>();
+            instruments.forEach((instrument, amount) -> {
+                for (StateTopic topic : topics)
+                    if (topic.matches(exchange, instrument)) {
+                        visible.put(instrument, amount);
+                        break;
+                    }
+            });
+            if (!visible.isEmpty())
+                slice.put(exchange, visible);
+        });
+        return slice;
+    }
+
+    private Set<StateTopic> replace(String sessionId, Set<StateTopic> current, Set<StateTopic> next) {
+        current.forEach(topic -> unindex(sessionId, topic));
+        if (next.isEmpty()) {
+            topics.remove(sessionId);
+            return Set.of();
+        }
+        next = Set.copyOf(next);
+        next.forEach(topic -> index(sessionId, topic));
+        topics.put(sessionId, next);
+        return next;
+    }
+
+    private boolean sees(String sessionId, String exchange, String instrument) {
+        for (StateTopic topic : topics.getOrDefault(sessionId, Set.of()))
+            if (topic.matches(exchange, instrument))
+                return true;
+        return false;
+    }
+
+    private void index(String sessionId, StateTopic topic) {
+        if (Objects.nonNull(topic.instrument()))
+            byInstrument.computeIfAbsent(topic.instrument(), k -> new HashSet<>()).add(sessionId);
+        else if (Objects.nonNull(topic.exchange()))
+            byExchange.computeIfAbsent(topic.exchange(), k -> new HashSet<>()).add(sessionId);
+        else
+            byAny.add(sessionId);
+    }
+
+    private void unindex(String sessionId, StateTopic topic) {
+        if (Objects.nonNull(topic.instrument()))
+            removeFrom(byInstrument, topic.instrument(), sessionId);
+        else if (Objects.nonNull(topic.exchange()))
+            removeFrom(byExchange, topic.exchange(), sessionId);
+        else
+            byAny.remove(sessionId);
+    }
+
+    private static void removeFrom(Map<String, Set<String>> index, String key, String sessionId) {
+        Set<String> sessions = index.get(key);
+
+        if (Objects.nonNull(sessions) && sessions.remove(sessionId) && sessions.isEmpty())
+            index.remove(key);
+    }
+}
@@ -0,0 +1,41 @@
+package com.rokupin.broker.websocket.subscriptions;
+
+import com.rokupin.broker.model.ClientSubscriptionRequest;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An instrument on an exchange a client is subscribed to. Null exchange
+ * or instrument matches any.
+ */
+public record StateTopic(String exchange, String instrument) {
+
+    public boolean matches(String exchangeId, String instrumentId) {
+        return (Objects.isNull(exchange) || exchange.equals(exchangeId)) &&
+                (Objects.isNull(instrument) || instrument.equals(instrumentId));
+    }
+
+    /**
+     * @return topic for each listed exchange and instrument pair
+     */
+    public static Set<StateTopic> of(ClientSubscriptionRequest.Selection selection) {
+        List<String> exchanges = orAny(selection.getExchanges());
+        List<String> instruments = orAny(selection.getInstruments());
+        Set<StateTopic> topics = new HashSet<>();
+
+        for (String exchange : exchanges)
+            for (String instrument : instruments)
+                topics.add(new StateTopic(exchange, instrument));
+        return topics;
+    }
+
+    private static List<String> orAny(List<String> names) {
+        if (Objects.isNull(names) || names.isEmpty())
+            return Collections.singletonList(null);
+        return names;
+    }
+}
@@ -0,0 +1,117 @@
+package com.rokupin.broker.websocket.throttling;
+
+import com.rokupin.throttling.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Token-bucket limits of orders submitted by each WebSocket session and,
+ * optionally, by each authenticated user across all of their sessions.
+ * Limit with non-positive rate is disabled.
+ * <p>
+ * User's bucket is kept while any of their sessions is open, and dropped
+ * with the last one. Users being tracked are exposed as
+ * {@code broker.orders.rate-limited-users}.
+ */
+@Slf4j
+public class OrderRateLimiter {
+    private final double sessionRate;
+    private final int sessionBurst;
+    private final double userRate;
+    private final int userBurst;
+    private final Map<String, TokenBucket> sessionBuckets;
+    private final Map<String, UserLimit> userLimits;
+    private final Counter sessionThrottledCounter;
+    private final Counter userThrottledCounter;
+
+    public OrderRateLimiter(double sessionRate, int sessionBurst,
+                            double userRate, int userBurst,
+                            MeterRegistry meterRegistry) {
+        this.sessionRate = sessionRate;
+        this.sessionBurst = sessionBurst;
+        this.userRate = userRate;
+        this.userBurst = userBurst;
+        this.sessionBuckets = new ConcurrentHashMap<>();
+        this.userLimits = new ConcurrentHashMap<>();
+        this.sessionThrottledCounter = Counter.builder("broker.orders.throttled")
+                .tag("scope", "session")
+                .register(meterRegistry);
+        this.userThrottledCounter = Counter.builder("broker.orders.throttled")
+                .tag("scope", "user")
+                .register(meterRegistry);
+        Gauge.builder("broker.orders.rate-limited-users", userLimits, Map::size)
+                .register(meterRegistry);
+    }
+
+    public boolean isPerUserEnabled() {
+        return userRate > 0;
+    }
+
+    /**
+     * @param user authenticated user name, null if unknown
+     * @return false if submission of {@code orders} orders exceeds any of
+     * the limits. Nothing is consumed in that case.
+     */
+    public boolean tryAcquire(String sessionId, String user, int orders) {
+        long now = System.nanoTime();
+        TokenBucket userBucket = null;
+
+        if (isPerUserEnabled() && Objects.nonNull(user)) {
+            // sessions are only ever added and removed under the map's lock
+            userBucket = userLimits.compute(user, (u, limit) -> {
+                if (Objects.isNull(limit))
+                    limit = new UserLimit(new TokenBucket(userRate, userBurst, now));
+                limit.sessions.add(sessionId);
+                return limit;
+            }).bucket;
+            if (!userBucket.tryConsume(orders, now)) {
+                log.debug("WSHandler [{}]: user '{}' exceeded order rate limit",
+                        sessionId, user);
+                userThrottledCounter.increment(orders);
+                return false;
+            }
+        }
+        if (sessionRate > 0) {
+            TokenBucket sessionBucket = sessionBuckets.computeIfAbsent(sessionId,
+                    s -> new TokenBucket(sessionRate, sessionBurst, now));
+            if (!sessionBucket.tryConsume(orders, now)) {
+                log.debug("WSHandler [{}]: session exceeded order rate limit", sessionId);
+                if (Objects.nonNull(userBucket))
+                    userBucket.refund(orders);
+                sessionThrottledCounter.increment(orders);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param user authenticated user name of the session, null if unknown
+     */
+    public void release(String sessionId, String user) {
+        sessionBuckets.remove(sessionId);
+        if (Objects.nonNull(user))
+            userLimits.computeIfPresent(user, (u, limit) -> {
+                limit.sessions.remove(sessionId);
+                return limit.sessions.isEmpty() ? null : limit;
+            });
+    }
+
+    private static class UserLimit {
+        private final TokenBucket bucket;
+        private final Set<String> sessions;
+
+        private UserLimit(TokenBucket bucket) {
+            this.bucket = bucket;
+            this.sessions = new HashSet<>();
+        }
+    }
+}
@@ -2,9 +2,11 @@ package com.rokupin.broker.business;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rokupin.broker.events.BrokerEvent;
+import com.rokupin.broker.model.FixRequestBatch;
 import com.rokupin.broker.model.StocksStateMessage;
 import com.rokupin.broker.service.TradingServiceImpl;
 import com.rokupin.model.fix.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,11 +14,14 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.context.ApplicationEventPublisher;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -27,8 +32,10 @@ public class TradingServiceTest {
     private final String brokerId = "B0000";
     private final String exchngId = "E0000";
     private final String instrument = "TEST0";
+    private final StocksStateMessage emptyState =
+            new StocksStateMessage(new HashMap<>(), 0);
     private final StocksStateMessage emptyStateUpdate =
-            new StocksStateMessage(new HashMap<>());
+            new StocksStateMessage(new HashMap<>(), 1);
     private final String stockJson =
             """
                         {
@@ -38,7 +45,8 @@ public class TradingServiceTest {
                     """;
     private final StocksStateMessage fullStateUpdate = new StocksStateMessage(
             Map.of("E00001", Map.of("TEST1", 100, "TEST2", 200),
-                    "E00002", Map.of("TEST3", 300))
+                    "E00002", Map.of("TEST3", 300)),
+            1
     );
     @Mock
     private ApplicationEventPublisher eventPublisher;
@@ -48,7 +56,8 @@ public class TradingServiceTest {
     @BeforeEach
     void setUp() {
         objectMapper = new ObjectMapper();
-        tradingService = new TradingServiceImpl(eventPublisher, objectMapper);
+        tradingService = new TradingServiceImpl(eventPublisher, objectMapper,
+                new SimpleMeterRegistry());
     }
 
     // GET_STATE
@@ -65,7 +74,7 @@ public class TradingServiceTest {
 
         // --- ASSERTION
         // should return empty state
-        assertEquals(actualState, objectMapper.writeValueAsString(emptyStateUpdate));
+        assertEquals(actualState, objectMapper.writeValueAsString(emptyState));
         // should also request router for update
         BrokerEvent<FixStateUpdateRequest> expectedUpdateRequestEvent =
                 new BrokerEvent<>(new FixStateUpdateRequest(brokerId, routerId));
@@ -128,6 +137,26 @@ public class TradingServiceTest {
         verify(eventPublisher, times(1)).publishEvent(expectedEvent);
     }
 
+    @Test
+    void testHandleMessageFromRouter_onUnchangedStateUpdate() throws Exception {
+        // --- ARRANGEMENT
+        // same report delivered twice
+        FixStockStateReport stateReport =
+                new FixStockStateReport(routerId, stockJson);
+
+        // --- ACTION
+        tradingService.handleMessageFromRouter(stateReport.asFix());
+        tradingService.handleMessageFromRouter(stateReport.asFix());
+
+        // --- ASSERTION
+        // clients are notified only once, current state is still served
+        BrokerEvent<StocksStateMessage> expectedEvent =
+                new BrokerEvent<>(fullStateUpdate);
+        verify(eventPublisher, times(1)).publishEvent(expectedEvent);
+        assertEquals(objectMapper.readTree(objectMapper.writeValueAsString(fullStateUpdate)),
+                objectMapper.readTree(tradingService.getState()));
+    }
+
     @Test
     void testHandleMessageFromRouter_onTradingResponse() throws Exception {
         FixResponse response = new FixResponse(
@@ -200,4 +229,80 @@ public class TradingServiceTest {
         assertFalse(response.isEmpty());
     }
 
+    @Test
+    void testHandleMessagesFromClient_onPartiallyValidBatch() throws Exception {
+        // --- ARRANGEMENT
+        ClientTradingRequest validMsg = new ClientTradingRequest(
+                exchngId,
+                instrument,
+                "buy",
+                100
+        );
+        ClientTradingRequest invalidMsg = new ClientTradingRequest(
+                exchngId,
+                instrument,
+                "hold", // no way
+                100
+        );
+        tradingService.setAssignedId(brokerId);
+        tradingService.setRouterId(routerId);
+
+        // --- ACTION
+        List<String> reports = tradingService.handleMessagesFromClient(
+                List.of(validMsg, invalidMsg, validMsg), "1");
+
+        // --- ASSERTION
+        // valid orders are published as a single batch event
+        FixRequest expectedRequest = new FixRequest(validMsg);
+        expectedRequest.setSender(brokerId);
+        expectedRequest.setSenderSubId("1");
+        verify(eventPublisher, times(1)).publishEvent(new BrokerEvent<>(
+                new FixRequestBatch("1", List.of(expectedRequest, expectedRequest))));
+
+        // per-order results are aligned with the input
+        assertEquals(3, reports.size());
+        assertEquals("", reports.get(0));
+        assertFalse(reports.get(1).isEmpty());
+        assertEquals("", reports.get(2));
+    }
+
+    @Test
+    void testHandleMessagesFromClient_onUnsendableAndMissingOrders() throws Exception {
+        // --- ARRANGEMENT
+        ClientTradingRequest validMsg = new ClientTradingRequest(
+                exchngId,
+                instrument,
+                "buy",
+                100
+        );
+        ClientTradingRequest unsendableMsg = new ClientTradingRequest(
+                exchngId,
+                "", // passes the fields check, but can't be rendered to FIX
+                "buy",
+                100
+        );
+        List<ClientTradingRequest> batch = new ArrayList<>();
+        batch.add(unsendableMsg);
+        batch.add(null);
+        batch.add(validMsg);
+        tradingService.setAssignedId(brokerId);
+        tradingService.setRouterId(routerId);
+
+        // --- ACTION
+        List<String> reports = tradingService.handleMessagesFromClient(batch, "1");
+
+        // --- ASSERTION
+        // only the valid order is published
+        FixRequest expectedRequest = new FixRequest(validMsg);
+        expectedRequest.setSender(brokerId);
+        expectedRequest.setSenderSubId("1");
+        verify(eventPublisher, times(1)).publishEvent(new BrokerEvent<>(
+                new FixRequestBatch("1", List.of(expectedRequest))));
+
+        // each of the others is rejected with its own reason
+        assertEquals(3, reports.size());
+        assertFalse(reports.get(0).isEmpty());
+        assertTrue(reports.get(1).contains("Order is missing"));
+        assertEquals("", reports.get(2));
+    }
 }
@@ -1,9 +1,13 @@
 package com.rokupin.broker.session_handlers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rokupin.broker.model.StockStateSnapshot;
 import com.rokupin.broker.service.TradingService;
 import com.rokupin.broker.websocket.publishers.ClientInputHandler;
+import com.rokupin.broker.websocket.subscriptions.StateSubscriptions;
+import com.rokupin.broker.websocket.throttling.OrderRateLimiter;
 import com.rokupin.model.fix.ClientTradingRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -19,9 +23,15 @@ import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
 
 import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -44,7 +54,9 @@ class ClientInputHandlerTest {
     @BeforeEach
     void setUp() {
         objectMapper = new ObjectMapper();
-        handler = new ClientInputHandler(objectMapper, tradingService);
+        handler = new ClientInputHandler(objectMapper, tradingService, 2,
+                new OrderRateLimiter(1000, 2000, 0, 0, new SimpleMeterRegistry()),
+                new StateSubscriptions(new SimpleMeterRegistry()));
 
         when(session.getId()).thenReturn(sessionId);
     }
@@ -92,6 +104,163 @@ class ClientInputHandlerTest {
                 .verify();
     }
 
+    @Test
+    void testHandle_onBatchRequest() throws Exception {
+        // --- ARRANGEMENT
+        String batchJson = objectMapper.writeValueAsString(
+                List.of(validRequest, validRequest));
+        String expectedState = "{\"stocks\":{}}";
+        String expectedReport = "{\"accepted\":1,\"reasons\":[null,\"invalid\"]}";
+
+        when(tradingService.getState()).thenReturn(expectedState);
+        when(session.receive()).thenReturn(Flux.just(mockMessage(batchJson)));
+        when(tradingService.handleMessagesFromClient(anyList(), eq(sessionId)))
+                .thenReturn(List.of("", "invalid"));
+
+        // --- ACTION
+        Publisher<String> result = handler.handle(session);
+
+        // --- ASSERTION
+        // single report with per-order results
+        StepVerifier.create(result)
+                .expectNext(expectedState)
+                .expectNext(expectedReport)
+                .expectComplete()
+                .verify();
+    }
+
+    @Test
+    void testHandle_onOversizedBatchRequest() throws Exception {
+        // --- ARRANGEMENT
+        String batchJson = objectMapper.writeValueAsString(
+                List.of(validRequest, validRequest, validRequest));
+        String expectedState = "{\"stocks\":{}}";
+
+        when(tradingService.getState()).thenReturn(expectedState);
+        when(session.receive()).thenReturn(Flux.just(mockMessage(batchJson)));
+
+        // --- ACTION
+        Publisher<String> result = handler.handle(session);
+
+        // --- ASSERTION
+        // whole batch is refused, nothing reaches the service
+        StepVerifier.create(result)
+                .expectNext(expectedState)
+                .expectNextMatches(response -> response.contains("exceeds the limit"))
+                .expectComplete()
+                .verify();
+        verify(tradingService, never()).handleMessagesFromClient(anyList(), any());
+    }
+
+    @Test
+    void testHandle_onSessionRateLimitExceeded() throws Exception {
+        // --- ARRANGEMENT
+        ClientInputHandler throttlingHandler = new ClientInputHandler(
+                objectMapper, tradingService, 2,
+                new OrderRateLimiter(0.001, 1, 0, 0, new SimpleMeterRegistry()),
+                new StateSubscriptions(new SimpleMeterRegistry()));
+        String requestJson = objectMapper.writeValueAsString(validRequest);
+        String expectedState = "{\"stocks\":{}}";
+
+        when(tradingService.getState()).thenReturn(expectedState);
+        when(session.receive()).thenReturn(Flux.just(
+                mockMessage(requestJson), mockMessage(requestJson)));
+        when(tradingService.handleMessageFromClient(any(), eq(sessionId)))
+                .thenReturn("");
+
+        // --- ACTION
+        Publisher<String> result = throttlingHandler.handle(session);
+
+        // --- ASSERTION
+        // second order is answered at once and never reaches the service
+        StepVerifier.create(result)
+                .expectNext(expectedState)
+                .expectNextMatches(response -> response.contains("rate limit exceeded"))
+                .expectComplete()
+                .verify();
+        verify(tradingService, times(1)).handleMessageFromClient(any(), any());
+    }
+
+    @Test
+    void testHandle_onSubscriptionRequest() {
+        // --- ARRANGEMENT
+        String subscription = "{\"subscribe\":{\"exchanges\":[\"E00001\"]," +
+                "\"instruments\":[\"TEST1\"]}}";
+        String expectedState = "{\"stocks\":{}}";
+        String expectedSlice = "{\"stocks\":{\"E00001\":{\"TEST1\":100}},\"version\":1}";
+
+        when(tradingService.getState()).thenReturn(expectedState);
+        when(tradingService.getSnapshot()).thenReturn(StockStateSnapshot.EMPTY.apply(Map.of(
+                "E00001", Map.of("TEST1", 100, "TEST2", 200),
+                "E00002", Map.of("TEST1", 300))));
+        when(session.receive()).thenReturn(Flux.just(mockMessage(subscription)));
+
+        // --- ACTION
+        Publisher<String> result = handler.handle(session);
+
+        // --- ASSERTION
+        // subscription is answered with the slice, and never reaches the service
+        StepVerifier.create(result)
+                .expectNext(expectedState)
+                .expectNext(expectedSlice)
+                .expectComplete()
+                .verify();
+        verify(tradingService, never()).handleMessageFromClient(any(), any());
+    }
+
+    @Test
+    void testHandle_onOrderWithSubscriptionLikeClOrdId() throws Exception {
+        // --- ARRANGEMENT
+        ClientTradingRequest order = new ClientTradingRequest("E0001", "TEST1", "buy", 100);
+        order.setClOrdId("resubscribe");
+        String requestJson = objectMapper.writeValueAsString(order);
+        String expectedState = "{\"stocks\":{}}";
+
+        when(tradingService.getState()).thenReturn(expectedState);
+        when(session.receive()).thenReturn(Flux.just(mockMessage(requestJson)));
+        when(tradingService.handleMessageFromClient(any(), eq(sessionId)))
+                .thenReturn("");
+
+        // --- ACTION
+        Publisher<String> result = handler.handle(session);
+
+        // --- ASSERTION
+        // free text of the order doesn't make it a subscription
+        StepVerifier.create(result)
+                .expectNext(expectedState)
+                .expectComplete()
+                .verify();
+        verify(tradingService).handleMessageFromClient(eq(order), eq(sessionId));
+    }
+
+    @Test
+    void testHandle_onSnapshotRequest() throws Exception {
+        // --- ARRANGEMENT
+        ClientTradingRequest order = new ClientTradingRequest("E0001", "TEST1", "buy", 100);
+        order.setClOrdId("snapshot");
+        String expectedState = "{\"stocks\":{}}";
+
+        when(tradingService.getState()).thenReturn(expectedState);
+        when(session.receive()).thenReturn(Flux.just(
+                mockMessage("{\"snapshot\":true}"),
+                mockMessage("{\"snapshot\":false}"),
+                mockMessage(objectMapper.writeValueAsString(order))));
+        when(tradingService.handleMessageFromClient(any(), eq(sessionId)))
+                .thenReturn("");
+
+        // --- ACTION
+        Publisher<String> result = handler.handle(session);
+
+        // --- ASSERTION
+        // state on connection and for the snapshot request, the order goes to the service
+        StepVerifier.create(result)
+                .expectNext(expectedState)
+                .expectNext(expectedState)
+                .expectComplete()
+                .verify();
+        verify(tradingService).handleMessageFromClient(eq(order), eq(sessionId));
+    }
+
     private WebSocketMessage mockMessage(String payload) {
         DataBufferFactory bufferFactory = new DefaultDataBufferFactory();
         DataBuffer dataBuffer = bufferFactory.wrap(payload.getBytes(StandardCharsets.UTF_8));
@@ -5,7 +5,11 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rokupin.broker.events.BrokerEvent;
 import com.rokupin.broker.events.InputEventPublisher;
 import com.rokupin.broker.model.StocksStateMessage;
+import com.rokupin.broker.model.StocksStatePatch;
 import com.rokupin.broker.websocket.publishers.StocksStateMessageEventHandler;
+import com.rokupin.broker.websocket.subscriptions.StateSubscriptions;
+import com.rokupin.broker.websocket.subscriptions.StateTopic;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -15,9 +19,13 @@ import org.reactivestreams.Publisher;
 import org.springframework.web.reactive.socket.WebSocketSession;
 import reactor.test.StepVerifier;
 
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Executors;
 
+import static org.mockito.Mockito.when;
+
 @ExtendWith(MockitoExtension.class)
 class StocksStateMessageEventHandlerTest {
 
@@ -27,20 +35,25 @@ class StocksStateMessageEventHandlerTest {
     private ObjectMapper objectMapper;
     private StocksStateMessageEventHandler handler;
     private InputEventPublisher<BrokerEvent<StocksStateMessage>> consumer;
+    private StateSubscriptions subscriptions;
 
     @BeforeEach
     void setUp() {
         objectMapper = new ObjectMapper();
         consumer = new InputEventPublisher<>(Executors.newSingleThreadExecutor());
-        handler = new StocksStateMessageEventHandler(objectMapper, consumer);
+        subscriptions = new StateSubscriptions(new SimpleMeterRegistry());
+        handler = new StocksStateMessageEventHandler(objectMapper, consumer,
+                subscriptions, new SimpleMeterRegistry());
     }
 
     @Test
     void testHandle_onValidStockStateMessage() throws JsonProcessingException {
         // --- ARRANGEMENT
+        when(session.getId()).thenReturn("0");
         StocksStateMessage stocksStateMessage = new StocksStateMessage(
                 Map.of("E00001", Map.of("TEST1", 100, "TEST2", 200),
-                        "E00002", Map.of("TEST3", 300))
+                        "E00002", Map.of("TEST3", 300)),
+                1
         );
 
         // --- ACTION
@@ -53,4 +66,66 @@ class StocksStateMessageEventHandlerTest {
                 .thenCancel()
                 .verify();
     }
+
+    @Test
+    void testHandle_onSubscribedSession() throws JsonProcessingException {
+        // --- ARRANGEMENT
+        when(session.getId()).thenReturn("0");
+        subscriptions.subscribe("0", Set.of(new StateTopic(null, "TEST1")));
+        StocksStateMessage initial = new StocksStateMessage(
+                Map.of("E00001", Map.of("TEST1", 100, "TEST2", 200)), 1);
+        StocksStateMessage otherChanged = new StocksStateMessage(
+                Map.of("E00001", Map.of("TEST1", 100, "TEST2", 250)), 2);
+        StocksStateMessage subscribedChanged = new StocksStateMessage(
+                Map.of("E00001", Map.of("TEST1", 150, "TEST2", 250)), 3);
+
+        // --- ACTION
+        Publisher<String> result = handler.handle(session);
+
+        // --- ASSERTION
+        // change of an instrument session isn't subscribed to is not sent,
+        // the next patch applies to the last version session got
+        StepVerifier.create(result)
+                .then(() -> {
+                    consumer.onApplicationEvent(new BrokerEvent<>(initial));
+                    consumer.onApplicationEvent(new BrokerEvent<>(otherChanged));
+                    consumer.onApplicationEvent(new BrokerEvent<>(subscribedChanged));
+                })
+                .expectNext(objectMapper.writeValueAsString(new StocksStateMessage(
+                        Map.of("E00001", Map.of("TEST1", 100)), 1)))
+                .expectNext(objectMapper.writeValueAsString(new StocksStatePatch(
+                        3, 1, Map.of("E00001", Map.of("TEST1", 150)))))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void testHandle_onFollowingStockStateMessages() throws JsonProcessingException {
+        // --- ARRANGEMENT
+        when(session.getId()).thenReturn("0");
+        StocksStateMessage initial = new StocksStateMessage(
+                Map.of("E00001", Map.of("TEST1", 100, "TEST2", 200),
+                        "E00002", Map.of("TEST3", 300)), 1);
+        StocksStateMessage changed = new StocksStateMessage(
+                Map.of("E00001", Map.of("TEST1", 100, "TEST2", 250)), 2);
+        Map<String, Map<String, Integer>> expectedPatch = new HashMap<>();
+        expectedPatch.put("E00001", Map.of("TEST2", 250));
+        expectedPatch.put("E00002", null);
+
+        // --- ACTION
+        Publisher<String> result = handler.handle(session);
+
+        // --- ASSERTION
+        // full state first, only what changed afterwards
+        StepVerifier.create(result)
+                .then(() -> {
+                    consumer.onApplicationEvent(new BrokerEvent<>(initial));
+                    consumer.onApplicationEvent(new BrokerEvent<>(changed));
+                })
+                .expectNext(objectMapper.writeValueAsString(initial))
+                .expectNext(objectMapper.writeValueAsString(
+                        new StocksStatePatch(2, 1, expectedPatch)))
+                .thenCancel()
+                .verify();
+    }
 }
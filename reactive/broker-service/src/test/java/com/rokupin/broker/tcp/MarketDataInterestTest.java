@@ -0,0 +1,36 @@
+package com.rokupin.broker.tcp;
+
+import com.rokupin.broker.tcp.service.MarketDataInterest;
+import com.rokupin.model.fix.FixMarketDataRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MarketDataInterestTest {
+
+    @Test
+    void testOf_emptyConfigMeansEverything() {
+        // --- ACTION & ASSERTION
+        assertTrue(MarketDataInterest.of("", " ").isEverything());
+        assertTrue(MarketDataInterest.of(null, null).isEverything());
+    }
+
+    @Test
+    void testSubscription_carriesConfiguredNames() throws Exception {
+        // --- ARRANGEMENT
+        MarketDataInterest interest = MarketDataInterest.of("E00000, E00001,", "TEST1,TEST1");
+
+        // --- ACTION
+        FixMarketDataRequest request = interest.subscription("B00000", "R0000");
+
+        // --- ASSERTION
+        assertFalse(interest.isEverything());
+        assertTrue(request.isSubscribe());
+        assertEquals("B00000", request.getSender());
+        assertEquals("R0000", request.getTarget());
+        assertEquals(List.of("E00000", "E00001"), request.getExchanges());
+        assertEquals(List.of("TEST1"), request.getInstruments());
+    }
+}
@@ -0,0 +1,72 @@
+package com.rokupin.broker.tcp;
+
+import com.rokupin.broker.tcp.service.OutboundOrderBuffer;
+import com.rokupin.model.fix.FixRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboundOrderBufferTest {
+    private final long ttl = 1_000;
+
+    @Test
+    void testOffer_onFullBuffer() throws Exception {
+        // --- ARRANGEMENT
+        OutboundOrderBuffer buffer = new OutboundOrderBuffer(2, ttl);
+
+        // --- ACTION & ASSERTION
+        assertTrue(buffer.offer(makeRequest(1), 0));
+        assertTrue(buffer.offer(makeRequest(2), 0));
+        assertFalse(buffer.offer(makeRequest(3), 0));
+        assertEquals(2, buffer.size());
+    }
+
+    @Test
+    void testDrain_keepsOrderAndSplitsExpired() throws Exception {
+        // --- ARRANGEMENT
+        OutboundOrderBuffer buffer = new OutboundOrderBuffer(10, ttl);
+        buffer.offer(makeRequest(1), 0);
+        buffer.offer(makeRequest(2), 500);
+        buffer.offer(makeRequest(3), 600);
+        List<OutboundOrderBuffer.PendingOrder> live = new ArrayList<>();
+        List<FixRequest> expired = new ArrayList<>();
+
+        // --- ACTION
+        buffer.drain(1_200, live, expired);
+
+        // --- ASSERTION
+        assertEquals(List.of(makeRequest(1)), expired);
+        assertEquals(List.of(makeRequest(2), makeRequest(3)),
+                live.stream().map(OutboundOrderBuffer.PendingOrder::request).toList());
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    void testRestoreAndExpire() throws Exception {
+        // --- ARRANGEMENT
+        OutboundOrderBuffer buffer = new OutboundOrderBuffer(10, ttl);
+        buffer.offer(makeRequest(1), 0);
+        buffer.offer(makeRequest(2), 500);
+        List<OutboundOrderBuffer.PendingOrder> live = new ArrayList<>();
+        buffer.drain(0, live, new ArrayList<>());
+        buffer.offer(makeRequest(3), 700);
+
+        // --- ACTION
+        // failed replay puts orders back in front of the newer ones
+        buffer.restore(live);
+        List<FixRequest> expired = new ArrayList<>();
+        buffer.expire(1_600, expired);
+
+        // --- ASSERTION
+        assertEquals(List.of(makeRequest(1), makeRequest(2)), expired);
+        assertEquals(1, buffer.size());
+    }
+
+    private FixRequest makeRequest(int amount) throws Exception {
+        return new FixRequest("B00000", "1", "E00000", "TEST1",
+                FixRequest.SIDE_BUY, amount);
+    }
+}
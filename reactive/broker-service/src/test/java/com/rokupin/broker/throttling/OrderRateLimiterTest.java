@@ -0,0 +1,44 @@
+package com.rokupin.broker.throttling;
+
+import com.rokupin.broker.websocket.throttling.OrderRateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderRateLimiterTest {
+
+    @Test
+    void testTryAcquire_userLimitSharedAcrossSessions() {
+        // --- ARRANGEMENT
+        OrderRateLimiter limiter = new OrderRateLimiter(0, 0, 0.001, 2,
+                new SimpleMeterRegistry());
+
+        // --- ACTION & ASSERTION
+        assertTrue(limiter.tryAcquire("s1", "alice", 1));
+        assertTrue(limiter.tryAcquire("s2", "alice", 1));
+        assertFalse(limiter.tryAcquire("s2", "alice", 1));
+        assertTrue(limiter.tryAcquire("s3", "bob", 1));
+    }
+
+    @Test
+    void testRelease_dropsUserBucketWithLastSession() {
+        // --- ARRANGEMENT
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        OrderRateLimiter limiter = new OrderRateLimiter(0, 0, 0.001, 1, meterRegistry);
+        limiter.tryAcquire("s1", "alice", 1);
+        limiter.tryAcquire("s2", "alice", 1);
+
+        // --- ACTION & ASSERTION
+        limiter.release("s1", "alice");
+        assertEquals(1, trackedUsers(meterRegistry));
+        assertFalse(limiter.tryAcquire("s2", "alice", 1));
+
+        limiter.release("s2", "alice");
+        assertEquals(0, trackedUsers(meterRegistry));
+    }
+
+    private double trackedUsers(SimpleMeterRegistry meterRegistry) {
+        return meterRegistry.get("broker.orders.rate-limited-users").gauge().value();
+    }
+}
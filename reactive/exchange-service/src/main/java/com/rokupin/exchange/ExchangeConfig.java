@@ -5,23 +5,46 @@ import com.rokupin.exchange.controller.TcpController;
 import com.rokupin.exchange.repo.StockRepo;
 import com.rokupin.exchange.service.ExchangeService;
 import com.rokupin.exchange.service.ExchangeServiceImpl;
+import com.rokupin.fix.transport.ShmOptions;
+import com.rokupin.fix.transport.SocketOptions;
+import com.rokupin.fix.transport.TransportProfile;
+import com.rokupin.fix.transport.shm.WaitStrategy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
 public class ExchangeConfig {
+    @Bean(destroyMethod = "dispose")
+    TransportProfile routerTransport(@Value("${tcp.transport.native}") boolean nativeTransport,
+                                     @Value("${tcp.transport.threads}") int threads,
+                                     @Value("${tcp.transport.unix-socket}") String unixSocket,
+                                     @Value("${tcp.transport.socket.no-delay}") boolean noDelay,
+                                     @Value("${tcp.transport.socket.keep-alive}") boolean keepAlive,
+                                     @Value("${tcp.transport.socket.send-buffer}") int sendBuffer,
+                                     @Value("${tcp.transport.socket.receive-buffer}") int receiveBuffer,
+                                     @Value("${tcp.transport.shm.dir}") String shmDir,
+                                     @Value("${tcp.transport.shm.ring-size}") int ringSize,
+                                     @Value("${tcp.transport.shm.wait-strategy}") String waitStrategy) {
+        return new TransportProfile("exchange-router", nativeTransport, threads,
+                new SocketOptions(noDelay, keepAlive, sendBuffer, receiveBuffer, 0, 0),
+                unixSocket,
+                new ShmOptions(shmDir, ringSize, WaitStrategy.of(waitStrategy)));
+    }
+
     @Bean
     TcpController tcpController(@Value("${tcp.host}") String host,
                                 @Value("${tcp.port}") int port,
-                                ExchangeService service) {
-        return new TcpController(host, port, service);
+                                ExchangeService service,
+                                TransportProfile routerTransport) {
+        return new TcpController(host, port, service, routerTransport);
     }
 
     @Bean
     ExchangeService exchangeService(@Value("${exchange.max-amount}") int maxAmount,
+                                    @Value("${exchange.group}") String group,
                                     StockRepo stockRepo,
                                     ObjectMapper objectMapper) {
-        return new ExchangeServiceImpl(stockRepo, objectMapper, maxAmount);
+        return new ExchangeServiceImpl(stockRepo, objectMapper, maxAmount, group);
     }
 }
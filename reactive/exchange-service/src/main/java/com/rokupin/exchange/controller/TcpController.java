@@ -2,18 +2,22 @@ package com.rokupin.exchange.controller;
 
 import com.rokupin.exchange.service.ExchangeService;
 import com.rokupin.fix.FixMessageProcessor;
+import com.rokupin.fix.transport.TransportProfile;
 import com.rokupin.model.fix.*;
 import lombok.extern.slf4j.Slf4j;
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.netty.Connection;
+import reactor.netty.NettyInbound;
+import reactor.netty.NettyOutbound;
 import reactor.netty.tcp.TcpClient;
 import reactor.util.retry.Retry;
 
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.Objects;
+import java.util.function.BiFunction;
 
 @Slf4j
 public class TcpController {
@@ -22,26 +26,26 @@ public class TcpController {
     private final Connection connection;
     private final ExchangeService service;
 
-    public TcpController(String host, int port, ExchangeService service) {
+    public TcpController(String host, int port, ExchangeService service, TransportProfile transport) {
         this.service = service;
-        this.connection = connectTcpClient(host, port);
+        this.connection = connectTcpClient(host, port, transport);
         this.routerInputProcessor = new FixMessageProcessor();
     }
 
-    private Connection connectTcpClient(String host, int port) {
+    private Connection connectTcpClient(String host, int port, TransportProfile transport) {
+        BiFunction<NettyInbound, NettyOutbound, Publisher<Void>> handler = (inbound, outbound) -> {
+            initializeProcessor();
+            return inbound.receive()
+                    .asString(StandardCharsets.UTF_8)
+                    .doOnNext(routerInputProcessor::processInput)
+                    .then();
+        };
 
-        TcpClient client = TcpClient.create()
-                .host(host)
-                .port(port)
-                .handle((inbound, outbound) -> {
-                    initializeProcessor();
-                    return inbound.receive()
-                            .asString(StandardCharsets.UTF_8)
-                            .doOnNext(routerInputProcessor::processInput)
-                            .then();
-                });
+        Mono<? extends Connection> connect = transport.isSharedMemory() ?
+                transport.shmClient().handle(handler).connect() :
+                transport.configure(TcpClient.create(), host, port).handle(handler).connect();
 
-        return client.connect()
+        return connect
                 .doOnError(e -> log.info("Connection failed: {}", e.getMessage()))
                 .retryWhen(retrySpec())
                 .doOnSuccess(conn -> log.info("Connected successfully to {}:{}", host, port))
@@ -77,8 +81,14 @@ public class TcpController {
     private Mono<Void> handleIncomingMessage(String msg) {
         log.debug("Received message: '{}'", msg);
 
+        if (FixMessage.isOfType(msg, FixTestRequest.MSG_TEST_REQUEST))
+            return answerTestRequest(msg);
+        if (FixMessage.isOfType(msg, FixHeartbeat.MSG_HEARTBEAT))
+            return Mono.empty();
+
         try { // is it a trading request?
             FixRequest request = FixMessage.fromFix(msg, new FixRequest());
+            request.getTimestamps().setExchangeIn(HopTimestamps.nowMicros());
             log.debug("Processing trading request");
             if (!Objects.isNull(assignedId)) {
                 log.debug("Calling prepareSendResponse for {}", request);
@@ -106,6 +116,21 @@ public class TcpController {
         return Mono.empty();
     }
 
+    // router disconnects exchanges that don't answer
+    private Mono<Void> answerTestRequest(String msg) {
+        try {
+            FixTestRequest request = FixMessage.fromFix(msg, new FixTestRequest());
+            String sender = Objects.isNull(assignedId) ? "not assigned" : assignedId;
+            return connection.outbound()
+                    .sendString(Mono.just(FixHeartbeat.answer(request, sender).asFix()),
+                            StandardCharsets.UTF_8)
+                    .then();
+        } catch (FixMessageMisconfiguredException e) {
+            log.warn("Received invalid test request: {}", e.getMessage());
+            return Mono.empty();
+        }
+    }
+
     private Mono<Void> sendStateMessage() {
         return service.publishCurrentStockState(assignedId)
                 .flatMap(stateReport -> {
@@ -119,6 +144,7 @@ public class TcpController {
     private Mono<Void> prepareSendResponse(FixRequest request) {
         return service.processTradeRequest(request, assignedId)
                 .flatMap(response -> {
+                    response.getTimestamps().setExchangeOut(HopTimestamps.nowMicros());
                     try {
                         log.debug("Sending response: {}", response.asFix());
                         Publisher<String> to_send;
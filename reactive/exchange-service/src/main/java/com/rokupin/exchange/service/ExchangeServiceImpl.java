@@ -21,13 +21,16 @@ import java.util.concurrent.TimeoutException;
 @Transactional
 public class ExchangeServiceImpl implements ExchangeService  {
     private final int maxAmount;
+    private final String group;
     private final StockRepo stockRepo;
     private final ObjectMapper objectMapper;
 
     public ExchangeServiceImpl(StockRepo stockRepo,
                                ObjectMapper objectMapper,
-                               int maxAmount) {
+                               int maxAmount,
+                               String group) {
         this.maxAmount = maxAmount;
+        this.group = group;
         this.objectMapper = objectMapper;
         this.stockRepo = stockRepo;
 
@@ -67,6 +70,7 @@ public class ExchangeServiceImpl implements ExchangeService  {
                         return Mono.just(
                                 new FixStockStateReport(
                                         assignedId,
+                                        group,
                                         objectMapper.writeValueAsString(map)
                                 ).asFix()
                         );
@@ -91,6 +95,7 @@ public class ExchangeServiceImpl implements ExchangeService  {
                     FixResponse.MSG_ORD_FILLED,
                     FixResponse.UNSPECIFIED
             );
+            response.echoRequest(request);
             return stockRepo.findByName(request.getInstrument())
                     .timeout(Duration.ofSeconds(2))
                     .flatMap(entry -> prepareResponse(entry, request, response))
@@ -0,0 +1,25 @@
+package com.rokupin.fix.transport;
+
+import com.rokupin.fix.transport.shm.WaitStrategy;
+
+import java.util.Objects;
+
+/**
+ * Shared memory transport of a profile.
+ *
+ * @param directory    where connection files are made, e.g. under /dev/shm;
+ *                     null or empty disables shared memory
+ * @param ringCapacity bytes of each direction's ring, a power of 2; chosen
+ *                     by the client, server accepts any
+ * @param waitStrategy how readers wait for data
+ */
+public record ShmOptions(String directory, int ringCapacity, WaitStrategy waitStrategy) {
+
+    public static ShmOptions disabled() {
+        return new ShmOptions(null, 0, WaitStrategy.PARK);
+    }
+
+    public boolean isEnabled() {
+        return Objects.nonNull(directory) && !directory.isBlank();
+    }
+}
@@ -0,0 +1,29 @@
+package com.rokupin.fix.transport;
+
+/**
+ * Options applied to every connection of a transport profile.
+ * Buffer sizes and watermarks of 0 leave operating system and Netty defaults.
+ *
+ * @param noDelay               TCP_NODELAY - send small FIX messages at once
+ *                              rather than coalescing them (Nagle's algorithm)
+ * @param keepAlive             SO_KEEPALIVE
+ * @param sendBufferSize        SO_SNDBUF, bytes
+ * @param receiveBufferSize     SO_RCVBUF, bytes
+ * @param writeBufferLowWatermark  channel becomes writable again below it, bytes
+ * @param writeBufferHighWatermark channel becomes unwritable above it, bytes
+ */
+public record SocketOptions(boolean noDelay,
+                            boolean keepAlive,
+                            int sendBufferSize,
+                            int receiveBufferSize,
+                            int writeBufferLowWatermark,
+                            int writeBufferHighWatermark) {
+
+    public static SocketOptions defaults() {
+        return new SocketOptions(true, true, 0, 0, 0, 0);
+    }
+
+    public boolean hasWatermarks() {
+        return writeBufferLowWatermark > 0 && writeBufferHighWatermark >= writeBufferLowWatermark;
+    }
+}
@@ -0,0 +1,162 @@
+package com.rokupin.fix.transport;
+
+import com.rokupin.fix.transport.shm.ShmClient;
+import com.rokupin.fix.transport.shm.ShmServer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.unix.DomainSocketAddress;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.netty.resources.LoopResources;
+import reactor.netty.tcp.TcpClient;
+import reactor.netty.tcp.TcpServer;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Event loops and socket settings of one side of the FIX traffic.
+ * <p>
+ * Each profile runs on its own loop group, so that traffic of one side
+ * (e.g. brokers) doesn't wait behind the other (exchanges) on a shared
+ * event loop. With native transport enabled, Reactor Netty uses io_uring
+ * if it's on the classpath, epoll on Linux or kqueue on macOS, and falls
+ * back to NIO where none is available.
+ * <p>
+ * Co-located services may talk over a Unix domain socket instead of TCP,
+ * which skips the network stack (requires native transport), or over
+ * shared memory rings, which skip the kernel altogether.
+ */
+@Slf4j
+@Getter
+public class TransportProfile implements Disposable {
+    private final String name;
+    private final boolean nativeTransport;
+    private final int workerThreads;
+    private final SocketOptions socketOptions;
+    private final String unixSocket;
+    private final ShmOptions shmOptions;
+    private final LoopResources loops;
+
+    /**
+     * @param workerThreads event loop threads, 0 - one per CPU core
+     * @param unixSocket    path of the domain socket, null or empty for TCP
+     */
+    public TransportProfile(String name,
+                            boolean nativeTransport,
+                            int workerThreads,
+                            SocketOptions socketOptions,
+                            String unixSocket) {
+        this(name, nativeTransport, workerThreads, socketOptions, unixSocket, ShmOptions.disabled());
+    }
+
+    public TransportProfile(String name,
+                            boolean nativeTransport,
+                            int workerThreads,
+                            SocketOptions socketOptions,
+                            String unixSocket,
+                            ShmOptions shmOptions) {
+        this.name = name;
+        this.nativeTransport = nativeTransport;
+        this.workerThreads = workerThreads > 0 ?
+                workerThreads : LoopResources.DEFAULT_IO_WORKER_COUNT;
+        this.socketOptions = socketOptions;
+        this.unixSocket = Objects.isNull(unixSocket) || unixSocket.isBlank() ?
+                null : unixSocket;
+        this.shmOptions = shmOptions;
+        this.loops = LoopResources.create(name, 1, this.workerThreads, true);
+
+        if (isUnixSocket() && !isNativeActive())
+            throw new IllegalStateException("Transport '" + name + "': unix domain " +
+                    "socket requires native transport, which is disabled or not available");
+        if (isUnixSocket() && isSharedMemory())
+            throw new IllegalStateException("Transport '" + name + "': either unix " +
+                    "domain socket or shared memory can be used, not both");
+        log.info("Transport '{}': {} on {} threads{}{}", name,
+                isNativeActive() ? "native" : "nio", this.workerThreads,
+                isUnixSocket() ? ", unix socket " + this.unixSocket : "",
+                isSharedMemory() ? ", shared memory " + shmOptions.directory() : "");
+    }
+
+    public static TransportProfile defaults(String name) {
+        return new TransportProfile(name, true, 0, SocketOptions.defaults(), null);
+    }
+
+    public boolean isNativeActive() {
+        return nativeTransport && LoopResources.hasNativeSupport();
+    }
+
+    public boolean isUnixSocket() {
+        return Objects.nonNull(unixSocket);
+    }
+
+    public boolean isSharedMemory() {
+        return shmOptions.isEnabled();
+    }
+
+    /**
+     * @return server accepting connections in profile's shared memory directory
+     */
+    public ShmServer shmServer() {
+        return ShmServer.create(Path.of(shmOptions.directory()),
+                shmOptions.waitStrategy(), loops.onServer(nativeTransport));
+    }
+
+    /**
+     * @return client connecting to a server in profile's shared memory directory
+     */
+    public ShmClient shmClient() {
+        return ShmClient.create(Path.of(shmOptions.directory()), shmOptions.ringCapacity(),
+                shmOptions.waitStrategy(), loops.onClient(nativeTransport));
+    }
+
+    public TcpServer configure(TcpServer server, String host, int port) {
+        server = server.runOn(loops, nativeTransport);
+        server = isUnixSocket() ?
+                server.bindAddress(() -> new DomainSocketAddress(unixSocket)) :
+                server.host(host).port(port)
+                        .childOption(ChannelOption.TCP_NODELAY, socketOptions.noDelay())
+                        .childOption(ChannelOption.SO_KEEPALIVE, socketOptions.keepAlive());
+
+        if (socketOptions.sendBufferSize() > 0)
+            server = server.childOption(ChannelOption.SO_SNDBUF, socketOptions.sendBufferSize());
+        if (socketOptions.receiveBufferSize() > 0)
+            server = server.childOption(ChannelOption.SO_RCVBUF, socketOptions.receiveBufferSize());
+        if (socketOptions.hasWatermarks())
+            server = server.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, waterMark());
+        return server;
+    }
+
+    public TcpClient configure(TcpClient client, String host, int port) {
+        client = client.runOn(loops, nativeTransport);
+        client = isUnixSocket() ?
+                client.remoteAddress(() -> new DomainSocketAddress(unixSocket)) :
+                client.host(host).port(port)
+                        .option(ChannelOption.TCP_NODELAY, socketOptions.noDelay())
+                        .option(ChannelOption.SO_KEEPALIVE, socketOptions.keepAlive());
+
+        if (socketOptions.sendBufferSize() > 0)
+            client = client.option(ChannelOption.SO_SNDBUF, socketOptions.sendBufferSize());
+        if (socketOptions.receiveBufferSize() > 0)
+            client = client.option(ChannelOption.SO_RCVBUF, socketOptions.receiveBufferSize());
+        if (socketOptions.hasWatermarks())
+            client = client.option(ChannelOption.WRITE_BUFFER_WATER_MARK, waterMark());
+        return client;
+    }
+
+    @Override
+    public void dispose() {
+        loops.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return loops.isDisposed();
+    }
+
+    private WriteBufferWaterMark waterMark() {
+        return new WriteBufferWaterMark(socketOptions.writeBufferLowWatermark(),
+                socketOptions.writeBufferHighWatermark());
+    }
+}
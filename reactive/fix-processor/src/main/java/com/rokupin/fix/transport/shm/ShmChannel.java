@@ -0,0 +1,215 @@
+package com.rokupin.fix.transport.shm;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.*;
+
+import java.net.SocketAddress;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Netty channel over a {@link ShmRegion}, so that Reactor Netty connections
+ * and the handlers built on them work unchanged over shared memory.
+ * <p>
+ * Writes happen on the event loop: bytes are copied into the outbound ring,
+ * if it's full, the rest is retried shortly and stays in the channel's
+ * outbound buffer meanwhile - so write watermarks and writability work as
+ * with sockets. Reads happen on a dedicated thread, which polls the inbound
+ * ring with the configured wait strategy and hands data to the event loop.
+ * It reads only when a read was requested, one buffer per request, so with
+ * auto-read off unread data stays in the ring and backs up to the writer,
+ * like an unread socket would.
+ */
+public class ShmChannel extends AbstractChannel {
+    private static final ChannelMetadata METADATA = new ChannelMetadata(false);
+    private static final int MAX_READ = 64 * 1024;
+    private static final long FLUSH_RETRY_MICROS = 20;
+
+    private final ShmRegion region;
+    private final boolean server;
+    private final WaitStrategy waitStrategy;
+    private final SpscByteRing inbound;
+    private final SpscByteRing outbound;
+    private final ChannelConfig config;
+    private final ShmAddress address;
+
+    private volatile boolean open;
+    private volatile boolean readRequested;
+    private Thread reader;
+    private boolean flushScheduled;
+
+    public ShmChannel(ShmRegion region, boolean server, WaitStrategy waitStrategy) {
+        super(null);
+        this.region = region;
+        this.server = server;
+        this.waitStrategy = waitStrategy;
+        this.inbound = region.inbound(server);
+        this.outbound = region.outbound(server);
+        this.config = new DefaultChannelConfig(this);
+        this.address = new ShmAddress(region.getPath());
+        this.open = true;
+    }
+
+    @Override
+    public ChannelConfig config() {
+        return config;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isActive() {
+        return open;
+    }
+
+    @Override
+    public ChannelMetadata metadata() {
+        return METADATA;
+    }
+
+    @Override
+    protected AbstractUnsafe newUnsafe() {
+        return new AbstractUnsafe() {
+            @Override
+            public void connect(SocketAddress remoteAddress,
+                                SocketAddress localAddress,
+                                ChannelPromise promise) {
+                promise.setFailure(new UnsupportedOperationException(
+                        "Shared memory channels are connected by ShmClient"));
+            }
+        };
+    }
+
+    @Override
+    protected boolean isCompatible(EventLoop loop) {
+        return loop instanceof SingleThreadEventLoop;
+    }
+
+    @Override
+    protected SocketAddress localAddress0() {
+        return address;
+    }
+
+    @Override
+    protected SocketAddress remoteAddress0() {
+        return address;
+    }
+
+    @Override
+    protected void doBind(SocketAddress localAddress) {
+        throw new UnsupportedOperationException("Shared memory channels are not bound");
+    }
+
+    @Override
+    protected void doDisconnect() {
+        doClose();
+    }
+
+    @Override
+    protected void doClose() {
+        if (!open)
+            return;
+        open = false;
+        region.markClosed(server);
+        region.delete();
+    }
+
+    @Override
+    protected void doBeginRead() {
+        if (!open)
+            return;
+        readRequested = true;
+        if (reader != null)
+            return;
+        reader = new Thread(this::readLoop, "shm-reader-" + region.getPath().getFileName());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    @Override
+    protected void doWrite(ChannelOutboundBuffer buffer) {
+        for (; ; ) {
+            Object msg = buffer.current();
+
+            if (msg == null)
+                return;
+            if (!(msg instanceof ByteBuf buf)) {
+                buffer.remove(new UnsupportedOperationException(
+                        "Unsupported message type: " + msg.getClass().getSimpleName()));
+                continue;
+            }
+
+            int written = outbound.write(buf);
+            if (written > 0)
+                buffer.progress(written);
+            if (buf.isReadable()) { // ring is full, consumer lags behind
+                scheduleFlush();
+                return;
+            }
+            buffer.remove();
+        }
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled)
+            return;
+        flushScheduled = true;
+        eventLoop().schedule(() -> {
+            flushScheduled = false;
+            unsafe().flush();
+        }, FLUSH_RETRY_MICROS, TimeUnit.MICROSECONDS);
+    }
+
+    private void readLoop() {
+        int idleCount = 0;
+
+        while (open) {
+            if (!readRequested) {
+                waitStrategy.idle(idleCount++);
+                continue;
+            }
+            int available = inbound.available();
+
+            if (available == 0) {
+                if (region.hasState(server ? ShmRegion.CLIENT_CLOSED : ShmRegion.SERVER_CLOSED)) {
+                    eventLoop().execute(() -> unsafe().close(unsafe().voidPromise()));
+                    return;
+                }
+                waitStrategy.idle(idleCount++);
+                continue;
+            }
+            idleCount = 0;
+            // next buffer waits for the pipeline to ask for it
+            readRequested = false;
+
+            ByteBuf buf = alloc().ioBuffer(Math.min(available, MAX_READ));
+            inbound.read(buf);
+            eventLoop().execute(() -> {
+                pipeline().fireChannelRead(buf);
+                pipeline().fireChannelReadComplete();
+                if (config.isAutoRead())
+                    read();
+            });
+        }
+    }
+
+    public static class ShmAddress extends SocketAddress {
+        private final Path path;
+
+        public ShmAddress(Path path) {
+            this.path = path;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        @Override
+        public String toString() {
+            return "shm:" + path;
+        }
+    }
+}
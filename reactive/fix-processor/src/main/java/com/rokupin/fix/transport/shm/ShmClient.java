@@ -0,0 +1,115 @@
+package com.rokupin.fix.transport.shm;
+
+import io.netty.channel.EventLoopGroup;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.Connection;
+import reactor.netty.ConnectionObserver;
+import reactor.netty.NettyInbound;
+import reactor.netty.NettyOutbound;
+import reactor.netty.channel.ChannelOperations;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Connects to a {@link ShmServer} on the same host: creates a connection
+ * file in server's directory and waits for the server to accept it.
+ * Mirrors the part of {@code TcpClient} API the services use.
+ */
+public class ShmClient {
+    private static final AtomicLong CONNECTION_COUNTER = new AtomicLong();
+    private static final Duration ACCEPT_TIMEOUT = Duration.ofSeconds(2);
+    private static final long POLL_NANOS = 1_000_000;
+
+    private final Path directory;
+    private final int ringCapacity;
+    private final WaitStrategy waitStrategy;
+    private final EventLoopGroup group;
+    private Consumer<? super Connection> onConnected;
+    private BiFunction<? super NettyInbound, ? super NettyOutbound, ? extends Publisher<Void>> handler;
+
+    private ShmClient(Path directory, int ringCapacity, WaitStrategy waitStrategy, EventLoopGroup group) {
+        this.directory = directory;
+        this.ringCapacity = ringCapacity;
+        this.waitStrategy = waitStrategy;
+        this.group = group;
+        this.onConnected = connection -> {};
+    }
+
+    public static ShmClient create(Path directory,
+                                   int ringCapacity,
+                                   WaitStrategy waitStrategy,
+                                   EventLoopGroup group) {
+        return new ShmClient(directory, ringCapacity, waitStrategy, group);
+    }
+
+    public ShmClient doOnConnected(Consumer<? super Connection> onConnected) {
+        this.onConnected = onConnected;
+        return this;
+    }
+
+    public ShmClient handle(BiFunction<? super NettyInbound, ? super NettyOutbound,
+            ? extends Publisher<Void>> handler) {
+        this.handler = handler;
+        return this;
+    }
+
+    /**
+     * @return connection, or {@link ConnectException} if server didn't accept it in time
+     */
+    public Mono<Connection> connect() {
+        return Mono.<Connection>create(sink -> {
+            ShmRegion region;
+            try {
+                region = openAccepted();
+            } catch (IOException e) {
+                sink.error(e);
+                return;
+            }
+
+            ShmChannel channel = new ShmChannel(region, false, waitStrategy);
+            ChannelOperations.addReactiveBridge(channel,
+                    (connection, observer, msg) -> new ChannelOperations<>(connection, observer),
+                    (connection, state) -> {
+                        if (state != ConnectionObserver.State.CONFIGURED)
+                            return;
+                        onConnected.accept(connection);
+                        if (Objects.nonNull(handler) && connection instanceof ChannelOperations<?, ?> ops)
+                            Mono.fromDirect(handler.apply(ops, ops)).subscribe(ops.disposeSubscriber());
+                        sink.success(connection);
+                    });
+            group.next().register(channel).addListener(f -> {
+                if (!f.isSuccess())
+                    sink.error(f.cause());
+            });
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private ShmRegion openAccepted() throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve("conn-" + ProcessHandle.current().pid() + "-" +
+                CONNECTION_COUNTER.incrementAndGet() + ShmRegion.FILE_SUFFIX);
+        ShmRegion region = ShmRegion.create(file, ringCapacity);
+        long deadline = System.nanoTime() + ACCEPT_TIMEOUT.toNanos();
+
+        while (!region.isAccepted()) {
+            if (System.nanoTime() > deadline) {
+                region.delete();
+                throw new ConnectException("Shared memory server in " + directory +
+                        " didn't accept connection");
+            }
+            LockSupport.parkNanos(POLL_NANOS);
+        }
+        return region;
+    }
+}
@@ -0,0 +1,125 @@
+package com.rokupin.fix.transport.shm;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory-mapped file of one connection: a header and two rings, one for
+ * each direction. Client creates the file, server accepts it by setting a
+ * flag in the header. Either side marks the file when it closes, the other
+ * side notices it and closes too.
+ * <pre>
+ * int    magic, written last by client - the file is ready
+ * int    ring capacity
+ * int    state flags
+ * ...    client to server ring, from offset 128
+ * ...    server to client ring
+ * </pre>
+ */
+public class ShmRegion {
+    public static final String FILE_SUFFIX = ".ring";
+
+    static final int CLIENT_OPEN = 1;
+    static final int SERVER_ACCEPTED = 2;
+    static final int CLIENT_CLOSED = 4;
+    static final int SERVER_CLOSED = 8;
+
+    private static final VarHandle INTS =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    private static final int MAGIC = 0x46495852; // "FIXR"
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 4;
+    private static final int STATE_OFFSET = 8;
+    private static final int HEADER_SIZE = 128;
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final SpscByteRing clientToServer;
+    private final SpscByteRing serverToClient;
+
+    private ShmRegion(Path path, MappedByteBuffer buffer, int capacity) {
+        int ringSize = SpscByteRing.regionSize(capacity);
+        this.path = path;
+        this.buffer = buffer;
+        this.clientToServer = new SpscByteRing(buffer.slice(HEADER_SIZE, ringSize), capacity);
+        this.serverToClient = new SpscByteRing(buffer.slice(HEADER_SIZE + ringSize, ringSize), capacity);
+    }
+
+    public static ShmRegion create(Path path, int capacity) throws IOException {
+        long size = HEADER_SIZE + 2L * SpscByteRing.regionSize(capacity);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(CAPACITY_OFFSET, capacity);
+            INTS.setRelease(buffer, STATE_OFFSET, CLIENT_OPEN);
+            INTS.setRelease(buffer, MAGIC_OFFSET, MAGIC);
+            return new ShmRegion(path, buffer, capacity);
+        }
+    }
+
+    /**
+     * @return null if file isn't a complete connection file
+     */
+    public static ShmRegion open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() < HEADER_SIZE)
+                return null;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            if ((int) INTS.getAcquire(buffer, MAGIC_OFFSET) != MAGIC)
+                return null;
+            int capacity = buffer.getInt(CAPACITY_OFFSET);
+            if (channel.size() != HEADER_SIZE + 2L * SpscByteRing.regionSize(capacity))
+                return null;
+            return new ShmRegion(path, buffer, capacity);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return false if connection was already accepted or closed
+     */
+    public boolean accept() {
+        int state = (int) INTS.getAndBitwiseOr(buffer, STATE_OFFSET, SERVER_ACCEPTED);
+        return state == CLIENT_OPEN;
+    }
+
+    public boolean isAccepted() {
+        return hasState(SERVER_ACCEPTED);
+    }
+
+    public boolean hasState(int flag) {
+        return ((int) INTS.getAcquire(buffer, STATE_OFFSET) & flag) != 0;
+    }
+
+    public void markClosed(boolean server) {
+        INTS.getAndBitwiseOr(buffer, STATE_OFFSET, server ? SERVER_CLOSED : CLIENT_CLOSED);
+    }
+
+    public SpscByteRing inbound(boolean server) {
+        return server ? clientToServer : serverToClient;
+    }
+
+    public SpscByteRing outbound(boolean server) {
+        return server ? serverToClient : clientToServer;
+    }
+
+    public void delete() {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // the other side may have deleted it
+        }
+    }
+}
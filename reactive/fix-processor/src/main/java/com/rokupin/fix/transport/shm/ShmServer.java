@@ -0,0 +1,143 @@
+package com.rokupin.fix.transport.shm;
+
+import io.netty.channel.EventLoopGroup;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.netty.Connection;
+import reactor.netty.ConnectionObserver;
+import reactor.netty.channel.ChannelOperations;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Accepts shared memory connections of the clients on the same host.
+ * <p>
+ * The directory (e.g. under /dev/shm) plays the role of the listening
+ * socket: each client creates a connection file in it, server polls the
+ * directory, accepts new files and hands a Reactor Netty connection over
+ * each of them to the connection handlers.
+ */
+@Slf4j
+public class ShmServer {
+    private static final long POLL_NANOS = 10_000_000;
+
+    private final Path directory;
+    private final WaitStrategy waitStrategy;
+    private final EventLoopGroup group;
+    private final List<Consumer<? super Connection>> handlers;
+
+    private ShmServer(Path directory, WaitStrategy waitStrategy, EventLoopGroup group) {
+        this.directory = directory;
+        this.waitStrategy = waitStrategy;
+        this.group = group;
+        this.handlers = new CopyOnWriteArrayList<>();
+    }
+
+    public static ShmServer create(Path directory, WaitStrategy waitStrategy, EventLoopGroup group) {
+        return new ShmServer(directory, waitStrategy, group);
+    }
+
+    /**
+     * @param handler called for each accepted connection, in order of registration
+     */
+    public ShmServer doOnConnection(Consumer<? super Connection> handler) {
+        handlers.add(handler);
+        return this;
+    }
+
+    public Disposable bindNow() {
+        try {
+            Files.createDirectories(directory);
+            removeStale();
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't listen on " + directory + ": " + e.getMessage(), e);
+        }
+
+        Set<ShmChannel> channels = ConcurrentHashMap.newKeySet();
+        Thread acceptor = new Thread(() -> acceptLoop(channels, new HashSet<>()),
+                "shm-acceptor-" + directory.getFileName());
+        acceptor.setDaemon(true);
+        acceptor.start();
+        log.info("Accepting shared memory connections in {}", directory);
+
+        return () -> {
+            acceptor.interrupt();
+            channels.forEach(ShmChannel::close);
+        };
+    }
+
+    // files that were accepted or refused aren't mapped again, until they're gone
+    private void acceptLoop(Set<ShmChannel> channels, Set<Path> known) {
+        while (!Thread.currentThread().isInterrupted()) {
+            try (DirectoryStream<Path> files =
+                         Files.newDirectoryStream(directory, "*" + ShmRegion.FILE_SUFFIX)) {
+                Set<Path> listed = new HashSet<>();
+                for (Path file : files) {
+                    listed.add(file);
+                    if (!known.contains(file) && accept(file, channels))
+                        known.add(file);
+                }
+                known.retainAll(listed);
+            } catch (IOException e) {
+                log.warn("Can't list {}: {}", directory, e.getMessage());
+            }
+            LockSupport.parkNanos(POLL_NANOS);
+        }
+    }
+
+    // @return false if the file should be looked at again
+    private boolean accept(Path file, Set<ShmChannel> channels) {
+        try {
+            ShmRegion region = ShmRegion.open(file);
+
+            // not complete yet
+            if (Objects.isNull(region))
+                return false;
+            // someone else's
+            if (!region.accept())
+                return true;
+
+            ShmChannel channel = new ShmChannel(region, true, waitStrategy);
+            ChannelOperations.addReactiveBridge(channel,
+                    (connection, observer, msg) -> new ChannelOperations<>(connection, observer),
+                    (connection, state) -> {
+                        if (state == ConnectionObserver.State.CONFIGURED)
+                            handlers.forEach(handler -> handler.accept(connection));
+                    });
+            channels.add(channel);
+            channel.closeFuture().addListener(f -> channels.remove(channel));
+            group.next().register(channel);
+            log.debug("Accepted shared memory connection {}", file.getFileName());
+            return true;
+        } catch (IOException e) {
+            log.debug("Can't open {}: {}", file.getFileName(), e.getMessage());
+            return false;
+        }
+    }
+
+    // files accepted by previous server instance: mark closed, so that
+    // clients reconnect
+    private void removeStale() throws IOException {
+        try (DirectoryStream<Path> files =
+                     Files.newDirectoryStream(directory, "*" + ShmRegion.FILE_SUFFIX)) {
+            for (Path file : files) {
+                ShmRegion region = ShmRegion.open(file);
+                if (Objects.nonNull(region) && region.isAccepted()) {
+                    region.markClosed(true);
+                    region.delete();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.rokupin.fix.transport.shm;
+
+import io.netty.buffer.ByteBuf;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Single-producer single-consumer byte stream over a region of shared
+ * memory. Positions only grow: producer publishes bytes by moving tail
+ * with release semantics, consumer frees them by moving head the same way.
+ * Each position is on a cache line of its own, so that producer and
+ * consumer don't invalidate each other's line on every update.
+ * <p>
+ * FIX frames need no framing here - receiving side splits the stream into
+ * messages, just as it does with TCP.
+ */
+public class SpscByteRing {
+    private static final VarHandle LONGS =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final int HEAD_OFFSET = 0;
+    private static final int TAIL_OFFSET = 64;
+    private static final int DATA_OFFSET = 128;
+
+    private final ByteBuffer region;
+    private final ByteBuffer producerView;
+    private final ByteBuffer consumerView;
+    private final int capacity;
+    private final int mask;
+
+    // last seen position of the other side, saves reading its cache line
+    private long cachedHead;
+    private long cachedTail;
+
+    /**
+     * @param region direct buffer of {@link #regionSize(int)} bytes, 8-byte aligned
+     */
+    public SpscByteRing(ByteBuffer region, int capacity) {
+        if (Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("Ring capacity must be a power of 2: " + capacity);
+        this.region = region;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        ByteBuffer data = region.slice(DATA_OFFSET, capacity);
+        this.producerView = data.duplicate();
+        this.consumerView = data.duplicate();
+        this.cachedHead = head();
+        this.cachedTail = tail();
+    }
+
+    public static int regionSize(int capacity) {
+        return DATA_OFFSET + capacity;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Producer side. Copies as many readable bytes of the source as fit.
+     *
+     * @return number of bytes written, source reader index is moved by it
+     */
+    public int write(ByteBuf source) {
+        long tail = (long) LONGS.getOpaque(region, TAIL_OFFSET);
+        int wanted = source.readableBytes();
+
+        if (capacity - (tail - cachedHead) < wanted)
+            cachedHead = head();
+
+        int count = (int) Math.min(wanted, capacity - (tail - cachedHead));
+        if (count == 0)
+            return 0;
+
+        int index = (int) (tail & mask);
+        int first = Math.min(count, capacity - index);
+        producerView.clear().position(index).limit(index + first);
+        source.readBytes(producerView);
+        if (first < count) {
+            producerView.clear().limit(count - first);
+            source.readBytes(producerView);
+        }
+        LONGS.setRelease(region, TAIL_OFFSET, tail + count);
+        return count;
+    }
+
+    /**
+     * Consumer side.
+     *
+     * @return number of bytes that can be read
+     */
+    public int available() {
+        long head = (long) LONGS.getOpaque(region, HEAD_OFFSET);
+
+        if (cachedTail == head)
+            cachedTail = tail();
+        return (int) (cachedTail - head);
+    }
+
+    /**
+     * Consumer side. Copies up to target's writable bytes.
+     *
+     * @return number of bytes read
+     */
+    public int read(ByteBuf target) {
+        long head = (long) LONGS.getOpaque(region, HEAD_OFFSET);
+        int count = Math.min(available(), target.writableBytes());
+
+        if (count == 0)
+            return 0;
+
+        int index = (int) (head & mask);
+        int first = Math.min(count, capacity - index);
+        consumerView.clear().position(index).limit(index + first);
+        target.writeBytes(consumerView);
+        if (first < count) {
+            consumerView.clear().limit(count - first);
+            target.writeBytes(consumerView);
+        }
+        LONGS.setRelease(region, HEAD_OFFSET, head + count);
+        return count;
+    }
+
+    private long head() {
+        return (long) LONGS.getAcquire(region, HEAD_OFFSET);
+    }
+
+    private long tail() {
+        return (long) LONGS.getAcquire(region, TAIL_OFFSET);
+    }
+}
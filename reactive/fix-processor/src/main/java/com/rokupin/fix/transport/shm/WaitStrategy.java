@@ -0,0 +1,53 @@
+package com.rokupin.fix.transport.shm;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * What the reader of a ring does while it's empty. Busy spin gives the
+ * lowest latency and burns a core per connection, park gives up the core
+ * after a short spin at the cost of tens of microseconds on wake up.
+ */
+public enum WaitStrategy {
+    BUSY_SPIN {
+        @Override
+        public void idle(int idleCount) {
+            Thread.onSpinWait();
+        }
+    },
+    YIELD {
+        @Override
+        public void idle(int idleCount) {
+            if (idleCount < SPIN_TRIES)
+                Thread.onSpinWait();
+            else
+                Thread.yield();
+        }
+    },
+    PARK {
+        @Override
+        public void idle(int idleCount) {
+            if (idleCount < SPIN_TRIES)
+                Thread.onSpinWait();
+            else if (idleCount < SPIN_TRIES + YIELD_TRIES)
+                Thread.yield();
+            else
+                LockSupport.parkNanos(PARK_NANOS);
+        }
+    };
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long PARK_NANOS = 50_000;
+
+    /**
+     * @param idleCount number of consecutive empty polls before this one
+     */
+    public abstract void idle(int idleCount);
+
+    /**
+     * @param name "busy-spin", "yield" or "park"
+     */
+    public static WaitStrategy of(String name) {
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+}
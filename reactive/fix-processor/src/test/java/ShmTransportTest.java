@@ -0,0 +1,130 @@
+import com.rokupin.fix.transport.shm.ShmChannel;
+import com.rokupin.fix.transport.shm.ShmClient;
+import com.rokupin.fix.transport.shm.ShmRegion;
+import com.rokupin.fix.transport.shm.ShmServer;
+import com.rokupin.fix.transport.shm.SpscByteRing;
+import com.rokupin.fix.transport.shm.WaitStrategy;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.DefaultEventLoopGroup;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ShmTransportTest {
+    private static final String MSG = "8=FIX.5.0\u000135=D\u000110=123\u0001";
+
+    private Path directory;
+    private DefaultEventLoopGroup group;
+
+    @BeforeEach
+    void before() throws Exception {
+        directory = Files.createTempDirectory("shm");
+        group = new DefaultEventLoopGroup(2);
+    }
+
+    @AfterEach
+    void after() throws Exception {
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList())
+                Files.deleteIfExists(file);
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    void testRingWrapsAround() {
+        SpscByteRing ring = new SpscByteRing(
+                ByteBuffer.allocateDirect(SpscByteRing.regionSize(16)), 16);
+        ByteBuf in = Unpooled.buffer(16);
+
+        assertEquals(10, ring.write(Unpooled.copiedBuffer("0123456789", StandardCharsets.US_ASCII)));
+        assertEquals(10, ring.read(in));
+        in.clear();
+
+        // 6 bytes left before the end of the ring, 4 more go to its start
+        ByteBuf wrapped = Unpooled.copiedBuffer("abcdefghijklmnopq", StandardCharsets.US_ASCII);
+        assertEquals(16, ring.write(wrapped));
+        assertEquals(1, wrapped.readableBytes());
+        assertEquals(16, ring.available());
+        assertEquals(16, ring.read(in));
+        assertEquals("abcdefghijklmnop", in.toString(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void testEcho() {
+        Disposable server = ShmServer.create(directory, WaitStrategy.PARK, group)
+                .doOnConnection(conn -> Mono.fromDirect(conn.outbound()
+                                .send(conn.inbound().receive().retain()))
+                        .subscribe(conn.disposeSubscriber()))
+                .bindNow();
+        try {
+            Connection client = ShmClient.create(directory, 1024, WaitStrategy.PARK, group)
+                    .connect()
+                    .block(Duration.ofSeconds(5));
+
+            String echo = client.outbound()
+                    .sendString(Mono.just(MSG), StandardCharsets.UTF_8)
+                    .then()
+                    .then(client.inbound().receive().asString(StandardCharsets.UTF_8).next())
+                    .block(Duration.ofSeconds(5));
+
+            assertEquals(MSG, echo);
+            client.disposeNow();
+        } finally {
+            server.dispose();
+        }
+    }
+
+    @Test
+    void testNoReadsWithoutRequest() throws Exception {
+        ShmRegion region = ShmRegion.create(directory.resolve("manual" + ShmRegion.FILE_SUFFIX), 1024);
+        ShmChannel channel = new ShmChannel(region, true, WaitStrategy.PARK);
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        channel.config().setAutoRead(false);
+        channel.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                ByteBuf buf = (ByteBuf) msg;
+                received.add(buf.toString(StandardCharsets.US_ASCII));
+                buf.release();
+            }
+        });
+        group.next().register(channel).sync();
+        try {
+            region.outbound(false).write(Unpooled.copiedBuffer(MSG, StandardCharsets.US_ASCII));
+
+            // stays in the ring until the pipeline asks for it
+            assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+            channel.read();
+            assertEquals(MSG, received.poll(5, TimeUnit.SECONDS));
+
+            // one read per request
+            region.outbound(false).write(Unpooled.copiedBuffer(MSG, StandardCharsets.US_ASCII));
+            assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+            channel.config().setAutoRead(true);
+            assertEquals(MSG, received.poll(5, TimeUnit.SECONDS));
+        } finally {
+            channel.close().sync();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+import com.rokupin.fix.transport.ShmOptions;
+import com.rokupin.fix.transport.SocketOptions;
+import com.rokupin.fix.transport.TransportProfile;
+import com.rokupin.fix.transport.shm.WaitStrategy;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+import reactor.netty.DisposableServer;
+import reactor.netty.resources.LoopResources;
+import reactor.netty.tcp.TcpClient;
+import reactor.netty.tcp.TcpServer;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares transport profiles on a FIX-sized echo: round trip latency of
+ * single messages and throughput of a pipelined batch. Shared memory is run
+ * with busy-spin and park readers, busy spin needs a spare core per reader.
+ * Not a test - run it manually:
+ * <pre>
+ * java -cp ... TransportBenchmark [round trips] [batch size]
+ * </pre>
+ */
+public class TransportBenchmark {
+    private static final byte[] ORDER = ("8=FIX.5.0\u00019=0000\u000135=D\u000149=B00000" +
+            "\u000150=1\u000156=E00000\u000111=c-000001\u000155=TEST\u000154=1" +
+            "\u000138=100\u000144=0\u00019001=1700000000000000\u000110=123\u0001")
+            .getBytes(StandardCharsets.US_ASCII);
+
+    public static void main(String[] args) throws Exception {
+        int roundTrips = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int batch = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        Path socket = Files.createTempDirectory("bench").resolve("fix.sock");
+
+        System.out.printf("%-12s %10s %10s %10s %12s%n",
+                "profile", "p50 us", "p99 us", "p99.9 us", "msg/s");
+        run("nio-tcp", false, null, roundTrips, batch);
+        if (LoopResources.hasNativeSupport()) {
+            run("native-tcp", true, null, roundTrips, batch);
+            run("native-unix", true, socket.toString(), roundTrips, batch);
+        } else {
+            System.out.println("native transport is not available, skipped");
+        }
+        runShm(socket.getParent().resolve("shm"), WaitStrategy.BUSY_SPIN, roundTrips, batch);
+        runShm(socket.getParent().resolve("shm"), WaitStrategy.PARK, roundTrips, batch);
+        Files.deleteIfExists(socket);
+        Files.deleteIfExists(socket.getParent().resolve("shm"));
+        Files.deleteIfExists(socket.getParent());
+    }
+
+    private static void runShm(Path directory, WaitStrategy waitStrategy,
+                               int roundTrips, int batch) throws Exception {
+        ShmOptions shm = new ShmOptions(directory.toString(), 1 << 22, waitStrategy);
+        TransportProfile serverProfile = new TransportProfile("shm-server",
+                true, 1, SocketOptions.defaults(), null, shm);
+        TransportProfile clientProfile = new TransportProfile("shm-client",
+                true, 1, SocketOptions.defaults(), null, shm);
+
+        Disposable server = serverProfile.shmServer()
+                .doOnConnection(conn -> Mono.fromDirect(conn.outbound()
+                                .send(conn.inbound().receive().retain()))
+                        .subscribe(conn.disposeSubscriber()))
+                .bindNow();
+        EchoCounter counter = new EchoCounter();
+        Connection connection = clientProfile.shmClient()
+                .handle((in, out) -> in.receive().doOnNext(counter::received).then())
+                .connect()
+                .block();
+
+        measure("shm-" + waitStrategy.name().toLowerCase(), connection, counter, roundTrips, batch);
+
+        connection.disposeNow();
+        server.dispose();
+        clientProfile.dispose();
+        serverProfile.dispose();
+    }
+
+    private static void run(String name, boolean nativeTransport, String socket,
+                            int roundTrips, int batch) throws Exception {
+        SocketOptions options = SocketOptions.defaults();
+        TransportProfile serverProfile = new TransportProfile(name + "-server",
+                nativeTransport, 1, options, socket);
+        TransportProfile clientProfile = new TransportProfile(name + "-client",
+                nativeTransport, 1, options, socket);
+
+        DisposableServer server = serverProfile.configure(TcpServer.create(), "localhost", 0)
+                .handle((in, out) -> out.send(in.receive().retain()))
+                .bindNow();
+        EchoCounter counter = new EchoCounter();
+        Connection connection = clientProfile.configure(TcpClient.create(), "localhost",
+                        serverProfile.isUnixSocket() ? 0 : server.port())
+                .handle((in, out) -> in.receive().doOnNext(counter::received).then())
+                .connectNow();
+
+        measure(name, connection, counter, roundTrips, batch);
+
+        connection.disposeNow();
+        server.disposeNow();
+        clientProfile.dispose();
+        serverProfile.dispose();
+    }
+
+    private static void measure(String name, Connection connection, EchoCounter counter,
+                                int roundTrips, int batch) throws Exception {
+        // warm up
+        pingPong(connection, counter, roundTrips / 4);
+        long[] latencies = pingPong(connection, counter, roundTrips);
+        Arrays.sort(latencies);
+
+        long start = System.nanoTime();
+        CompletableFuture<Void> done = counter.expect((long) batch * ORDER.length);
+        ByteBuf payload = Unpooled.buffer(ORDER.length * 1000);
+        for (int i = 0; i < 1000; i++)
+            payload.writeBytes(ORDER);
+        for (int sent = 0; sent < batch; sent += 1000)
+            connection.outbound()
+                    .send(Mono.just(payload.retainedSlice(0, Math.min(1000, batch - sent) * ORDER.length)))
+                    .then().subscribe();
+        done.get(60, TimeUnit.SECONDS);
+        double throughput = batch / ((System.nanoTime() - start) / 1e9);
+        payload.release();
+
+        System.out.printf("%-12s %10.1f %10.1f %10.1f %12.0f%n", name,
+                percentile(latencies, 0.5), percentile(latencies, 0.99),
+                percentile(latencies, 0.999), throughput);
+    }
+
+    private static long[] pingPong(Connection connection, EchoCounter counter, int count)
+            throws Exception {
+        long[] latencies = new long[count];
+
+        for (int i = 0; i < count; i++) {
+            long start = System.nanoTime();
+            CompletableFuture<Void> echoed = counter.expect(ORDER.length);
+            connection.outbound()
+                    .send(Mono.just(Unpooled.wrappedBuffer(ORDER)))
+                    .then().subscribe();
+            echoed.get(5, TimeUnit.SECONDS);
+            latencies[i] = System.nanoTime() - start;
+        }
+        return latencies;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[(int) Math.min(sorted.length - 1, sorted.length * p)] / 1000.0;
+    }
+
+    private static class EchoCounter {
+        private final AtomicLong received = new AtomicLong();
+        private volatile long target;
+        private volatile CompletableFuture<Void> future;
+
+        CompletableFuture<Void> expect(long bytes) {
+            CompletableFuture<Void> next = new CompletableFuture<>();
+            target = received.get() + bytes;
+            future = next;
+            return next;
+        }
+
+        void received(ByteBuf buf) {
+            if (received.addAndGet(buf.readableBytes()) >= target)
+                future.complete(null);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+import com.rokupin.fix.transport.SocketOptions;
+import com.rokupin.fix.transport.TransportProfile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.resources.LoopResources;
+import reactor.netty.tcp.TcpClient;
+import reactor.netty.tcp.TcpServer;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TransportProfileTest {
+    private static final String MSG = "8=FIX.5.0\u000135=D\u000110=123\u0001";
+
+    private final List<TransportProfile> profiles = new ArrayList<>();
+
+    @AfterEach
+    void after() {
+        profiles.forEach(TransportProfile::dispose);
+    }
+
+    @Test
+    void testTcpEcho() {
+        TransportProfile server = profile("server", false, null);
+        TransportProfile client = profile("client", false, null);
+
+        assertEquals(MSG, echo(server, client, 0));
+    }
+
+    @Test
+    void testUnixSocketEcho() throws Exception {
+        Assumptions.assumeTrue(LoopResources.hasNativeSupport());
+        Path dir = Files.createTempDirectory("transport");
+        String socket = dir.resolve("fix.sock").toString();
+
+        TransportProfile server = profile("server", true, socket);
+        TransportProfile client = profile("client", true, socket);
+
+        try {
+            assertEquals(MSG, echo(server, client, 0));
+        } finally {
+            Files.deleteIfExists(Path.of(socket));
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    @Test
+    void testUnixSocketRequiresNative() {
+        assertThrows(IllegalStateException.class,
+                () -> new TransportProfile("nio-unix", false, 1,
+                        SocketOptions.defaults(), "/tmp/fix.sock"));
+    }
+
+    private TransportProfile profile(String name, boolean nativeTransport, String socket) {
+        TransportProfile profile = new TransportProfile(name, nativeTransport, 1,
+                new SocketOptions(true, true, 64 * 1024, 64 * 1024, 32 * 1024, 64 * 1024),
+                socket);
+        profiles.add(profile);
+        return profile;
+    }
+
+    private String echo(TransportProfile serverProfile, TransportProfile clientProfile, int port) {
+        DisposableServer server = serverProfile.configure(TcpServer.create(), "localhost", port)
+                .handle((in, out) -> out.send(in.receive().retain()))
+                .bindNow();
+        try {
+            int boundPort = serverProfile.isUnixSocket() ? 0 : server.port();
+            return clientProfile.configure(TcpClient.create(), "localhost", boundPort)
+                    .connect()
+                    .flatMap(conn -> conn.outbound()
+                            .sendString(Mono.just(MSG), StandardCharsets.UTF_8)
+                            .then()
+                            .then(conn.inbound().receive().asString(StandardCharsets.UTF_8).next())
+                            .doFinally(s -> conn.dispose()))
+                    .block(Duration.ofSeconds(5));
+        } finally {
+            server.disposeNow();
+        }
+    }
+}
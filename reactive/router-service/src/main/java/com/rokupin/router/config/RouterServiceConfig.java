@@ -1,73 +1,337 @@
 package com.rokupin.router.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rokupin.fix.transport.ShmOptions;
+import com.rokupin.fix.transport.SocketOptions;
+import com.rokupin.fix.transport.TransportProfile;
+import com.rokupin.fix.transport.shm.WaitStrategy;
+import com.rokupin.router.controller.DropCopyController;
 import com.rokupin.router.controller.TcpController;
+import com.rokupin.router.journal.FrameJournal;
 import com.rokupin.router.service.BrokerServiceImpl;
 import com.rokupin.router.service.ExchangeServiceImpl;
 import com.rokupin.router.service.RouterService;
+import com.rokupin.router.service.admission.BrokerAdmission;
+import com.rokupin.router.service.admission.ExchangeOrderQueues;
+import com.rokupin.router.service.admission.PreTradeCheck;
+import com.rokupin.router.service.dropcopy.DropCopyFeed;
 import com.rokupin.router.service.fix.BrokerCommunicationKit;
 import com.rokupin.router.service.fix.CommunicationKit;
 import com.rokupin.router.service.fix.ExchangeCommunicationKit;
+import com.rokupin.router.service.fix.SessionIds;
+import com.rokupin.router.service.fix.SessionPipeline;
+import com.rokupin.router.service.group.ExchangeGroups;
+import com.rokupin.router.service.group.GroupRouting;
+import com.rokupin.router.service.identity.BrokerIdentities;
+import com.rokupin.router.service.index.InstrumentIndex;
+import com.rokupin.router.service.outbound.BrokerOutbounds;
+import com.rokupin.router.service.state.StateCheckpoint;
+import com.rokupin.router.service.state.StateFrames;
+import com.rokupin.router.service.state.StockStateStore;
+import com.rokupin.router.service.subscription.MarketDataSubscriptions;
+import com.rokupin.router.service.tracking.InFlightOrders;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.web.reactive.config.EnableWebFlux;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Configuration
 @EnableWebFlux
 public class RouterServiceConfig {
 
-    private final Map<String, Map<String, Integer>> stateCache;
+    private final StockStateStore stockState;
 
     public RouterServiceConfig() {
-        this.stateCache = new ConcurrentHashMap<>();
+        this.stockState = new StockStateStore();
+    }
+
+    @Bean(destroyMethod = "close")
+    FrameJournal frameJournal(@Value("${router.journal.enabled}") boolean enabled,
+                              @Value("${router.journal.dir}") String dir,
+                              @Value("${router.journal.segment-size}") int segmentSize,
+                              @Value("${router.journal.max-segments}") int maxSegments,
+                              @Value("${router.journal.queue-capacity}") int queueCapacity,
+                              MeterRegistry meterRegistry) throws IOException {
+        if (!enabled)
+            return FrameJournal.disabled(meterRegistry);
+        return FrameJournal.open(Path.of(dir), segmentSize, maxSegments, queueCapacity, meterRegistry);
+    }
+
+    @Bean(destroyMethod = "close")
+    StateCheckpoint stateCheckpoint(@Value("${router.checkpoint.enabled}") boolean enabled,
+                                    @Value("${router.checkpoint.file}") String file,
+                                    @Value("${router.checkpoint.interval}") Duration interval,
+                                    @Value("${router.checkpoint.stale-timeout}") Duration staleTimeout,
+                                    MeterRegistry meterRegistry) {
+        // IDs of single exchanges are assigned per session, group IDs are configured
+        StateCheckpoint checkpoint = new StateCheckpoint(stockState, Path.of(file),
+                exchangeId -> SessionIds.parse(exchangeId, ExchangeCommunicationKit.ID_PREFIX) < 0,
+                staleTimeout, meterRegistry);
+
+        if (enabled) {
+            checkpoint.restore();
+            checkpoint.start(interval);
+        }
+        return checkpoint;
+    }
+
+    @Bean
+    StateFrames stateFrames(@Value("${router.id}") String routerId,
+                            MeterRegistry meterRegistry) {
+        return new StateFrames(routerId, stockState, meterRegistry);
+    }
+
+    // messages of each session are handled in order, sessions - in parallel
+    @Bean(destroyMethod = "dispose")
+    SessionPipeline brokerPipeline(@Value("${router.tcp.broker.workers}") int workers,
+                                   MeterRegistry meterRegistry) {
+        return new SessionPipeline("broker", workers, meterRegistry);
+    }
+
+    @Bean(destroyMethod = "dispose")
+    SessionPipeline exchangePipeline(@Value("${router.tcp.exchange.workers}") int workers,
+                                     MeterRegistry meterRegistry) {
+        return new SessionPipeline("exchange", workers, meterRegistry);
+    }
+
+    @Bean
+    CommunicationKit brokerCommunicationKit(@Value("${router.id}") String routerId,
+                                            @Value("${router.heartbeat.interval}") Duration heartbeatInterval,
+                                            @Value("${router.heartbeat.idle-timeout}") Duration idleTimeout,
+                                            FrameJournal frameJournal,
+                                            @Qualifier("brokerPipeline") SessionPipeline brokerPipeline,
+                                            MeterRegistry meterRegistry) {
+        return new BrokerCommunicationKit(routerId,
+                heartbeatInterval, idleTimeout, frameJournal, brokerPipeline, meterRegistry);
+    }
+
+    @Bean
+    CommunicationKit exchangeCommunicationKit(@Value("${router.id}") String routerId,
+                                              @Value("${router.heartbeat.interval}") Duration heartbeatInterval,
+                                              @Value("${router.heartbeat.idle-timeout}") Duration idleTimeout,
+                                              FrameJournal frameJournal,
+                                              @Qualifier("exchangePipeline") SessionPipeline exchangePipeline,
+                                              MeterRegistry meterRegistry) {
+        return new ExchangeCommunicationKit(routerId,
+                heartbeatInterval, idleTimeout, frameJournal, exchangePipeline, meterRegistry);
+    }
+
+    @Bean(destroyMethod = "close")
+    InFlightOrders inFlightOrders(@Value("${router.in-flight.timeout}") Duration timeout,
+                                  MeterRegistry meterRegistry) {
+        return new InFlightOrders(timeout, meterRegistry);
+    }
+
+    @Bean
+    BrokerOutbounds brokerOutbounds(@Qualifier("brokerCommunicationKit") CommunicationKit brokerCommunicationKit,
+                                    @Value("${router.slow-consumer.grace-period}") Duration gracePeriod,
+                                    @Value("${router.slow-consumer.max-pending}") int maxPending,
+                                    MeterRegistry meterRegistry) {
+        return new BrokerOutbounds(brokerCommunicationKit, gracePeriod, maxPending, meterRegistry);
+    }
+
+    @Bean
+    ExchangeGroups exchangeGroups(@Value("${router.exchange-groups.routing}") String routing,
+                                  InFlightOrders inFlightOrders,
+                                  MeterRegistry meterRegistry) {
+        return new ExchangeGroups(GroupRouting.of(routing), inFlightOrders, meterRegistry);
+    }
+
+    @Bean
+    InstrumentIndex instrumentIndex() {
+        return new InstrumentIndex();
+    }
+
+    @Bean
+    MarketDataSubscriptions marketDataSubscriptions(MeterRegistry meterRegistry) {
+        return new MarketDataSubscriptions(meterRegistry);
+    }
+
+    @Bean
+    DropCopyFeed dropCopyFeed(@Value("${router.drop-copy.max-pending}") int maxPending,
+                              MeterRegistry meterRegistry) {
+        return new DropCopyFeed(maxPending, meterRegistry);
     }
 
     @Bean
-    CommunicationKit brokerCommunicationKit(@Value("${router.id}") String routerId) {
-        return new BrokerCommunicationKit(routerId);
+    PreTradeCheck preTradeCheck(@Value("${router.pre-check.enabled}") boolean enabled,
+                                MeterRegistry meterRegistry) {
+        return new PreTradeCheck(enabled, stockState, meterRegistry);
     }
 
     @Bean
-    CommunicationKit exchangeCommunicationKit(@Value("${router.id}") String routerId) {
-        return new ExchangeCommunicationKit(routerId);
+    BrokerIdentities brokerIdentities(MeterRegistry meterRegistry) {
+        return new BrokerIdentities(meterRegistry);
+    }
+
+    @Bean
+    BrokerAdmission brokerAdmission(@Value("${router.admission.rate}") double rate,
+                                    @Value("${router.admission.burst}") int burst,
+                                    MeterRegistry meterRegistry) {
+        return new BrokerAdmission(rate, burst, meterRegistry);
+    }
+
+    @Bean
+    ExchangeOrderQueues exchangeOrderQueues(@Value("${router.admission.queue-capacity}") int capacityPerBroker,
+                                            @Value("${router.admission.default-weight}") int defaultWeight,
+                                            @Value("${router.admission.weights}") String weights,
+                                            MeterRegistry meterRegistry) {
+        return new ExchangeOrderQueues(capacityPerBroker,
+                defaultWeight,
+                parseWeights(weights),
+                meterRegistry);
     }
 
     @Bean
     RouterService brokerRoutingService(ObjectMapper objectMapper,
                                        @Qualifier("brokerCommunicationKit") CommunicationKit brokerCommunicationKit,
-                                       @Qualifier("exchangeCommunicationKit") CommunicationKit exchangeCommunicationKit) {
-        return new BrokerServiceImpl(objectMapper,
+                                       @Qualifier("exchangeCommunicationKit") CommunicationKit exchangeCommunicationKit,
+                                       InFlightOrders inFlightOrders,
+                                       BrokerOutbounds brokerOutbounds,
+                                       ExchangeGroups exchangeGroups,
+                                       InstrumentIndex instrumentIndex,
+                                       MarketDataSubscriptions marketDataSubscriptions,
+                                       DropCopyFeed dropCopyFeed,
+                                       StateFrames stateFrames,
+                                       BrokerIdentities brokerIdentities,
+                                       BrokerAdmission brokerAdmission,
+                                       PreTradeCheck preTradeCheck,
+                                       ExchangeOrderQueues exchangeOrderQueues,
+                                       StateCheckpoint stateCheckpoint) {
+        BrokerServiceImpl service = new BrokerServiceImpl(objectMapper,
                 brokerCommunicationKit,
                 exchangeCommunicationKit,
-                stateCache);
+                stockState,
+                inFlightOrders,
+                brokerOutbounds,
+                exchangeGroups,
+                instrumentIndex,
+                marketDataSubscriptions,
+                dropCopyFeed,
+                stateFrames,
+                brokerIdentities,
+                brokerAdmission,
+                preTradeCheck,
+                exchangeOrderQueues);
+        stateCheckpoint.setStaleDropHandler(service::onStaleStateDropped);
+        return service;
     }
 
     @Bean
     RouterService exchangeRoutingService(ObjectMapper objectMapper,
                                          @Qualifier("brokerCommunicationKit") CommunicationKit brokerCommunicationKit,
-                                         @Qualifier("exchangeCommunicationKit") CommunicationKit exchangeCommunicationKit) {
+                                         @Qualifier("exchangeCommunicationKit") CommunicationKit exchangeCommunicationKit,
+                                         InFlightOrders inFlightOrders,
+                                         BrokerOutbounds brokerOutbounds,
+                                         ExchangeGroups exchangeGroups,
+                                         InstrumentIndex instrumentIndex,
+                                         MarketDataSubscriptions marketDataSubscriptions,
+                                         DropCopyFeed dropCopyFeed,
+                                         StateFrames stateFrames,
+                                         BrokerIdentities brokerIdentities) {
         return new ExchangeServiceImpl(objectMapper,
                 brokerCommunicationKit,
                 exchangeCommunicationKit,
-                stateCache);
+                stockState,
+                inFlightOrders,
+                brokerOutbounds,
+                exchangeGroups,
+                instrumentIndex,
+                marketDataSubscriptions,
+                dropCopyFeed,
+                stateFrames,
+                brokerIdentities);
+    }
+
+    @Bean
+    SocketOptions socketOptions(@Value("${router.transport.socket.no-delay}") boolean noDelay,
+                                @Value("${router.transport.socket.keep-alive}") boolean keepAlive,
+                                @Value("${router.transport.socket.send-buffer}") int sendBuffer,
+                                @Value("${router.transport.socket.receive-buffer}") int receiveBuffer,
+                                @Value("${router.transport.socket.write-low-watermark}") int lowWatermark,
+                                @Value("${router.transport.socket.write-high-watermark}") int highWatermark) {
+        return new SocketOptions(noDelay, keepAlive,
+                sendBuffer, receiveBuffer, lowWatermark, highWatermark);
+    }
+
+    // brokers and exchanges are served by separate event loops
+    @Bean(destroyMethod = "dispose")
+    TransportProfile brokerTransport(@Value("${router.transport.native}") boolean nativeTransport,
+                                     @Value("${router.tcp.broker.threads}") int threads,
+                                     @Value("${router.tcp.broker.unix-socket}") String unixSocket,
+                                     @Value("${router.tcp.broker.shm-dir}") String shmDir,
+                                     @Value("${router.transport.shm.wait-strategy}") String waitStrategy,
+                                     SocketOptions socketOptions) {
+        return new TransportProfile("router-broker",
+                nativeTransport, threads, socketOptions, unixSocket,
+                new ShmOptions(shmDir, 0, WaitStrategy.of(waitStrategy)));
+    }
+
+    @Bean(destroyMethod = "dispose")
+    TransportProfile exchangeTransport(@Value("${router.transport.native}") boolean nativeTransport,
+                                       @Value("${router.tcp.exchange.threads}") int threads,
+                                       @Value("${router.tcp.exchange.unix-socket}") String unixSocket,
+                                       @Value("${router.tcp.exchange.shm-dir}") String shmDir,
+                                       @Value("${router.transport.shm.wait-strategy}") String waitStrategy,
+                                       SocketOptions socketOptions) {
+        return new TransportProfile("router-exchange",
+                nativeTransport, threads, socketOptions, unixSocket,
+                new ShmOptions(shmDir, 0, WaitStrategy.of(waitStrategy)));
+    }
+
+    // drop-copy subscribers never share an event loop with trading sessions
+    @Bean(destroyMethod = "dispose")
+    TransportProfile dropCopyTransport(@Value("${router.transport.native}") boolean nativeTransport,
+                                       SocketOptions socketOptions) {
+        return new TransportProfile("router-drop-copy",
+                nativeTransport, 1, socketOptions, "");
     }
 
+    // brokers connecting right after a restart get the restored state
     @Bean
+    @DependsOn("stateCheckpoint")
     TcpController brokerController(@Value("${router.tcp.broker.host}") String host,
                                    @Value("${router.tcp.broker.port}") int port,
-                                   @Qualifier("brokerRoutingService") RouterService brokerRoutingService) {
-        return new TcpController(host, port, brokerRoutingService);
+                                   @Qualifier("brokerRoutingService") RouterService brokerRoutingService,
+                                   @Qualifier("brokerTransport") TransportProfile brokerTransport) {
+        return new TcpController(host, port, brokerRoutingService, brokerTransport);
     }
 
     @Bean
     TcpController exchangeController(@Value("${router.tcp.exchange.host}") String host,
                                      @Value("${router.tcp.exchange.port}") int port,
-                                     @Qualifier("exchangeRoutingService") RouterService exchangeRoutingService) {
-        return new TcpController(host, port, exchangeRoutingService);
+                                     @Qualifier("exchangeRoutingService") RouterService exchangeRoutingService,
+                                     @Qualifier("exchangeTransport") TransportProfile exchangeTransport) {
+        return new TcpController(host, port, exchangeRoutingService, exchangeTransport);
+    }
+
+    @Bean
+    DropCopyController dropCopyController(@Value("${router.drop-copy.enabled}") boolean enabled,
+                                          @Value("${router.drop-copy.host}") String host,
+                                          @Value("${router.drop-copy.port}") int port,
+                                          DropCopyFeed dropCopyFeed,
+                                          @Qualifier("dropCopyTransport") TransportProfile dropCopyTransport) {
+        return new DropCopyController(enabled, host, port, dropCopyFeed, dropCopyTransport);
+    }
+
+    // "alpha:3,beta:2" -> {alpha=3, beta=2}, keyed by the name a broker logs on with
+    private static Map<String, Integer> parseWeights(String weights) {
+        Map<String, Integer> parsed = new HashMap<>();
+
+        for (String entry : weights.split(",")) {
+            String[] pair = entry.trim().split(":");
+            if (pair.length == 2)
+                parsed.put(pair[0].trim(), Integer.parseInt(pair[1].trim()));
+        }
+        return parsed;
     }
 }
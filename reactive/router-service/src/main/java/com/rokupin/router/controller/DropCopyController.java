@@ -0,0 +1,41 @@
+package com.rokupin.router.controller;
+
+import com.rokupin.fix.transport.TransportProfile;
+import com.rokupin.router.service.dropcopy.DropCopyFeed;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import reactor.netty.tcp.TcpServer;
+
+/**
+ * Read-only listener streaming execution reports to drop-copy subscribers.
+ * Anything subscribers send is discarded.
+ */
+@Slf4j
+public class DropCopyController {
+    private final TcpServer server;
+    private final DropCopyFeed feed;
+    private final boolean enabled;
+
+    public DropCopyController(boolean enabled,
+                              String host,
+                              int port,
+                              DropCopyFeed feed,
+                              TransportProfile transport) {
+        if (enabled)
+            log.info("Starting drop-copy TcpServer at {}:{}", host, port);
+        this.enabled = enabled;
+        this.feed = feed;
+        this.server = transport.configure(TcpServer.create(), host, port);
+    }
+
+    @PostConstruct
+    private void init() {
+        if (!enabled)
+            return;
+        server.doOnConnection(feed::subscribe)
+                .handle((inbound, outbound) -> inbound.receive().then())
+                .bindNow()
+                .onDispose()
+                .subscribe();
+    }
+}
@@ -1,5 +1,6 @@
 package com.rokupin.router.controller;
 
+import com.rokupin.fix.transport.TransportProfile;
 import com.rokupin.router.service.RouterService;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
@@ -9,15 +10,26 @@ import reactor.netty.tcp.TcpServer;
 public class TcpController {
     private final TcpServer server;
     private final RouterService service;
+    private final TransportProfile transport;
 
-    public TcpController(String host, int port, RouterService service) {
-        log.info("Starting TcpServer at {}:{}", host, port);
+    public TcpController(String host, int port, RouterService service, TransportProfile transport) {
+        log.info("Starting TcpServer at {}", transport.isSharedMemory() ?
+                "shared memory " + transport.getShmOptions().directory() :
+                transport.isUnixSocket() ? transport.getUnixSocket() : host + ":" + port);
         this.service = service;
-        this.server = TcpServer.create().host(host).port(port);
+        this.transport = transport;
+        this.server = transport.configure(TcpServer.create(), host, port);
     }
 
     @PostConstruct
     private void init() {
+        if (transport.isSharedMemory()) {
+            transport.shmServer()
+                    .doOnConnection(service::doOnConnection)
+                    .doOnConnection(service.getConnectionHandler())
+                    .bindNow();
+            return;
+        }
         server.doOnConnection(service::doOnConnection)
                 .doOnConnection(service.getConnectionHandler())
                 .bindNow()
@@ -0,0 +1,225 @@
+package com.rokupin.router.journal;
+
+import com.rokupin.model.fix.HopTimestamps;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of every frame router reads or writes.
+ * <p>
+ * Event loops only put records into a bounded queue - if it's full, the
+ * record is dropped and counted rather than waited for. A dedicated thread
+ * writes them into memory-mapped segment files of fixed size, named so
+ * that they sort in the order they were written. A new segment is started
+ * when the current one is full, and the oldest ones, including those left
+ * by previous runs, are deleted to keep at most {@code maxSegments} of them.
+ * Each record is:
+ * <pre>
+ * int    length of the rest of the record, 0 marks the end of segment
+ * long   epoch microseconds
+ * byte   1 - inbound, 0 - outbound
+ * byte   length of session ID
+ * byte[] session ID, ASCII
+ * byte[] frame
+ * </pre>
+ */
+@Slf4j
+public class FrameJournal implements AutoCloseable {
+    public static final String SEGMENT_PREFIX = "journal-";
+    public static final String SEGMENT_SUFFIX = ".dat";
+    static final int HEADER_SIZE = Integer.BYTES + Long.BYTES + 2;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final Deque<Path> segments;
+    private final BlockingQueue<JournalRecord> queue;
+    private final Counter writtenCounter;
+    private final Counter droppedCounter;
+    private final Thread writer;
+
+    private volatile boolean running;
+    private MappedByteBuffer segment;
+    private FileChannel segmentChannel;
+    private int segmentIndex;
+
+    private FrameJournal(boolean enabled,
+                         Path directory,
+                         int segmentSize,
+                         int maxSegments,
+                         int queueCapacity,
+                         MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.segments = new ArrayDeque<>();
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.writtenCounter = Counter.builder("router.journal.written")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("router.journal.dropped")
+                .register(meterRegistry);
+        this.writer = new Thread(this::writeLoop, "journal-writer");
+        this.writer.setDaemon(true);
+    }
+
+    public static FrameJournal disabled(MeterRegistry meterRegistry) {
+        return new FrameJournal(false, null, 0, 0, 1, meterRegistry);
+    }
+
+    /**
+     * @param maxSegments segments kept in the directory, 0 - no limit
+     */
+    public static FrameJournal open(Path directory,
+                                    int segmentSize,
+                                    int maxSegments,
+                                    int queueCapacity,
+                                    MeterRegistry meterRegistry) throws IOException {
+        Files.createDirectories(directory);
+        FrameJournal journal = new FrameJournal(true,
+                directory, segmentSize, maxSegments, queueCapacity, meterRegistry);
+        journal.segments.addAll(segments(directory));
+        journal.running = true;
+        journal.writer.start();
+        log.info("Journaling frames to {}", directory.toAbsolutePath());
+        return journal;
+    }
+
+    /**
+     * @return segment files in the directory, in the order they were written
+     */
+    public static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Never blocks: if writer lags behind, record is dropped
+     */
+    public void record(boolean inbound, String sessionId, byte[] frame) {
+        if (!running)
+            return;
+        String id = Objects.isNull(sessionId) ? "-" : sessionId;
+        if (!queue.offer(new JournalRecord(HopTimestamps.nowMicros(), inbound, id, frame)))
+            droppedCounter.increment();
+    }
+
+    @Override
+    public void close() {
+        if (!running)
+            return;
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            while (running || !queue.isEmpty()) {
+                JournalRecord record = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (Objects.nonNull(record))
+                    write(record);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.error("Journal writing failed, journaling stopped: {}", e.getMessage());
+            running = false;
+        } finally {
+            closeSegment();
+        }
+    }
+
+    private void write(JournalRecord record) throws IOException {
+        byte[] id = record.sessionId().getBytes(StandardCharsets.US_ASCII);
+        int size = HEADER_SIZE + id.length + record.frame().length;
+
+        // room for the record and the end marker
+        if (size + Integer.BYTES > segmentSize) {
+            droppedCounter.increment();
+            return;
+        }
+        if (Objects.isNull(segment) || segment.remaining() < size + Integer.BYTES)
+            nextSegment();
+
+        segment.putInt(size - Integer.BYTES)
+                .putLong(record.timestampMicros())
+                .put((byte) (record.inbound() ? 1 : 0))
+                .put((byte) id.length)
+                .put(id)
+                .put(record.frame());
+        writtenCounter.increment();
+    }
+
+    private void nextSegment() throws IOException {
+        closeSegment();
+        Path path = directory.resolve(String.format("%s%d-%06d%s",
+                SEGMENT_PREFIX, System.currentTimeMillis(), segmentIndex++, SEGMENT_SUFFIX));
+        segmentChannel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        segment = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segments.addLast(path);
+        log.debug("Journal segment {} opened", path.getFileName());
+        deleteOldSegments();
+    }
+
+    private void deleteOldSegments() {
+        while (maxSegments > 0 && segments.size() > maxSegments) {
+            Path oldest = segments.pollFirst();
+            try {
+                Files.deleteIfExists(oldest);
+                log.debug("Journal segment {} deleted", oldest.getFileName());
+            } catch (IOException e) {
+                log.warn("Journal segment {} deletion failed: {}", oldest.getFileName(), e.getMessage());
+            }
+        }
+    }
+
+    private void closeSegment() {
+        if (Objects.nonNull(segment)) {
+            segment.force();
+            segment = null;
+        }
+        if (Objects.nonNull(segmentChannel)) {
+            try {
+                segmentChannel.close();
+            } catch (IOException e) {
+                log.warn("Journal segment closing failed: {}", e.getMessage());
+            }
+            segmentChannel = null;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.rokupin.router.journal;
+
+import com.rokupin.router.service.fix.CommunicationKit;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * Copies bytes read from and written to the connection into the journal
+ */
+public class JournalHandler extends ChannelDuplexHandler {
+    public static final String NAME = "frameJournal";
+
+    private final FrameJournal journal;
+
+    public JournalHandler(FrameJournal journal) {
+        this.journal = journal;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (msg instanceof ByteBuf buf && buf.isReadable())
+            journal.record(true, sessionId(ctx), ByteBufUtil.getBytes(buf));
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        if (msg instanceof ByteBuf buf && buf.isReadable())
+            journal.record(false, sessionId(ctx), ByteBufUtil.getBytes(buf));
+        ctx.write(msg, promise);
+    }
+
+    private String sessionId(ChannelHandlerContext ctx) {
+        return ctx.channel().attr(CommunicationKit.ASSIGNED_ID_KEY).get();
+    }
+}
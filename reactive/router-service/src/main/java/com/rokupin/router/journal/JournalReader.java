@@ -0,0 +1,56 @@
+package com.rokupin.router.journal;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Reads records of all journal segments in the directory, in the order
+ * they were written. Segments are read one at a time, records are handed
+ * over as they are read, so journals of any size are read in constant memory.
+ */
+public class JournalReader {
+    private final Path directory;
+
+    @FunctionalInterface
+    public interface RecordHandler {
+        void accept(JournalRecord record) throws IOException, InterruptedException;
+    }
+
+    public JournalReader(Path directory) {
+        this.directory = directory;
+    }
+
+    public List<Path> segments() throws IOException {
+        return FrameJournal.segments(directory);
+    }
+
+    public void forEach(RecordHandler handler) throws IOException, InterruptedException {
+        for (Path segment : segments())
+            readSegment(segment, handler);
+    }
+
+    private void readSegment(Path path, RecordHandler handler) throws IOException, InterruptedException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            while (buffer.remaining() >= FrameJournal.HEADER_SIZE) {
+                int length = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining())
+                    break; // end of segment, or record that wasn't completed
+                long timestamp = buffer.getLong();
+                boolean inbound = buffer.get() == 1;
+                byte[] id = new byte[buffer.get()];
+                buffer.get(id);
+                byte[] frame = new byte[length - Long.BYTES - 2 - id.length];
+                buffer.get(frame);
+                handler.accept(new JournalRecord(timestamp, inbound,
+                        new String(id, StandardCharsets.US_ASCII), frame));
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.rokupin.router.journal;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Single frame, received from or sent to one of the sessions
+ *
+ * @param timestampMicros epoch microseconds
+ * @param inbound         true if frame was received by router
+ * @param sessionId       ID assigned to the peer, "-" if not assigned yet
+ * @param frame           bytes as they were read from or written to socket
+ */
+public record JournalRecord(long timestampMicros,
+                            boolean inbound,
+                            String sessionId,
+                            byte[] frame) {
+
+    public String frameAsString() {
+        return new String(frame, StandardCharsets.UTF_8);
+    }
+}
@@ -1,56 +1,157 @@
 package com.rokupin.router.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rokupin.model.fix.*;
+import com.rokupin.router.service.admission.BrokerAdmission;
+import com.rokupin.router.service.admission.ExchangeOrderListener;
+import com.rokupin.router.service.admission.ExchangeOrderQueues;
+import com.rokupin.router.service.admission.PreTradeCheck;
+import com.rokupin.router.service.dropcopy.DropCopyFeed;
 import com.rokupin.router.service.fix.CommunicationKit;
+import com.rokupin.router.service.fix.FixSession;
+import com.rokupin.router.service.group.ExchangeGroups;
+import com.rokupin.router.service.identity.BrokerIdentities;
+import com.rokupin.router.service.index.InstrumentIndex;
+import com.rokupin.router.service.outbound.BrokerOutbounds;
+import com.rokupin.router.service.outbound.OutboundPriority;
+import com.rokupin.router.service.state.StateFrames;
+import com.rokupin.router.service.state.StockStateStore;
+import com.rokupin.router.service.subscription.MarketDataSubscriptions;
+import com.rokupin.router.service.subscription.StateFilter;
+import com.rokupin.router.service.tracking.InFlightOrders;
 import lombok.extern.slf4j.Slf4j;
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Mono;
 import reactor.netty.Connection;
 import reactor.netty.NettyOutbound;
 
-import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 @Slf4j
 public class BrokerServiceImpl extends RouterService {
 
+    private final BrokerAdmission admission;
+    private final PreTradeCheck preTradeCheck;
+    private final ExchangeOrderQueues exchangeQueues;
+
     public BrokerServiceImpl(ObjectMapper objectMapper,
                              CommunicationKit brokerCommunicationKit,
                              CommunicationKit exchangeCommunicationKit,
-                             Map<String, Map<String, Integer>> stateCache) {
+                             StockStateStore stockState,
+                             InFlightOrders inFlightOrders,
+                             BrokerOutbounds brokerOutbounds,
+                             ExchangeGroups exchangeGroups,
+                             InstrumentIndex instrumentIndex,
+                             MarketDataSubscriptions subscriptions,
+                             DropCopyFeed dropCopyFeed,
+                             StateFrames stateFrames,
+                             BrokerIdentities brokerIdentities,
+                             BrokerAdmission admission,
+                             PreTradeCheck preTradeCheck,
+                             ExchangeOrderQueues exchangeQueues) {
         super(objectMapper,
                 brokerCommunicationKit,
                 exchangeCommunicationKit,
-                stateCache);
+                stockState,
+                inFlightOrders,
+                brokerOutbounds,
+                exchangeGroups,
+                instrumentIndex,
+                subscriptions,
+                dropCopyFeed,
+                stateFrames,
+                brokerIdentities);
+        this.admission = admission;
+        this.preTradeCheck = preTradeCheck;
+        this.exchangeQueues = exchangeQueues;
+
+        exchangeQueues.setListener(new ExchangeOrderListener() {
+            @Override
+            public void onWritten(FixRequest request) {
+                inFlightOrders.track(request);
+            }
+
+            @Override
+            public void onUndelivered(FixRequest request) {
+                inFlightOrders.forget(request);
+                publishReject(publishUnavailableExchangeResponse(request));
+            }
+        });
+        inFlightOrders.setTimeoutHandler(request ->
+                publishReject(publishRejectResponse(request, FixResponse.EXCHANGE_TIMED_OUT)));
+        exchangeCommunicationKit.onSessionClosed(session -> {
+            exchangeQueues.close(session.getId());
+            inFlightOrders.closeExchange(session.getId()).forEach(request ->
+                    publishReject(publishUnavailableExchangeResponse(request)));
+            // after the rejects, so that they are sent on behalf of the group
+            String group = exchangeGroups.leave(session.getId());
+            if (Objects.nonNull(group)) {
+                onGroupLeft(group);
+                return;
+            }
+            // brokers shouldn't keep trading against the state of a gone exchange
+            instrumentIndex.remove(session.getId());
+            if (stockState.remove(session.getId()))
+                publishStateUpdate(brokerCommunicationKit.getRouterId(), session.getId());
+        });
+        brokerCommunicationKit.onSessionClosed(session -> {
+            BrokerIdentities.Departure departure = brokerIdentities.leave(session.getId());
+            if (departure.last())
+                admission.release(departure.identity());
+            inFlightOrders.closeBroker(session.getId());
+            subscriptions.remove(session.getId());
+            // the link taking over may have missed updates while it was on standby
+            if (Objects.nonNull(departure.stateLink()))
+                sendState(departure.stateLink(), subscriptions.filterOf(departure.stateLink()));
+        });
+    }
+
+    // group keeps what its remaining members reported, or goes away with its last member
+    private void onGroupLeft(String group) {
+        Map<String, Integer> state = exchangeGroups.stateOf(group);
+
+        if (Objects.isNull(state)) {
+            instrumentIndex.remove(group);
+            stockState.remove(group);
+        } else {
+            stockState.update(group, state);
+            instrumentIndex.update(group, state);
+        }
+        publishStateUpdate(brokerCommunicationKit.getRouterId(), group);
+    }
+
+    /**
+     * Tells brokers that the state of the exchange, restored from a
+     * checkpoint, is gone
+     */
+    public void onStaleStateDropped(String exchangeId) {
+        instrumentIndex.remove(exchangeId);
+        publishStateUpdate(brokerCommunicationKit.getRouterId(), exchangeId);
     }
 
     @Override
     public void doOnConnection(Connection connection) {
-        try {
-            String state = objectMapper.writeValueAsString(stateCache);
-            brokerCommunicationKit.newConnection(connection,
-                    state,
-                    this::handleBrokerInput,
-                    this::handleBrokerCommunicationError
-            );
-        } catch (JsonProcessingException e) {
-            log.error("Cant serialize cache map");
-        }
+        brokerCommunicationKit.newConnection(connection,
+                stateFrames::welcome,
+                this::handleBrokerInput,
+                this::handleBrokerCommunicationError
+        );
     }
 
     @Override
     public OnConnectionHandler getConnectionHandler() {
-        return new OnConnectionHandler(
-                brokerCommunicationKit.getIdToMsgProcessorMap()
-        );
+        return new OnConnectionHandler(brokerCommunicationKit);
     }
 
     private Publisher<Void> handleBrokerInput(String input) {
         log.debug("Received '{}' from broker", input);
         try {
+            if (FixMessage.isOfType(input, FixMarketDataRequest.MSG_MARKET_DATA_REQUEST))
+                return handleMarketDataRequest(input);
+            if (FixMessage.isOfType(input, FixLogon.MSG_LOGON))
+                return handleLogon(input);
             return handleTradingRequest(input);
         } catch (FixMessageMisconfiguredException e) {
             try {
@@ -64,51 +165,125 @@ public class BrokerServiceImpl extends RouterService {
 
     private Publisher<Void> handleUpdateRequest(String input) throws FixMessageMisconfiguredException {
         FixStateUpdateRequest request = FixMessage.fromFix(input, new FixStateUpdateRequest());
+        sendState(request.getSender(), subscriptions.filterOf(request.getSender()));
+        return Mono.empty();
+    }
+
+    // links logged on with the same name are a single broker from now on
+    private Publisher<Void> handleLogon(String input) throws FixMessageMisconfiguredException {
+        FixLogon logon = FixMessage.fromFix(input, new FixLogon());
+        String sender = logon.getSender();
+
+        if (Objects.isNull(brokerCommunicationKit.getSession(sender)) ||
+                !brokerIdentities.logon(sender, logon.getUsername())) {
+            log.warn("Broker {} can't log on as '{}'", sender, logon.getUsername());
+            return Mono.empty();
+        }
+        // orders sent before the logon were limited by session ID
+        admission.release(sender);
+        return Mono.empty();
+    }
+
+    // answered with a snapshot of what the broker is subscribed to from now on
+    private Publisher<Void> handleMarketDataRequest(String input) throws FixMessageMisconfiguredException {
+        FixMarketDataRequest request = FixMessage.fromFix(input, new FixMarketDataRequest());
         String sender = request.getSender();
-        Connection brokerConnection = brokerCommunicationKit.getConnectionById(sender);
+        StateFilter filter;
 
-        if (Objects.nonNull(brokerConnection)) {
-            return forwardResponseToTargetBroker(
-                    brokerConnection.outbound(),
-                    sender,
-                    makeStateUpdateMsgString(
-                            brokerCommunicationKit.getRouterId()
-                    )
-            );
+        if (request.isSubscribe()) {
+            filter = subscriptions.subscribe(sender, request.getMdReqId(),
+                    new StateFilter(Set.copyOf(request.getExchanges()),
+                            Set.copyOf(request.getInstruments())));
+            log.info("Broker {} subscribed to exchanges {} instruments {}",
+                    sender, request.getExchanges(), request.getInstruments());
         } else {
-            brokerCommunicationKit.remove(sender);
-            return Mono.empty();
+            filter = subscriptions.unsubscribe(sender, request.getMdReqId());
+            log.info("Broker {} dropped subscription '{}'", sender, request.getMdReqId());
         }
+        sendState(sender, filter);
+        return Mono.empty();
+    }
+
+    private void sendState(String brokerId, StateFilter filter) {
+        String update = makeStateUpdateMsgString(brokerCommunicationKit.getRouterId(),
+                Objects.isNull(filter) ? StateFilter.ALL : filter);
+
+        if (!brokerOutbounds.send(brokerId, OutboundPriority.STATE, update))
+            brokerCommunicationKit.remove(brokerId);
     }
 
     private Publisher<Void> handleTradingRequest(String input) throws FixMessageMisconfiguredException {
         FixRequest request = FixMessage.fromFix(input, new FixRequest());
-        String target = request.getTarget();
-        Connection exchangeConnection = exchangeCommunicationKit.getConnectionById(target);
-
-        if (Objects.nonNull(exchangeConnection)) {
-            return exchangeConnection.outbound()
-                    .sendString(Mono.just(input), StandardCharsets.UTF_8)
-                    .then()
-                    .onErrorResume(e -> Mono.from(
-                            publishUnavailableExchangeResponse(request))
-                    );
+        if (FixRequest.TARGET_ANY.equals(request.getTarget()) && !routeToBestVenue(request))
+            return publishRejectResponse(request, FixResponse.INSTRUMENT_NOT_SUPPORTED);
+        int rejection = preTradeCheck.check(request);
+        if (rejection != FixResponse.UNSPECIFIED)
+            return publishRejectResponse(request, rejection);
+        String target = routeToMember(request);
+        FixSession exchangeSession = exchangeCommunicationKit.getSession(target);
+
+        String broker = brokerIdentities.identityOf(request.getSender());
+        if (!admission.tryAcquire(broker))
+            return publishThrottledResponse(request);
+
+        request.getTimestamps().setRouterIn(HopTimestamps.nowMicros());
+        if (Objects.nonNull(exchangeSession)) {
+            inFlightOrders.assignTrackingId(request);
+            if (!exchangeQueues.offer(exchangeSession, broker, request, request.asFix()))
+                return publishThrottledResponse(request);
+            return Mono.empty();
         } else {
             return publishUnavailableExchangeResponse(request);
         }
     }
 
+    // order to any exchange goes to the one best suited for it
+    private boolean routeToBestVenue(FixRequest request) {
+        String venue = instrumentIndex.bestVenue(request.getInstrument(), request.getAction());
+
+        if (Objects.isNull(venue)) {
+            log.debug("No exchange lists {}", request.getInstrument());
+            return false;
+        }
+        request.setTarget(venue);
+        return true;
+    }
+
+    // order to a group goes to one of its members, if it has any
+    private String routeToMember(FixRequest request) {
+        String target = request.getTarget();
+
+        if (exchangeGroups.isGroup(target)) {
+            String member = exchangeGroups.route(target, request.getInstrument());
+            if (Objects.nonNull(member))
+                request.setTarget(member);
+        }
+        return request.getTarget();
+    }
+
     private Publisher<Void> publishUnavailableExchangeResponse(FixRequest request) {
         log.warn("Target exchange {} is unavailable", request.getTarget());
-        String fixMsg = makeFixResponseStr(request,
-                FixResponse.EXCHANGE_IS_NOT_AVAILABLE
-        );
+        return publishRejectResponse(request, FixResponse.EXCHANGE_IS_NOT_AVAILABLE);
+    }
+
+    private Publisher<Void> publishThrottledResponse(FixRequest request) {
+        log.debug("Broker {} exceeded its order rate", request.getSender());
+        return publishRejectResponse(request, FixResponse.THROTTLED);
+    }
+
+    private Publisher<Void> publishRejectResponse(FixRequest request, int reason) {
+        String fixMsg = makeFixResponseStr(request, reason);
         return handleTradingResponseMsg(fixMsg, exchangeCommunicationKit.getRouterId());
     }
 
+    // rejects made outside of broker input processing
+    private void publishReject(Publisher<Void> reject) {
+        Mono.from(reject).subscribe();
+    }
+
     private String makeFixResponseStr(FixRequest request, int reason) {
         try {
-            return new FixResponse(
+            FixResponse response = new FixResponse(
                     request.getTarget(),        // non-accessible exchange (In fact, Router)
                     request.getSender(),        // receiving service id
                     request.getSenderSubId(),   // receiving client id
@@ -117,7 +292,9 @@ public class BrokerServiceImpl extends RouterService {
                     request.getAmount(),
                     FixResponse.MSG_ORD_REJECTED,
                     reason
-            ).asFix();
+            );
+            response.echoRequest(request);
+            return response.asFix();
         } catch (FixMessageMisconfiguredException e) {
             log.error("FixResponse for request {}, reason {} failed: {}", request, reason, e.getMessage());
             return null;
@@ -5,8 +5,18 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rokupin.model.fix.FixMessage;
 import com.rokupin.model.fix.FixMessageMisconfiguredException;
+import com.rokupin.model.fix.FixResponse;
 import com.rokupin.model.fix.FixStockStateReport;
+import com.rokupin.router.service.dropcopy.DropCopyFeed;
 import com.rokupin.router.service.fix.CommunicationKit;
+import com.rokupin.router.service.group.ExchangeGroups;
+import com.rokupin.router.service.identity.BrokerIdentities;
+import com.rokupin.router.service.index.InstrumentIndex;
+import com.rokupin.router.service.outbound.BrokerOutbounds;
+import com.rokupin.router.service.state.StateFrames;
+import com.rokupin.router.service.state.StockStateStore;
+import com.rokupin.router.service.subscription.MarketDataSubscriptions;
+import com.rokupin.router.service.tracking.InFlightOrders;
 import lombok.extern.slf4j.Slf4j;
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Mono;
@@ -22,11 +32,27 @@ public class ExchangeServiceImpl extends RouterService {
     public ExchangeServiceImpl(ObjectMapper objectMapper,
                                CommunicationKit brokerCommunicationKit,
                                CommunicationKit exchangeCommunicationKit,
-                               Map<String, Map<String, Integer>> stateCache) {
+                               StockStateStore stockState,
+                               InFlightOrders inFlightOrders,
+                               BrokerOutbounds brokerOutbounds,
+                               ExchangeGroups exchangeGroups,
+                               InstrumentIndex instrumentIndex,
+                               MarketDataSubscriptions subscriptions,
+                               DropCopyFeed dropCopyFeed,
+                               StateFrames stateFrames,
+                               BrokerIdentities brokerIdentities) {
         super(objectMapper,
                 brokerCommunicationKit,
                 exchangeCommunicationKit,
-                stateCache);
+                stockState,
+                inFlightOrders,
+                brokerOutbounds,
+                exchangeGroups,
+                instrumentIndex,
+                subscriptions,
+                dropCopyFeed,
+                stateFrames,
+                brokerIdentities);
     }
 
     @Override
@@ -39,9 +65,19 @@ public class ExchangeServiceImpl extends RouterService {
 
     @Override
     public OnConnectionHandler getConnectionHandler() {
-        return new OnConnectionHandler(
-                exchangeCommunicationKit.getIdToMsgProcessorMap()
-        );
+        return new OnConnectionHandler(exchangeCommunicationKit);
+    }
+
+    // exchange answered, stop waiting for it. Broker got a reject for an
+    // order answered too late, so the answer is marked for it not to be
+    // taken as a second answer to the same order.
+    @Override
+    protected void onTradingResponse(FixResponse response) {
+        if (!inFlightOrders.complete(response)) {
+            log.warn("{} answered order {} of {} after it was rejected",
+                    response.getSender(), response.getTrackingId(), response.getTarget());
+            response.setUnsolicited(true);
+        }
     }
 
     private Publisher<Void> handleExchangeInput(String input) {
@@ -63,22 +99,40 @@ public class ExchangeServiceImpl extends RouterService {
         );
 
         if (!state.isEmpty()) {
-            updateStateFromUpdateMessage(stockState.getSender(), state);
-            String broadcastMessage = makeStateUpdateMsgString(
-                    exchangeCommunicationKit.getRouterId()
-            );
-            if (Objects.nonNull(broadcastMessage))
-                return broadcastToBrokers(broadcastMessage);
+            String group = stockState.getGroup();
+            String changedExchange;
+            if (Objects.nonNull(group) && joinGroup(stockState.getSender(), group)) {
+                Map<String, Integer> merged = exchangeGroups.merge(group, stockState.getSender(), state);
+                // the member left while its report was on the way
+                if (Objects.isNull(merged))
+                    return Mono.empty();
+                changedExchange = group;
+                updateStateFromUpdateMessage(group, merged);
+            } else {
+                changedExchange = stockState.getSender();
+                updateStateFromUpdateMessage(changedExchange, state);
+            }
+            publishStateUpdate(exchangeCommunicationKit.getRouterId(), changedExchange);
         }
         return Mono.empty();
     }
 
+    private boolean joinGroup(String sender, String group) {
+        if (Objects.nonNull(exchangeCommunicationKit.getSession(group))) {
+            log.warn("Exchange {} can't join group {}: it's an ID of an exchange", sender, group);
+            return false;
+        }
+        if (!exchangeGroups.join(sender, group)) {
+            log.warn("Exchange {} can't join group {}: it's a member of group {}",
+                    sender, group, exchangeGroups.groupOf(sender));
+            return false;
+        }
+        return true;
+    }
+
     private void updateStateFromUpdateMessage(String sender,
                                               Map<String, Integer> state) {
-        if (stateCache.containsKey(sender)) {
-            stateCache.replace(sender, state);
-        } else {
-            stateCache.putIfAbsent(sender, state);
-        }
+        stockState.update(sender, state);
+        instrumentIndex.update(sender, state);
     }
 }
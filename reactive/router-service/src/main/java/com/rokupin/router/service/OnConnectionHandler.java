@@ -1,35 +1,40 @@
 package com.rokupin.router.service;
 
 
-import com.rokupin.fix.FixMessageProcessor;
-import com.rokupin.router.service.fix.BrokerCommunicationKit;
+import com.rokupin.router.service.fix.CommunicationKit;
+import com.rokupin.router.service.fix.FixSession;
 import reactor.core.publisher.Mono;
 import reactor.netty.Connection;
 
 import java.nio.charset.StandardCharsets;
-import java.util.Map;
+import java.util.Objects;
 import java.util.function.Consumer;
 
 public class OnConnectionHandler implements Consumer<Connection> {
 
-    private final Map<String, FixMessageProcessor> inputProcessors;
+    private final CommunicationKit communicationKit;
 
-    public OnConnectionHandler(Map<String, FixMessageProcessor> inputProcessors) {
-        this.inputProcessors = inputProcessors;
+    public OnConnectionHandler(CommunicationKit communicationKit) {
+        this.communicationKit = communicationKit;
     }
 
     @Override
     public void accept(Connection connection) {
         String id = connection.channel()
-                .attr(BrokerCommunicationKit.ASSIGNED_ID_KEY)
+                .attr(CommunicationKit.ASSIGNED_ID_KEY)
                 .get();
 
-        FixMessageProcessor inputProcessor = inputProcessors.get(id);
+        FixSession session = communicationKit.getSession(id);
+
+        if (Objects.isNull(session)) { // session wasn't opened
+            connection.dispose();
+            return;
+        }
 
         Mono.fromDirect(connection.inbound()
                 .receive()
                 .asString(StandardCharsets.UTF_8)
-                .doOnNext(inputProcessor::processInput)
+                .doOnNext(session::onInput)
                 .then()
         ).subscribe(connection.disposeSubscriber());
     }
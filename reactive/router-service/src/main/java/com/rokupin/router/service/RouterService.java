@@ -1,36 +1,68 @@
 package com.rokupin.router.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.rokupin.model.fix.FixMessage;
 import com.rokupin.model.fix.FixMessageMisconfiguredException;
 import com.rokupin.model.fix.FixResponse;
 import com.rokupin.model.fix.FixStockStateReport;
+import com.rokupin.model.fix.HopTimestamps;
+import com.rokupin.router.service.dropcopy.DropCopyFeed;
 import com.rokupin.router.service.fix.CommunicationKit;
+import com.rokupin.router.service.group.ExchangeGroups;
+import com.rokupin.router.service.identity.BrokerIdentities;
+import com.rokupin.router.service.index.InstrumentIndex;
+import com.rokupin.router.service.outbound.BrokerOutbounds;
+import com.rokupin.router.service.outbound.OutboundPriority;
+import com.rokupin.router.service.state.StateFrames;
+import com.rokupin.router.service.state.StockStateStore;
+import com.rokupin.router.service.subscription.MarketDataSubscriptions;
+import com.rokupin.router.service.subscription.StateFilter;
+import com.rokupin.router.service.tracking.InFlightOrders;
 import lombok.extern.slf4j.Slf4j;
 import org.reactivestreams.Publisher;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.netty.Connection;
 import reactor.netty.NettyOutbound;
 
 import java.nio.charset.StandardCharsets;
-import java.util.Map;
 import java.util.Objects;
 
 @Slf4j
 public abstract class RouterService {
     protected final ObjectMapper objectMapper;
-    protected final Map<String, Map<String, Integer>> stateCache;
+    protected final StockStateStore stockState;
     protected final CommunicationKit brokerCommunicationKit;
     protected final CommunicationKit exchangeCommunicationKit;
-
+    protected final InFlightOrders inFlightOrders;
+    protected final BrokerOutbounds brokerOutbounds;
+    protected final ExchangeGroups exchangeGroups;
+    protected final InstrumentIndex instrumentIndex;
+    protected final MarketDataSubscriptions subscriptions;
+    protected final DropCopyFeed dropCopyFeed;
+    protected final StateFrames stateFrames;
+    protected final BrokerIdentities brokerIdentities;
 
     public RouterService(ObjectMapper objectMapper,
                          CommunicationKit brokerCommunicationKit,
                          CommunicationKit exchangeCommunicationKit,
-                         Map<String, Map<String, Integer>> stateCache) {
-        this.stateCache = stateCache;
+                         StockStateStore stockState,
+                         InFlightOrders inFlightOrders,
+                         BrokerOutbounds brokerOutbounds,
+                         ExchangeGroups exchangeGroups,
+                         InstrumentIndex instrumentIndex,
+                         MarketDataSubscriptions subscriptions,
+                         DropCopyFeed dropCopyFeed,
+                         StateFrames stateFrames,
+                         BrokerIdentities brokerIdentities) {
+        this.stockState = stockState;
+        this.inFlightOrders = inFlightOrders;
+        this.brokerOutbounds = brokerOutbounds;
+        this.exchangeGroups = exchangeGroups;
+        this.instrumentIndex = instrumentIndex;
+        this.subscriptions = subscriptions;
+        this.dropCopyFeed = dropCopyFeed;
+        this.stateFrames = stateFrames;
+        this.brokerIdentities = brokerIdentities;
         this.objectMapper = objectMapper;
         this.brokerCommunicationKit = brokerCommunicationKit;
         this.exchangeCommunicationKit = exchangeCommunicationKit;
@@ -41,14 +73,18 @@ public abstract class RouterService {
     public abstract OnConnectionHandler getConnectionHandler();
 
     protected String makeStateUpdateMsgString(String id) {
+        return makeStateUpdateMsgString(id, StateFilter.ALL);
+    }
+
+    protected String makeStateUpdateMsgString(String id, StateFilter filter) {
+        // the full state is encoded once per change and shared
+        if (filter.isAll() && id.equals(brokerCommunicationKit.getRouterId()))
+            return stateFrames.stateReport();
         try {
-            return new FixStockStateReport(
-                    id, objectMapper.writeValueAsString(stateCache)
-            ).asFix();
+            return new FixStockStateReport(id,
+                    stockState.toJson(filter::instrumentsOf)).asFix();
         } catch (FixMessageMisconfiguredException e) {
             log.error("Can't make fix state update message: {}", e.getMessage());
-        } catch (JsonProcessingException e) {
-            log.error("JSON cache map is misconfigured: {}", e.getMessage());
         }
         return null;
     }
@@ -56,42 +92,56 @@ public abstract class RouterService {
     protected Publisher<Void> handleTradingResponseMsg(String input, String routerId) {
         try {
             FixResponse response = FixMessage.fromFix(input, new FixResponse());
+            onTradingResponse(response);
+            // router's own, brokers match responses by ClOrdID
+            response.setTrackingId(null);
+            String changedExchange = response.getSender();
             boolean stateModified = updateStateFromTradingResponse(response);
+            // brokers know group members by the group ID only
+            String group = exchangeGroups.groupOf(response.getSender());
+            if (Objects.nonNull(group))
+                response.setSender(group);
 
-            Connection connection = brokerCommunicationKit.getConnectionById(response.getTarget());
+            response.getTimestamps().setRouterOut(HopTimestamps.nowMicros());
+            String report = response.asFix();
 
-            if (Objects.isNull(connection)) {
+            dropCopyFeed.publish(report);
+            // execution report goes out ahead of any state snapshot queued for the broker
+            if (!brokerOutbounds.send(response.getTarget(), OutboundPriority.URGENT, report))
                 log.warn("Target broker {} not connected for trading response", response.getTarget());
-                return Mono.empty();
-            }
-
-            Mono<Void> responseToBrokerPublisher = forwardResponseToTargetBroker(
-                    connection.outbound(),
-                    response.getTarget(),
-                    input
-            );
-
-            if (stateModified) {
-                return Flux.concat(
-                        responseToBrokerPublisher,
-                        broadcastToBrokers(makeStateUpdateMsgString(routerId))
-                );
-            } else {
-                return responseToBrokerPublisher;
-            }
+            if (stateModified)
+                publishStateUpdate(routerId, changedExchange);
         } catch (FixMessageMisconfiguredException e) {
             log.error("Unsupported inbound traffic format: {}", e.getMessage());
         }
         return Mono.empty();
     }
 
-    protected Publisher<Void> broadcastToBrokers(String message) {
-        Map<String, Connection> brokerConnections =
-                brokerCommunicationKit.getIdToConnectionMap();
-        return Flux.fromIterable(brokerConnections.entrySet())
-                .flatMap(entry -> forwardResponseToTargetBroker(
-                        entry.getValue().outbound(), entry.getKey(), message)
-                );
+    /**
+     * Called for every trading response before it's forwarded to the broker
+     */
+    protected void onTradingResponse(FixResponse response) {
+    }
+
+    /**
+     * Sends the new state to brokers without subscriptions, and its filtered
+     * parts to the subscribed brokers interested in the changed exchange.
+     * Brokers with several links get it over their state link only.
+     */
+    protected void publishStateUpdate(String routerId, String changedExchange) {
+        if (subscriptions.subscriberCount() < brokerCommunicationKit.sessionCount())
+            brokerOutbounds.broadcast(OutboundPriority.STATE,
+                    makeStateUpdateMsgString(routerId),
+                    session -> !subscriptions.isSubscribed(session.getId()) &&
+                            brokerIdentities.isStateLink(session.getId()));
+
+        subscriptions.forEachCovering(changedExchange, (filter, brokers) -> {
+            String update = makeStateUpdateMsgString(routerId, filter);
+            brokers.forEach(brokerId -> {
+                if (brokerIdentities.isStateLink(brokerId))
+                    brokerOutbounds.send(brokerId, OutboundPriority.STATE, update);
+            });
+        });
     }
 
     protected Mono<Void> forwardResponseToTargetBroker(NettyOutbound outbound,
@@ -111,9 +161,9 @@ public abstract class RouterService {
 
     private boolean updateStateFromTradingResponse(FixResponse response) {
         if (response.getRejectionReason() == FixResponse.EXCHANGE_IS_NOT_AVAILABLE &&
-                stateCache.containsKey(response.getSender())) {
+                stockState.remove(response.getSender())) {
             exchangeCommunicationKit.remove(response.getSender());
-            stateCache.remove(response.getSender());
+            instrumentIndex.remove(response.getSender());
             return true;
         }
         return false;
@@ -0,0 +1,45 @@
+package com.rokupin.router.service.admission;
+
+import com.rokupin.throttling.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Token-bucket limit of orders each broker may send per second. Broker is
+ * known by its identity, so all links of the same broker share a bucket.
+ * Non-positive rate disables the limit.
+ */
+public class BrokerAdmission {
+    private final double rate;
+    private final int burst;
+    private final Map<String, TokenBucket> buckets;
+    private final Counter throttledCounter;
+
+    public BrokerAdmission(double rate, int burst, MeterRegistry meterRegistry) {
+        this.rate = rate;
+        this.burst = burst;
+        this.buckets = new ConcurrentHashMap<>();
+        this.throttledCounter = Counter.builder("router.orders.throttled")
+                .register(meterRegistry);
+    }
+
+    public boolean tryAcquire(String brokerId) {
+        if (rate <= 0)
+            return true;
+
+        long now = System.nanoTime();
+        boolean admitted = buckets.computeIfAbsent(brokerId,
+                id -> new TokenBucket(rate, burst, now)).tryConsume(1, now);
+
+        if (!admitted)
+            throttledCounter.increment();
+        return admitted;
+    }
+
+    public void release(String brokerId) {
+        buckets.remove(brokerId);
+    }
+}
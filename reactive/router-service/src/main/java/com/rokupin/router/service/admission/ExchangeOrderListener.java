@@ -0,0 +1,18 @@
+package com.rokupin.router.service.admission;
+
+import com.rokupin.model.fix.FixRequest;
+
+/**
+ * Gets notified about the fate of the queued orders
+ */
+public interface ExchangeOrderListener {
+    /**
+     * Order is being written to the exchange connection
+     */
+    void onWritten(FixRequest request);
+
+    /**
+     * Order couldn't be written, or was still queued when exchange disconnected
+     */
+    void onUndelivered(FixRequest request);
+}
@@ -0,0 +1,176 @@
+package com.rokupin.router.service.admission;
+
+import com.rokupin.model.fix.FixRequest;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoop;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+/**
+ * Orders waiting to be written to a single exchange connection, queued
+ * separately for each broker. Brokers take turns: on its turn a broker may
+ * send as many orders as its weight allows. Orders are only written while
+ * the connection is writable, so when exchange doesn't keep up, the backlog
+ * stays here - where it is shared fairly - rather than in the socket buffer.
+ */
+@Slf4j
+public class ExchangeOrderQueue {
+    private static final String DRAIN_HANDLER = "fairQueueDrain";
+
+    private final String exchangeId;
+    private final Connection connection;
+    private final int capacityPerBroker;
+    private final ToIntFunction<String> weights;
+    private final ExchangeOrderListener listener;
+
+    private final Map<String, Lane> lanes;
+    private final Deque<Lane> turns;
+    private final AtomicInteger wip;
+    private int size;
+
+    public ExchangeOrderQueue(String exchangeId,
+                              Connection connection,
+                              int capacityPerBroker,
+                              ToIntFunction<String> weights,
+                              ExchangeOrderListener listener) {
+        this.exchangeId = exchangeId;
+        this.connection = connection;
+        this.capacityPerBroker = capacityPerBroker;
+        this.weights = weights;
+        this.listener = listener;
+        this.lanes = new HashMap<>();
+        this.turns = new ArrayDeque<>();
+        this.wip = new AtomicInteger();
+
+        connection.addHandlerLast(DRAIN_HANDLER, new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+                if (ctx.channel().isWritable())
+                    drain();
+                ctx.fireChannelWritabilityChanged();
+            }
+        });
+    }
+
+    /**
+     * @return false if broker's lane is full, order is not queued then
+     */
+    public boolean offer(String brokerId, FixRequest request, String fix) {
+        synchronized (this) {
+            Lane lane = lanes.computeIfAbsent(brokerId, Lane::new);
+            if (lane.orders.size() >= capacityPerBroker)
+                return false;
+            lane.orders.addLast(new QueuedOrder(request, fix));
+            if (lane.orders.size() == 1)
+                turns.addLast(lane);
+            size++;
+        }
+        scheduleDrain();
+        return true;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Stops writing and reports all queued orders as undelivered
+     */
+    public void close() {
+        List<QueuedOrder> dropped = new ArrayList<>();
+
+        synchronized (this) {
+            lanes.values().forEach(lane -> dropped.addAll(lane.orders));
+            lanes.clear();
+            turns.clear();
+            size = 0;
+        }
+        if (!dropped.isEmpty())
+            log.warn("Exchange '{}' is gone, {} queued orders were not delivered",
+                    exchangeId, dropped.size());
+        dropped.forEach(order -> listener.onUndelivered(order.request()));
+    }
+
+    // writes happen on the connection's event loop only, which keeps
+    // orders of each broker in sequence
+    private void scheduleDrain() {
+        EventLoop eventLoop = connection.channel().eventLoop();
+
+        if (eventLoop.inEventLoop())
+            drain();
+        else
+            eventLoop.execute(this::drain);
+    }
+
+    // writes may re-enter via writability change, those just signal there is more to do
+    private void drain() {
+        if (wip.getAndIncrement() != 0)
+            return;
+
+        int missed = 1;
+        do {
+            while (connection.channel().isWritable()) {
+                QueuedOrder order = poll();
+                if (order == null)
+                    break;
+                write(order);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private synchronized QueuedOrder poll() {
+        Lane lane = turns.peekFirst();
+
+        if (lane == null)
+            return null;
+        if (lane.credits == 0)
+            lane.credits = Math.max(1, weights.applyAsInt(lane.brokerId));
+
+        QueuedOrder order = lane.orders.pollFirst();
+        size--;
+        lane.credits--;
+        if (lane.orders.isEmpty()) {
+            turns.pollFirst();
+            lane.credits = 0;
+            lanes.remove(lane.brokerId);
+        } else if (lane.credits == 0) {
+            turns.addLast(turns.pollFirst());
+        }
+        return order;
+    }
+
+    private void write(QueuedOrder order) {
+        listener.onWritten(order.request());
+        connection.outbound()
+                .sendString(Mono.just(order.fix()), StandardCharsets.UTF_8)
+                .then()
+                .subscribe(null, e -> listener.onUndelivered(order.request()));
+    }
+
+    private record QueuedOrder(FixRequest request, String fix) {
+    }
+
+    private static class Lane {
+        private final String brokerId;
+        private final Deque<QueuedOrder> orders;
+        private int credits;
+
+        private Lane(String brokerId) {
+            this.brokerId = brokerId;
+            this.orders = new ArrayDeque<>();
+        }
+    }
+}
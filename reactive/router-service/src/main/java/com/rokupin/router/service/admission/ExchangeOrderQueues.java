@@ -0,0 +1,78 @@
+package com.rokupin.router.service.admission;
+
+import com.rokupin.model.fix.FixRequest;
+import com.rokupin.router.service.fix.FixSession;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fair queue in front of every connected exchange. Brokers are queued and
+ * weighted by their identity, so links of the same broker share one lane.
+ */
+public class ExchangeOrderQueues {
+    private final int capacityPerBroker;
+    private final int defaultWeight;
+    private final Map<String, Integer> brokerWeights;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ExchangeOrderQueue> queues;
+    private final Map<String, Gauge> sizeGauges;
+    private ExchangeOrderListener listener;
+
+    public ExchangeOrderQueues(int capacityPerBroker,
+                               int defaultWeight,
+                               Map<String, Integer> brokerWeights,
+                               MeterRegistry meterRegistry) {
+        this.capacityPerBroker = capacityPerBroker;
+        this.defaultWeight = defaultWeight;
+        this.brokerWeights = brokerWeights;
+        this.meterRegistry = meterRegistry;
+        this.queues = new ConcurrentHashMap<>();
+        this.sizeGauges = new ConcurrentHashMap<>();
+    }
+
+    public void setListener(ExchangeOrderListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @param broker identity of the broker that sent the order
+     * @return false if broker's queue in front of this exchange is full
+     */
+    public boolean offer(FixSession exchange, String broker, FixRequest request, String fix) {
+        boolean queued = queues.computeIfAbsent(exchange.getId(), id -> open(exchange))
+                .offer(broker, request, fix);
+
+        if (exchange.isClosed()) // closed meanwhile
+            close(exchange.getId());
+        return queued;
+    }
+
+    public void close(String exchangeId) {
+        ExchangeOrderQueue queue = queues.remove(exchangeId);
+        Gauge gauge = sizeGauges.remove(exchangeId);
+
+        if (Objects.nonNull(gauge))
+            meterRegistry.remove(gauge);
+        if (Objects.nonNull(queue))
+            queue.close();
+    }
+
+    private ExchangeOrderQueue open(FixSession exchange) {
+        ExchangeOrderQueue queue = new ExchangeOrderQueue(
+                exchange.getId(),
+                exchange.getConnection(),
+                capacityPerBroker,
+                brokerId -> brokerWeights.getOrDefault(brokerId, defaultWeight),
+                listener
+        );
+        sizeGauges.put(exchange.getId(),
+                Gauge.builder("router.exchange.queue.size", queue, ExchangeOrderQueue::size)
+                        .tag("exchange", exchange.getId())
+                        .register(meterRegistry));
+        return queue;
+    }
+}
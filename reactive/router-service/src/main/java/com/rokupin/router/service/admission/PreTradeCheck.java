@@ -0,0 +1,59 @@
+package com.rokupin.router.service.admission;
+
+import com.rokupin.model.fix.FixRequest;
+import com.rokupin.model.fix.FixResponse;
+import com.rokupin.router.service.state.StockStateStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Rejects orders, that target exchange would reject anyway, by the last
+ * state it reported: instruments it doesn't list, and buys of more than
+ * it has. Each such order saves a round trip to the exchange and its
+ * database, counted in {@code router.pre-check.rejected}.
+ * <p>
+ * Exchanges that didn't report their state yet, or whose state is only
+ * restored from a checkpoint, get all orders.
+ */
+public class PreTradeCheck {
+    private final boolean enabled;
+    private final StockStateStore stockState;
+    private final Counter notSupported;
+    private final Counter lacksAmount;
+
+    public PreTradeCheck(boolean enabled,
+                         StockStateStore stockState,
+                         MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.stockState = stockState;
+        this.notSupported = rejectedCounter(FixResponse.INSTRUMENT_NOT_SUPPORTED, meterRegistry);
+        this.lacksAmount = rejectedCounter(FixResponse.EXCHANGE_LACKS_REQUESTED_AMOUNT, meterRegistry);
+    }
+
+    /**
+     * @return rejection reason, or {@link FixResponse#UNSPECIFIED} if order
+     * should go to the exchange
+     */
+    public int check(FixRequest request) {
+        if (!enabled || !stockState.contains(request.getTarget()) ||
+                stockState.isStale(request.getTarget()))
+            return FixResponse.UNSPECIFIED;
+
+        int amount = stockState.amount(request.getTarget(), request.getInstrument());
+        if (amount == StockStateStore.NOT_LISTED) {
+            notSupported.increment();
+            return FixResponse.INSTRUMENT_NOT_SUPPORTED;
+        }
+        if (request.getAction() == FixRequest.SIDE_BUY && amount < request.getAmount()) {
+            lacksAmount.increment();
+            return FixResponse.EXCHANGE_LACKS_REQUESTED_AMOUNT;
+        }
+        return FixResponse.UNSPECIFIED;
+    }
+
+    private static Counter rejectedCounter(int reason, MeterRegistry meterRegistry) {
+        return Counter.builder("router.pre-check.rejected")
+                .tag("reason", String.valueOf(reason))
+                .register(meterRegistry);
+    }
+}
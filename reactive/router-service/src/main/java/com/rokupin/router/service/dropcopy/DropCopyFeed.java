@@ -0,0 +1,59 @@
+package com.rokupin.router.service.dropcopy;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.netty.Connection;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Copies of every execution report router forwards to brokers, for risk
+ * and audit systems. Subscribers only read, and each has its own bounded
+ * backlog, so publishing a report never waits for them. Subscribers that
+ * lag behind are disconnected, counted in {@code router.drop-copy.dropped}.
+ */
+@Slf4j
+public class DropCopyFeed {
+    private final int maxPending;
+    private final List<DropCopySubscriber> subscribers;
+    private final Counter dropped;
+
+    /**
+     * @param maxPending reports that may wait for a subscriber before it's dropped
+     */
+    public DropCopyFeed(int maxPending, MeterRegistry meterRegistry) {
+        this.maxPending = maxPending;
+        this.subscribers = new CopyOnWriteArrayList<>();
+        this.dropped = Counter.builder("router.drop-copy.dropped")
+                .register(meterRegistry);
+        Gauge.builder("router.drop-copy.subscribers", subscribers, List::size)
+                .register(meterRegistry);
+        Gauge.builder("router.drop-copy.pending", this, DropCopyFeed::pending)
+                .register(meterRegistry);
+    }
+
+    public void subscribe(Connection connection) {
+        DropCopySubscriber subscriber = new DropCopySubscriber(connection, maxPending, lagging -> {
+            dropped.increment();
+            subscribers.remove(lagging);
+        });
+
+        subscribers.add(subscriber);
+        connection.onDispose(() -> subscribers.remove(subscriber));
+        log.info("Drop-copy subscriber {} connected", connection.channel().remoteAddress());
+    }
+
+    public void publish(String report) {
+        for (DropCopySubscriber subscriber : subscribers)
+            subscriber.offer(report);
+    }
+
+    private double pending() {
+        return subscribers.stream()
+                .mapToInt(DropCopySubscriber::size)
+                .sum();
+    }
+}
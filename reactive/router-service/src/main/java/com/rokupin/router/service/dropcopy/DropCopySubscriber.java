@@ -0,0 +1,70 @@
+package com.rokupin.router.service.dropcopy;
+
+import com.rokupin.router.service.outbound.OutboundDrain;
+import io.netty.channel.ChannelFutureListener;
+import lombok.extern.slf4j.Slf4j;
+import reactor.netty.Connection;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+/**
+ * Execution reports waiting to be written to a single drop-copy
+ * connection. Offering a report never blocks: a subscriber that lets more
+ * than {@code maxPending} reports pile up is dropped.
+ */
+@Slf4j
+class DropCopySubscriber {
+    private static final String DRAIN_HANDLER = "dropCopyDrain";
+
+    private final Connection connection;
+    private final int maxPending;
+    private final Consumer<DropCopySubscriber> onLagging;
+    private final Deque<String> pending;
+    private final OutboundDrain drain;
+    private boolean dropped;
+
+    DropCopySubscriber(Connection connection,
+                       int maxPending,
+                       Consumer<DropCopySubscriber> onLagging) {
+        this.connection = connection;
+        this.maxPending = maxPending;
+        this.onLagging = onLagging;
+        this.pending = new ArrayDeque<>();
+        this.drain = new OutboundDrain(connection, DRAIN_HANDLER, this::poll,
+                ChannelFutureListener.CLOSE_ON_FAILURE);
+    }
+
+    void offer(String report) {
+        boolean lagging = false;
+
+        synchronized (this) {
+            if (dropped)
+                return;
+            if (pending.size() < maxPending) {
+                pending.addLast(report);
+            } else {
+                dropped = true;
+                pending.clear();
+                lagging = true;
+            }
+        }
+        if (lagging) {
+            log.warn("Drop-copy subscriber {} lags over {} reports, dropping it",
+                    connection.channel().remoteAddress(), maxPending);
+            onLagging.accept(this);
+            connection.dispose();
+        } else {
+            drain.schedule();
+        }
+    }
+
+    synchronized int size() {
+        return pending.size();
+    }
+
+    private synchronized String poll() {
+        return pending.pollFirst();
+    }
+}
@@ -1,8 +1,7 @@
 package com.rokupin.router.service.fix;
 
-import com.rokupin.fix.FixMessageProcessor;
-import com.rokupin.model.fix.FixIdAssignationStockState;
-import com.rokupin.model.fix.FixMessageMisconfiguredException;
+import com.rokupin.router.journal.FrameJournal;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Mono;
@@ -10,51 +9,47 @@ import reactor.netty.Connection;
 import reactor.netty.NettyOutbound;
 
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
 @Slf4j
 public class BrokerCommunicationKit extends CommunicationKit {
-
-    public BrokerCommunicationKit(String routerId) {
-        super(routerId);
+    public static final char ID_PREFIX = 'B';
+
+    public BrokerCommunicationKit(String routerId,
+                                  Duration heartbeatInterval,
+                                  Duration idleTimeout,
+                                  FrameJournal journal,
+                                  SessionPipeline pipeline,
+                                  MeterRegistry meterRegistry) {
+        super(routerId, "broker", ID_PREFIX, heartbeatInterval, idleTimeout, journal, pipeline, meterRegistry);
     }
 
     @Override
     public void newConnection(Connection connection,
-                              String serializedState,
+                              Function<String, String> welcome,
                               Function<String, Publisher<Void>> handlerCallback,
                               BiFunction<Throwable, NettyOutbound, Publisher<Void>> errorCallback) {
-        String newBrokerId = "B" + String.format("%05d", connectedServices++);
+        FixSession session = openSession(connection);
+        String newBrokerId = session.getId();
 
-        FixMessageProcessor brokerInputProcessor = new FixMessageProcessor();
-        brokerInputProcessor.getFlux()
-                .flatMap(handlerCallback)
+        session.setSubscription(pipeline.process(session, applicationInput(session), handlerCallback)
                 .onErrorResume(e -> errorCallback.apply(e, connection.outbound()))
-                .subscribe();
-        idToMsgProcessorMap.put(newBrokerId, brokerInputProcessor);
+                .subscribe());
 
         connection.outbound()
                 .sendString(
-                        publishWelcomeMsg(serializedState, newBrokerId),
+                        publishWelcomeMsg(welcome, newBrokerId),
                         StandardCharsets.UTF_8
                 ).then()
                 .subscribe();
 
-        connection.channel().attr(ASSIGNED_ID_KEY).set(newBrokerId);
-        idToConnectionMap.put(newBrokerId, connection);
+        register(session);
     }
 
-    private Mono<String> publishWelcomeMsg(String serializedState, String newId) {
-        try {
-            FixIdAssignationStockState msg = new FixIdAssignationStockState(
-                    routerId, newId, serializedState
-            );
-            log.debug("New broker '{}' connected", newId);
-            return Mono.just(msg.asFix());
-        } catch (FixMessageMisconfiguredException e) {
-            log.error("Cant make an broker welcome string: {}", e.getMessage());
-        }
-        return Mono.empty();
+    private Mono<String> publishWelcomeMsg(Function<String, String> welcome, String newId) {
+        log.debug("New broker '{}' connected", newId);
+        return Mono.justOrEmpty(welcome.apply(newId));
     }
 }
@@ -1,43 +1,268 @@
 package com.rokupin.router.service.fix;
 
-import com.rokupin.fix.FixMessageProcessor;
+import com.rokupin.model.fix.*;
+import com.rokupin.router.journal.FrameJournal;
+import com.rokupin.router.journal.JournalHandler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.netty.util.AttributeKey;
 import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
 import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.netty.Connection;
 import reactor.netty.NettyOutbound;
 
-import java.util.Map;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
-@Getter
+/**
+ * Registry of the sessions of one kind (brokers or exchanges).
+ * <p>
+ * Peers that stay silent for a heartbeat interval are sent a Test Request,
+ * answering Heartbeat gives session's round trip time. Peers that stay
+ * silent for the idle timeout are disconnected. Every session is torn down
+ * completely - input processing completed, connection disposed and
+ * metrics removed - no matter whether peer disconnected, was evicted or
+ * failed to receive a message.
+ */
+@Slf4j
 public abstract class CommunicationKit {
     public static final AttributeKey<String> ASSIGNED_ID_KEY = AttributeKey.valueOf("id");
 
+    @Getter
     protected final String routerId;
-    protected final Map<String, Connection> idToConnectionMap;
-    protected final Map<String, FixMessageProcessor> idToMsgProcessorMap;
 
-    protected int connectedServices;
+    private final String kind;
+    private final char idPrefix;
+    private final SessionTable sessions;
+    private final AtomicInteger connectedServices;
+    private final AtomicLong testRequestCounter;
+    private final long heartbeatIntervalNanos;
+    private final long idleTimeoutNanos;
+    private final Set<String> disconnectedHosts;
+    private final MeterRegistry meterRegistry;
+    private final Counter reconnectCounter;
+    private final Counter evictionCounter;
+    private final List<Consumer<FixSession>> closeListeners;
+    private final FrameJournal journal;
+    protected final SessionPipeline pipeline;
 
-    public CommunicationKit(String routerId) {
+    public CommunicationKit(String routerId,
+                            String kind,
+                            char idPrefix,
+                            Duration heartbeatInterval,
+                            Duration idleTimeout,
+                            FrameJournal journal,
+                            SessionPipeline pipeline,
+                            MeterRegistry meterRegistry) {
         this.routerId = routerId;
-        this.idToConnectionMap = new ConcurrentHashMap<>();
-        this.idToMsgProcessorMap = new ConcurrentHashMap<>();
+        this.kind = kind;
+        this.idPrefix = idPrefix;
+        this.journal = journal;
+        this.pipeline = pipeline;
+        this.sessions = new SessionTable();
+        this.connectedServices = new AtomicInteger();
+        this.testRequestCounter = new AtomicLong();
+        this.heartbeatIntervalNanos = heartbeatInterval.toNanos();
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.disconnectedHosts = ConcurrentHashMap.newKeySet();
+        this.meterRegistry = meterRegistry;
+        this.closeListeners = new CopyOnWriteArrayList<>();
+
+        Gauge.builder("router.sessions.live", sessions, SessionTable::size)
+                .tag("kind", kind)
+                .register(meterRegistry);
+        this.reconnectCounter = Counter.builder("router.sessions.reconnects")
+                .tag("kind", kind)
+                .register(meterRegistry);
+        this.evictionCounter = Counter.builder("router.sessions.evicted")
+                .tag("kind", kind)
+                .register(meterRegistry);
+
+        Flux.interval(heartbeatInterval)
+                .doOnNext(tick -> checkSessions())
+                .subscribe();
     }
 
+    /**
+     * @param welcome makes the welcome frame for the assigned session ID,
+     *                if the other side expects one with the state
+     */
     public abstract void newConnection(Connection connection,
-                                       String serializedState,
+                                       Function<String, String> welcome,
                                        Function<String, Publisher<Void>> handlerCallback,
                                        BiFunction<Throwable, NettyOutbound, Publisher<Void>> errorCallback);
 
     public Connection getConnectionById(String id) {
-        return idToConnectionMap.get(id);
+        FixSession session = getSession(id);
+        return Objects.isNull(session) ? null : session.getConnection();
+    }
+
+    /**
+     * @return live session, null if there's none with this ID
+     */
+    public FixSession getSession(String id) {
+        return sessions.get(SessionIds.parse(id, idPrefix));
+    }
+
+    public FixSession getSession(int index) {
+        return sessions.get(index);
+    }
+
+    public void forEachSession(Consumer<FixSession> action) {
+        sessions.forEach(action);
+    }
+
+    public int sessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * @param listener called once for every closed session
+     */
+    public void onSessionClosed(Consumer<FixSession> listener) {
+        closeListeners.add(listener);
     }
 
     public void remove(String id) {
-        idToConnectionMap.remove(id);
+        remove(SessionIds.parse(id, idPrefix));
+    }
+
+    public void remove(int index) {
+        FixSession session = sessions.remove(index);
+
+        if (Objects.nonNull(session)) {
+            String host = hostOf(session.getConnection());
+            if (session.close()) {
+                log.debug("Session '{}' closed", session.getId());
+                if (Objects.nonNull(session.getRttGauge()))
+                    meterRegistry.remove(session.getRttGauge());
+                if (Objects.nonNull(session.getQueueLatency()))
+                    meterRegistry.remove(session.getQueueLatency());
+                if (Objects.nonNull(host))
+                    disconnectedHosts.add(host);
+                closeListeners.forEach(listener -> listener.accept(session));
+            }
+        }
+    }
+
+    /**
+     * Makes a session with a fresh ID for the new connection
+     */
+    protected FixSession openSession(Connection connection) {
+        int index = connectedServices.getAndIncrement();
+        String id = SessionIds.format(idPrefix, index);
+        String host = hostOf(connection);
+
+        if (Objects.nonNull(host) && disconnectedHosts.contains(host))
+            reconnectCounter.increment();
+        connection.channel().attr(ASSIGNED_ID_KEY).set(id);
+        if (journal.isEnabled())
+            connection.addHandlerFirst(JournalHandler.NAME, new JournalHandler(journal));
+        return new FixSession(index, id, connection);
+    }
+
+    /**
+     * @return session input, except for the session-level messages, that
+     * are handled here
+     */
+    protected Flux<String> applicationInput(FixSession session) {
+        return session.getInputProcessor()
+                .getFlux()
+                .filter(msg -> !handleSessionMessage(session, msg));
+    }
+
+    protected void register(FixSession session) {
+        sessions.put(session);
+        session.setRttGauge(Gauge.builder("router.session.rtt", session, FixSession::getRttMillis)
+                .tag("kind", kind)
+                .tag("session", session.getId())
+                .baseUnit("milliseconds")
+                .register(meterRegistry));
+        session.getConnection()
+                .onDispose()
+                .doFinally(signalType -> remove(session.getIndex()))
+                .subscribe();
+    }
+
+    private boolean handleSessionMessage(FixSession session, String msg) {
+        try {
+            if (FixMessage.isOfType(msg, FixHeartbeat.MSG_HEARTBEAT)) {
+                FixHeartbeat heartbeat = FixMessage.fromFix(msg, new FixHeartbeat());
+                session.heartbeatReceived(heartbeat.getTestReqId(), System.nanoTime());
+                return true;
+            }
+            if (FixMessage.isOfType(msg, FixTestRequest.MSG_TEST_REQUEST)) {
+                FixTestRequest request = FixMessage.fromFix(msg, new FixTestRequest());
+                send(session, FixHeartbeat.answer(request, routerId).asFix());
+                return true;
+            }
+        } catch (FixMessageMisconfiguredException e) {
+            log.warn("Session '{}': invalid session-level message: {}",
+                    session.getId(), e.getMessage());
+            return true;
+        }
+        return false;
+    }
+
+    private void checkSessions() {
+        long now = System.nanoTime();
+
+        sessions.forEach(session -> {
+            long idle = now - session.getLastReceivedNanos();
+
+            if (idle >= idleTimeoutNanos) {
+                log.warn("Session '{}' was silent for {} ms, disconnecting",
+                        session.getId(), idle / 1_000_000);
+                evictionCounter.increment();
+                remove(session.getIndex());
+            } else if (idle >= heartbeatIntervalNanos &&
+                    !session.isTestRequestPending(now, heartbeatIntervalNanos)) {
+                sendTestRequest(session, now);
+            }
+        });
+    }
+
+    private void sendTestRequest(FixSession session, long now) {
+        String testReqId = String.valueOf(testRequestCounter.incrementAndGet());
+
+        try {
+            String msg = new FixTestRequest(routerId, session.getId(), testReqId).asFix();
+            session.testRequestSent(testReqId, now);
+            send(session, msg);
+        } catch (FixMessageMisconfiguredException e) {
+            log.error("Can't make a test request: {}", e.getMessage());
+        }
+    }
+
+    private void send(FixSession session, String msg) {
+        session.getConnection()
+                .outbound()
+                .sendString(Mono.just(msg), StandardCharsets.UTF_8)
+                .then()
+                .subscribe(null, e -> remove(session.getIndex()));
+    }
+
+    private static String hostOf(Connection connection) {
+        SocketAddress address = connection.channel().remoteAddress();
+
+        if (address instanceof InetSocketAddress inet)
+            return inet.getHostString();
+        return null;
     }
 }
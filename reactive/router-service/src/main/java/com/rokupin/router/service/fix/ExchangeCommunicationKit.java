@@ -1,8 +1,9 @@
 package com.rokupin.router.service.fix;
 
-import com.rokupin.fix.FixMessageProcessor;
 import com.rokupin.model.fix.FixIdAssignation;
 import com.rokupin.model.fix.FixMessageMisconfiguredException;
+import com.rokupin.router.journal.FrameJournal;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Mono;
@@ -10,31 +11,36 @@ import reactor.netty.Connection;
 import reactor.netty.NettyOutbound;
 
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
 @Slf4j
 public class ExchangeCommunicationKit extends CommunicationKit{
+    public static final char ID_PREFIX = 'E';
 
-    public ExchangeCommunicationKit(String routerId) {
-        super(routerId);
+    public ExchangeCommunicationKit(String routerId,
+                                    Duration heartbeatInterval,
+                                    Duration idleTimeout,
+                                    FrameJournal journal,
+                                    SessionPipeline pipeline,
+                                    MeterRegistry meterRegistry) {
+        super(routerId, "exchange", ID_PREFIX, heartbeatInterval, idleTimeout, journal, pipeline, meterRegistry);
     }
 
     @Override
     public void newConnection(Connection connection,
-                              String serializedState,
+                              Function<String, String> welcome,
                               Function<String, Publisher<Void>> handlerCallback,
                               BiFunction<Throwable, NettyOutbound, Publisher<Void>> errorCallback) {
-        String newExchangeId = "E" + String.format("%05d", connectedServices++);
+        FixSession session = openSession(connection);
+        String newExchangeId = session.getId();
 
-        FixMessageProcessor exchangeInputProcessor = new FixMessageProcessor();
-        exchangeInputProcessor.getFlux()
-                .flatMap(handlerCallback)
+        session.setSubscription(pipeline.process(session, applicationInput(session), handlerCallback)
                 .doOnError(e -> log.error(
                         "Exchange service interaction went wrong: {}",
                         e.getMessage())
-                ).subscribe();
-        idToMsgProcessorMap.put(newExchangeId, exchangeInputProcessor);
+                ).subscribe());
 
         connection.outbound()
                 .sendString(
@@ -42,8 +48,8 @@ public class ExchangeCommunicationKit extends CommunicationKit{
                         StandardCharsets.UTF_8
                 ).then()
                 .subscribe();
-        connection.channel().attr(ASSIGNED_ID_KEY).set(newExchangeId);
-        idToConnectionMap.put(newExchangeId, connection);
+
+        register(session);
     }
 
     private Mono<String> publishWelcomeMsg(String newId) {
@@ -0,0 +1,108 @@
+package com.rokupin.router.service.fix;
+
+import com.rokupin.fix.FixMessageProcessor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import lombok.Setter;
+import reactor.core.Disposable;
+import reactor.netty.Connection;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Connection of a single broker or exchange, along with everything that
+ * has to be released when it goes away.
+ */
+public class FixSession {
+    @Getter
+    private final int index;
+    @Getter
+    private final String id;
+    @Getter
+    private final Connection connection;
+    @Getter
+    private final FixMessageProcessor inputProcessor;
+    private final AtomicBoolean closed;
+
+    @Setter
+    private Disposable subscription;
+    @Getter
+    @Setter
+    private Gauge rttGauge;
+    @Getter
+    @Setter
+    private Timer queueLatency;
+    @Getter
+    private volatile long lastReceivedNanos;
+    private volatile String pendingTestReqId;
+    private volatile long testRequestSentNanos;
+    private volatile long rttNanos;
+
+    public FixSession(int index, String id, Connection connection) {
+        this.index = index;
+        this.id = id;
+        this.connection = connection;
+        this.inputProcessor = new FixMessageProcessor();
+        this.closed = new AtomicBoolean(false);
+        this.lastReceivedNanos = System.nanoTime();
+        this.rttNanos = -1;
+    }
+
+    public void onInput(String input) {
+        lastReceivedNanos = System.nanoTime();
+        inputProcessor.processInput(input);
+    }
+
+    public void testRequestSent(String testReqId, long nowNanos) {
+        testRequestSentNanos = nowNanos;
+        pendingTestReqId = testReqId;
+    }
+
+    /**
+     * @return true if test request was sent less than {@code periodNanos}
+     * ago and is still unanswered
+     */
+    public boolean isTestRequestPending(long nowNanos, long periodNanos) {
+        return Objects.nonNull(pendingTestReqId) &&
+                nowNanos - testRequestSentNanos < periodNanos;
+    }
+
+    /**
+     * Takes round trip time, if heartbeat answers the last test request
+     */
+    public void heartbeatReceived(String testReqId, long nowNanos) {
+        if (Objects.nonNull(testReqId) && testReqId.equals(pendingTestReqId)) {
+            rttNanos = nowNanos - testRequestSentNanos;
+            pendingTestReqId = null;
+        }
+    }
+
+    /**
+     * @return round trip time of the last answered test request in
+     * milliseconds, NaN if none was answered yet
+     */
+    public double getRttMillis() {
+        long rtt = rttNanos;
+        return rtt < 0 ? Double.NaN : rtt / 1_000_000.0;
+    }
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * Completes input processing and drops the connection. Idempotent.
+     */
+    public boolean close() {
+        if (!closed.compareAndSet(false, true))
+            return false;
+        inputProcessor.complete();
+        if (Objects.nonNull(subscription))
+            subscription.dispose();
+        if (!connection.isDisposed())
+            connection.dispose();
+        return true;
+    }
+}
@@ -0,0 +1,42 @@
+package com.rokupin.router.service.fix;
+
+/**
+ * Session IDs as seen by the peers - kind prefix followed by at least five
+ * digits, e.g. "B00001". Inside the router sessions are addressed by the
+ * number alone, the string form only exists at the FIX boundary.
+ */
+public final class SessionIds {
+    private static final int MIN_DIGITS = 5;
+
+    private SessionIds() {
+    }
+
+    public static String format(char prefix, int index) {
+        int digits = Math.max(MIN_DIGITS, 1 + (int) Math.log10(Math.max(1, index)));
+        char[] id = new char[digits + 1];
+
+        id[0] = prefix;
+        for (int i = digits; i > 0; i--) {
+            id[i] = (char) ('0' + index % 10);
+            index /= 10;
+        }
+        return new String(id);
+    }
+
+    /**
+     * @return number of the session, or -1 if ID isn't of the given kind
+     */
+    public static int parse(String id, char prefix) {
+        if (id == null || id.length() < 2 || id.charAt(0) != prefix)
+            return -1;
+
+        int index = 0;
+        for (int i = 1; i < id.length(); i++) {
+            int digit = id.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || index > (Integer.MAX_VALUE - digit) / 10)
+                return -1;
+            index = index * 10 + digit;
+        }
+        return index;
+    }
+}
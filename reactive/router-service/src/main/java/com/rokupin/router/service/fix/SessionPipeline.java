@@ -0,0 +1,68 @@
+package com.rokupin.router.service.fix;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Processes application messages of the sessions of one kind on a pool of
+ * worker threads, off the event loops reading the connections.
+ * <p>
+ * Each session is pinned to one worker and its messages are handled
+ * strictly one after another, in the order they were received: the next
+ * message waits until the publisher of the previous one completes. Sessions
+ * are spread across the workers, so a busy session holds up only the
+ * sessions sharing its worker. Time messages wait before their handling
+ * starts is exposed per session as {@code router.session.queue.latency}.
+ */
+public class SessionPipeline {
+    private final String kind;
+    private final Scheduler workers;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * @param workerThreads size of the worker pool, 0 - one per core
+     */
+    public SessionPipeline(String kind, int workerThreads, MeterRegistry meterRegistry) {
+        this.kind = kind;
+        this.meterRegistry = meterRegistry;
+        this.workers = Schedulers.newParallel("router-" + kind + "-worker",
+                workerThreads > 0 ? workerThreads : Schedulers.DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * @return handling of the session's input, in order
+     */
+    public Flux<Void> process(FixSession session,
+                              Flux<String> input,
+                              Function<String, Publisher<Void>> handler) {
+        Timer latency = Timer.builder("router.session.queue.latency")
+                .tag("kind", kind)
+                .tag("session", session.getId())
+                .register(meterRegistry);
+        session.setQueueLatency(latency);
+
+        return input.map(Queued::new)
+                .publishOn(workers)
+                .concatMap(queued -> {
+                    latency.record(System.nanoTime() - queued.receivedNanos(), TimeUnit.NANOSECONDS);
+                    return handler.apply(queued.input());
+                });
+    }
+
+    public void dispose() {
+        workers.dispose();
+    }
+
+    private record Queued(String input, long receivedNanos) {
+        private Queued(String input) {
+            this(input, System.nanoTime());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.rokupin.router.service.fix;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Live sessions, addressed by their number. An open-addressing table:
+ * the session is kept in the first free slot from the one picked by the
+ * low bits of its number, and a removed session leaves a marker behind, so
+ * lookups keep probing past it. The table is rebuilt, dropping the
+ * markers, when it fills up, and shrinks back when most sessions are gone.
+ * Lookups are array accesses without locking.
+ */
+class SessionTable {
+    private static final int MIN_CAPACITY = 64;
+    private static final FixSession REMOVED = new FixSession(-1, null, null);
+
+    private volatile AtomicReferenceArray<FixSession> slots;
+    private volatile int size;
+    private int removed;
+
+    SessionTable() {
+        this.slots = new AtomicReferenceArray<>(MIN_CAPACITY);
+    }
+
+    FixSession get(int index) {
+        if (index < 0)
+            return null;
+
+        AtomicReferenceArray<FixSession> current = slots;
+        int mask = current.length() - 1;
+        for (int slot = index & mask; ; slot = (slot + 1) & mask) {
+            FixSession session = current.get(slot);
+            if (session == null)
+                return null;
+            if (session.getIndex() == index)
+                return session;
+        }
+    }
+
+    synchronized void put(FixSession session) {
+        if ((size + removed + 1) * 2 > slots.length())
+            rebuild(capacityFor(size + 1));
+        if (insert(slots, session))
+            removed--;
+        size++;
+    }
+
+    synchronized FixSession remove(int index) {
+        if (index < 0)
+            return null;
+
+        AtomicReferenceArray<FixSession> current = slots;
+        int mask = current.length() - 1;
+        for (int slot = index & mask; ; slot = (slot + 1) & mask) {
+            FixSession session = current.get(slot);
+            if (session == null)
+                return null;
+            if (session.getIndex() == index) {
+                current.set(slot, REMOVED);
+                size--;
+                removed++;
+                if (current.length() > MIN_CAPACITY && size * 8 < current.length())
+                    rebuild(capacityFor(size));
+                return session;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return slots.length();
+    }
+
+    void forEach(Consumer<FixSession> action) {
+        AtomicReferenceArray<FixSession> current = slots;
+
+        for (int i = 0; i < current.length(); i++) {
+            FixSession session = current.get(i);
+            if (session != null && session != REMOVED)
+                action.accept(session);
+        }
+    }
+
+    // keeps the table at most a quarter full right after a rebuild
+    private static int capacityFor(int live) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < live * 4)
+            capacity *= 2;
+        return capacity;
+    }
+
+    // @return true if the session took place of a removed one
+    private static boolean insert(AtomicReferenceArray<FixSession> table, FixSession session) {
+        int mask = table.length() - 1;
+        int slot = session.getIndex() & mask;
+
+        while (table.get(slot) != null && table.get(slot) != REMOVED)
+            slot = (slot + 1) & mask;
+        boolean reused = table.get(slot) == REMOVED;
+        table.set(slot, session);
+        return reused;
+    }
+
+    private void rebuild(int capacity) {
+        AtomicReferenceArray<FixSession> current = slots;
+        AtomicReferenceArray<FixSession> rebuilt = new AtomicReferenceArray<>(capacity);
+
+        for (int i = 0; i < current.length(); i++) {
+            FixSession session = current.get(i);
+            if (session != null && session != REMOVED)
+                insert(rebuilt, session);
+        }
+        slots = rebuilt;
+        removed = 0;
+    }
+}
@@ -0,0 +1,246 @@
+package com.rokupin.router.service.group;
+
+import com.rokupin.router.service.tracking.InFlightOrders;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Logical exchanges served by several exchange connections.
+ * <p>
+ * An exchange joins a group by naming it in its state reports. Brokers see
+ * and target the group ID only: each order is handed to one of the
+ * members, and the members' state reports are merged into a single state
+ * of the group. The group goes away with its last member.
+ */
+@Slf4j
+public class ExchangeGroups {
+    private final GroupRouting routing;
+    private final InFlightOrders inFlightOrders;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Group> groups;
+    private final Map<String, String> memberGroups;
+
+    public ExchangeGroups(GroupRouting routing,
+                          InFlightOrders inFlightOrders,
+                          MeterRegistry meterRegistry) {
+        this.routing = routing;
+        this.inFlightOrders = inFlightOrders;
+        this.meterRegistry = meterRegistry;
+        this.groups = new ConcurrentHashMap<>();
+        this.memberGroups = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @return false if exchange is a member of another group already
+     */
+    public boolean join(String exchangeId, String groupId) {
+        String current = memberGroups.putIfAbsent(exchangeId, groupId);
+
+        if (Objects.nonNull(current))
+            return current.equals(groupId);
+
+        // atomic with removal of the group by its last member
+        Group group = groups.compute(groupId, (id, existing) -> {
+            Group joined = Objects.isNull(existing) ? new Group(id) : existing;
+            joined.members.add(exchangeId);
+            return joined;
+        });
+        log.info("Exchange {} joined group {}, {} members", exchangeId, groupId, group.members.size());
+        return true;
+    }
+
+    /**
+     * Drops the exchange from its group, along with amounts only it
+     * reported. The group is removed with its last member.
+     *
+     * @return ID of the group exchange left, or null if it wasn't a member
+     */
+    public String leave(String exchangeId) {
+        String groupId = memberGroups.remove(exchangeId);
+
+        if (Objects.isNull(groupId))
+            return null;
+        groups.computeIfPresent(groupId, (id, group) -> {
+            group.members.remove(exchangeId);
+            log.info("Exchange {} left group {}, {} members", exchangeId, groupId, group.members.size());
+            if (group.members.isEmpty()) {
+                meterRegistry.remove(group.membersGauge);
+                return null;
+            }
+            synchronized (group) {
+                group.reports.remove(exchangeId);
+                reassign(group, exchangeId);
+            }
+            return group;
+        });
+        return groupId;
+    }
+
+    public boolean isGroup(String id) {
+        return groups.containsKey(id);
+    }
+
+    /**
+     * @return logical ID of the exchange, or null if it isn't a group member
+     */
+    public String groupOf(String exchangeId) {
+        return memberGroups.get(exchangeId);
+    }
+
+    /**
+     * @return ID of the member to trade the instrument, or null if group has none
+     */
+    public String route(String groupId, String instrument) {
+        Group group = groups.get(groupId);
+
+        if (Objects.isNull(group))
+            return null;
+        return routing == GroupRouting.AFFINITY ?
+                owner(group.members, instrument) :
+                leastOutstanding(group.members);
+    }
+
+    /**
+     * Applies member's state report to the state of its group. With
+     * affinity routing, only the member owning an instrument reports its
+     * actual amount, reports of the others are taken for instruments group
+     * doesn't know yet.
+     *
+     * @return state of the whole group, or null if the group is gone
+     */
+    public Map<String, Integer> merge(String groupId, String exchangeId, Map<String, Integer> state) {
+        Group group = groups.get(groupId);
+
+        if (Objects.isNull(group) || !group.members.contains(exchangeId))
+            return null;
+        synchronized (group) {
+            group.reports.put(exchangeId, Map.copyOf(state));
+            state.forEach((instrument, amount) -> {
+                if (routing != GroupRouting.AFFINITY ||
+                        !group.state.containsKey(instrument) ||
+                        exchangeId.equals(owner(group.members, instrument))) {
+                    group.state.put(instrument, amount);
+                    group.sources.put(instrument, exchangeId);
+                }
+            });
+            return new HashMap<>(group.state);
+        }
+    }
+
+    /**
+     * @return state of the whole group, or null if the group is gone
+     */
+    public Map<String, Integer> stateOf(String groupId) {
+        Group group = groups.get(groupId);
+
+        if (Objects.isNull(group))
+            return null;
+        synchronized (group) {
+            return new HashMap<>(group.state);
+        }
+    }
+
+    // amounts the departed member set are taken from the last reports of
+    // the remaining members, instruments none of them reported are dropped
+    private void reassign(Group group, String departed) {
+        Iterator<Map.Entry<String, String>> sources = group.sources.entrySet().iterator();
+
+        while (sources.hasNext()) {
+            Map.Entry<String, String> source = sources.next();
+            if (!source.getValue().equals(departed))
+                continue;
+            String instrument = source.getKey();
+            String reporter = reporterOf(group, instrument);
+            if (Objects.isNull(reporter)) {
+                group.state.remove(instrument);
+                sources.remove();
+            } else {
+                group.state.put(instrument, group.reports.get(reporter).get(instrument));
+                source.setValue(reporter);
+            }
+        }
+    }
+
+    // the owner with affinity routing, otherwise any member that reported the instrument
+    private String reporterOf(Group group, String instrument) {
+        if (routing == GroupRouting.AFFINITY) {
+            String owner = owner(group.members, instrument);
+            if (Objects.nonNull(owner) && reported(group, owner, instrument))
+                return owner;
+        }
+        for (String member : group.members)
+            if (reported(group, member, instrument))
+                return member;
+        return null;
+    }
+
+    private static boolean reported(Group group, String member, String instrument) {
+        Map<String, Integer> report = group.reports.get(member);
+        return Objects.nonNull(report) && report.containsKey(instrument);
+    }
+
+    private String leastOutstanding(List<String> members) {
+        String best = null;
+        int bestOutstanding = Integer.MAX_VALUE;
+
+        for (String member : members) {
+            int outstanding = inFlightOrders.outstanding(member);
+            if (outstanding < bestOutstanding) {
+                best = member;
+                bestOutstanding = outstanding;
+            }
+        }
+        return best;
+    }
+
+    // rendezvous hashing: member with the highest score for the instrument
+    private static String owner(List<String> members, String instrument) {
+        String best = null;
+        long bestScore = Long.MIN_VALUE;
+
+        for (String member : members) {
+            long score = score(member, instrument);
+            if (Objects.isNull(best) || score > bestScore) {
+                best = member;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private static long score(String member, String instrument) {
+        long h = member.hashCode() * 0x9E3779B97F4A7C15L ^ instrument.hashCode();
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    private class Group {
+        private final List<String> members;
+        private final Map<String, Integer> state;
+        private final Map<String, String> sources;
+        private final Map<String, Map<String, Integer>> reports;
+        private final Gauge membersGauge;
+
+        private Group(String groupId) {
+            this.members = new CopyOnWriteArrayList<>();
+            this.state = new HashMap<>();
+            this.sources = new HashMap<>();
+            this.reports = new HashMap<>();
+            this.membersGauge = Gauge.builder("router.exchange.group.members", members, List::size)
+                    .tag("group", groupId)
+                    .register(meterRegistry);
+        }
+    }
+}
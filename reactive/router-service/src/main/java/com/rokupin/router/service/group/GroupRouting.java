@@ -0,0 +1,25 @@
+package com.rokupin.router.service.group;
+
+/**
+ * How an order targeting an exchange group picks the member to trade it
+ */
+public enum GroupRouting {
+    /**
+     * Each instrument is traded by a single member, so members sharing a
+     * database never update the same instrument concurrently. Instruments
+     * are spread by rendezvous hashing - when a member leaves, only its
+     * instruments move to the others.
+     */
+    AFFINITY,
+    /**
+     * Member with the fewest orders waiting for an answer
+     */
+    LEAST_OUTSTANDING;
+
+    /**
+     * @param name "affinity" or "least-outstanding"
+     */
+    public static GroupRouting of(String name) {
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+}
@@ -0,0 +1,110 @@
+package com.rokupin.router.service.identity;
+
+import com.rokupin.router.service.fix.BrokerCommunicationKit;
+import com.rokupin.router.service.fix.SessionIds;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Brokers behind broker sessions. A broker may keep several connections
+ * (links) to router, each of them logs on with the name of the broker.
+ * Links of the same name are a single broker: they share its order rate
+ * limit and its share of exchange queues, and only one of them - the state
+ * link - gets state updates. When the state link goes away, the next one
+ * takes over.
+ * <p>
+ * A session that didn't log on is a broker of its own, known by the
+ * session ID.
+ */
+@Slf4j
+public class BrokerIdentities {
+    private final Map<String, String> names;
+    private final Map<String, List<String>> links;
+    private final Set<String> standby;
+
+    public BrokerIdentities(MeterRegistry meterRegistry) {
+        this.names = new ConcurrentHashMap<>();
+        this.links = new HashMap<>();
+        this.standby = ConcurrentHashMap.newKeySet();
+        Gauge.builder("router.brokers.named", this, BrokerIdentities::brokerCount)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return false if the name can't be taken, or the session has already
+     * logged on
+     */
+    public synchronized boolean logon(String sessionId, String name) {
+        if (name.isBlank() ||
+                SessionIds.parse(name, BrokerCommunicationKit.ID_PREFIX) >= 0 ||
+                names.containsKey(sessionId))
+            return false;
+
+        List<String> sessions = links.computeIfAbsent(name, n -> new ArrayList<>());
+        if (!sessions.isEmpty())
+            standby.add(sessionId);
+        sessions.add(sessionId);
+        names.put(sessionId, name);
+        log.info("Broker session {} logged on as '{}', {} links", sessionId, name, sessions.size());
+        return true;
+    }
+
+    /**
+     * @return name of the broker, or session ID if the session didn't log on
+     */
+    public String identityOf(String sessionId) {
+        String name = names.get(sessionId);
+        return Objects.isNull(name) ? sessionId : name;
+    }
+
+    /**
+     * @return true if state updates for the broker go to this session
+     */
+    public boolean isStateLink(String sessionId) {
+        return !standby.contains(sessionId);
+    }
+
+    public synchronized Departure leave(String sessionId) {
+        String name = names.remove(sessionId);
+
+        if (Objects.isNull(name))
+            return new Departure(sessionId, true, null);
+
+        List<String> sessions = links.get(name);
+        sessions.remove(sessionId);
+        boolean stateLink = !standby.remove(sessionId);
+        if (sessions.isEmpty()) {
+            links.remove(name);
+            return new Departure(name, true, null);
+        }
+        if (!stateLink)
+            return new Departure(name, false, null);
+
+        String promoted = sessions.get(0);
+        standby.remove(promoted);
+        log.info("Broker '{}' gets state over {} now", name, promoted);
+        return new Departure(name, false, promoted);
+    }
+
+    private synchronized int brokerCount() {
+        return links.size();
+    }
+
+    /**
+     * @param identity  of the broker the session belonged to
+     * @param last      true if the broker has no other sessions
+     * @param stateLink session taking over state updates, null if the
+     *                  departed one wasn't the state link
+     */
+    public record Departure(String identity, boolean last, String stateLink) {
+    }
+}
@@ -0,0 +1,96 @@
+package com.rokupin.router.service.index;
+
+import com.rokupin.model.fix.FixRequest;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Inverted stock state: for each instrument, exchanges listing it, sorted
+ * by the available amount. Kept up to date from the state reports, each
+ * report only touches the entries whose amount changed.
+ * <p>
+ * Lookups don't block the updates, and take O(log n) in the number of
+ * exchanges listing the instrument.
+ */
+public class InstrumentIndex {
+    private static final Comparator<Listing> LARGEST_FIRST =
+            Comparator.comparingInt(Listing::amount).reversed()
+                    .thenComparing(Listing::exchangeId);
+
+    private final Map<String, NavigableSet<Listing>> instruments;
+    private final Map<String, Map<String, Integer>> exchanges;
+
+    public InstrumentIndex() {
+        this.instruments = new ConcurrentHashMap<>();
+        this.exchanges = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Replaces listings of the exchange with the ones of its new state.
+     * New listings go in before the old ones go out, so a lookup made
+     * meanwhile never finds an instrument the exchange keeps listing gone.
+     */
+    public synchronized void update(String exchangeId, Map<String, Integer> state) {
+        Map<String, Integer> previous = exchanges.put(exchangeId, Map.copyOf(state));
+
+        state.forEach((instrument, amount) -> {
+            if (Objects.isNull(previous) || !amount.equals(previous.get(instrument)))
+                instruments.computeIfAbsent(instrument, i -> new ConcurrentSkipListSet<>(LARGEST_FIRST))
+                        .add(new Listing(exchangeId, amount));
+        });
+        if (Objects.nonNull(previous)) {
+            previous.forEach((instrument, amount) -> {
+                Integer current = state.get(instrument);
+                if (!amount.equals(current))
+                    unlist(instrument, new Listing(exchangeId, amount));
+            });
+        }
+    }
+
+    public synchronized void remove(String exchangeId) {
+        Map<String, Integer> previous = exchanges.remove(exchangeId);
+
+        if (Objects.nonNull(previous))
+            previous.forEach((instrument, amount) ->
+                    unlist(instrument, new Listing(exchangeId, amount)));
+    }
+
+    /**
+     * Buy goes where the most of instrument is available, sell - where the
+     * least is, as it has the most room left below exchange's maximum.
+     *
+     * @return exchange to trade the order, or null if none lists the instrument
+     */
+    public String bestVenue(String instrument, int side) {
+        NavigableSet<Listing> listings = instruments.get(instrument);
+
+        if (Objects.isNull(listings))
+            return null;
+
+        try {
+            Listing best = side == FixRequest.SIDE_BUY ? listings.first() : listings.last();
+            return best.exchangeId();
+        } catch (NoSuchElementException e) { // last listing removed meanwhile
+            return null;
+        }
+    }
+
+    private void unlist(String instrument, Listing listing) {
+        NavigableSet<Listing> listings = instruments.get(instrument);
+
+        if (Objects.nonNull(listings)) {
+            listings.remove(listing);
+            if (listings.isEmpty())
+                instruments.remove(instrument);
+        }
+    }
+
+    private record Listing(String exchangeId, int amount) {
+    }
+}
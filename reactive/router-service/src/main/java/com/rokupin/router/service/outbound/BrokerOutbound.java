@@ -0,0 +1,172 @@
+package com.rokupin.router.service.outbound;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.ChannelFutureListener;
+import lombok.extern.slf4j.Slf4j;
+import reactor.netty.Connection;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Messages waiting to be written to a single broker connection.
+ * <p>
+ * Urgent messages are written first, in order. State snapshot is written
+ * only when no urgent message waits, and a newer snapshot replaces the one
+ * still waiting. Messages are written only while the connection is
+ * writable, so a large snapshot can't pile up in the socket buffer ahead of
+ * execution reports that come after it.
+ * <p>
+ * A broker that stops reading keeps its connection unwritable. Its state
+ * snapshots keep being conflated, and if it doesn't catch up within the
+ * grace period, or its urgent backlog exceeds the limit, it's reported as
+ * a slow consumer to be disconnected.
+ */
+@Slf4j
+public class BrokerOutbound {
+    private static final String DRAIN_HANDLER = "priorityOutboundDrain";
+
+    private final String brokerId;
+    private final Connection connection;
+    private final Duration gracePeriod;
+    private final int maxPending;
+    private final Consumer<String> onSlowConsumer;
+    private final Timer urgentWait;
+    private final Timer stateWait;
+    private final Counter conflated;
+    private final OutboundDrain drain;
+
+    private final Deque<Pending> urgent;
+    private Pending state;
+    private boolean slow;
+    // event loop only
+    private ScheduledFuture<?> graceCheck;
+
+    /**
+     * @param gracePeriod    how long connection may stay unwritable
+     * @param maxPending     urgent messages that may wait for the connection, 0 - no limit
+     * @param onSlowConsumer called once with broker ID, if it's too slow
+     */
+    public BrokerOutbound(String brokerId,
+                          Connection connection,
+                          Duration gracePeriod,
+                          int maxPending,
+                          Timer urgentWait,
+                          Timer stateWait,
+                          Counter conflated,
+                          Consumer<String> onFailure,
+                          Consumer<String> onSlowConsumer) {
+        this.brokerId = brokerId;
+        this.connection = connection;
+        this.gracePeriod = gracePeriod;
+        this.maxPending = maxPending;
+        this.onSlowConsumer = onSlowConsumer;
+        this.urgentWait = urgentWait;
+        this.stateWait = stateWait;
+        this.conflated = conflated;
+        this.urgent = new ArrayDeque<>();
+        ChannelFutureListener onWritten = future -> {
+            if (!future.isSuccess()) {
+                log.warn("Failed to send to {}: {}", brokerId, future.cause().getMessage());
+                onFailure.accept(brokerId);
+            }
+        };
+        this.drain = new OutboundDrain(connection, DRAIN_HANDLER, new OutboundDrain.Source() {
+            @Override
+            public String poll() {
+                Pending next = BrokerOutbound.this.poll();
+                return next == null ? null : next.message();
+            }
+
+            @Override
+            public void onWritable() {
+                cancelGraceCheck();
+            }
+
+            @Override
+            public void onUnwritable() {
+                startGraceCheck();
+            }
+        }, onWritten);
+    }
+
+    public void send(OutboundPriority priority, String message) {
+        Pending pending = new Pending(message, System.nanoTime());
+        int backlog = 0;
+
+        synchronized (this) {
+            if (slow)
+                return;
+            if (priority == OutboundPriority.URGENT) {
+                if (maxPending <= 0 || urgent.size() < maxPending)
+                    urgent.addLast(pending);
+                else
+                    backlog = urgent.size();
+            } else {
+                if (state != null)
+                    conflated.increment();
+                state = pending;
+            }
+        }
+        if (backlog > 0)
+            reportSlowConsumer(backlog + " messages pending");
+        else
+            drain.schedule();
+    }
+
+    public synchronized int size() {
+        return urgent.size() + (state == null ? 0 : 1);
+    }
+
+    private void startGraceCheck() {
+        if (Objects.nonNull(graceCheck) || !connection.channel().isActive())
+            return;
+        graceCheck = connection.channel().eventLoop().schedule(() -> {
+            graceCheck = null;
+            if (!connection.channel().isWritable())
+                reportSlowConsumer("stayed unwritable for " + gracePeriod);
+        }, gracePeriod.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private void cancelGraceCheck() {
+        if (Objects.nonNull(graceCheck)) {
+            graceCheck.cancel(false);
+            graceCheck = null;
+        }
+    }
+
+    private void reportSlowConsumer(String reason) {
+        synchronized (this) {
+            if (slow)
+                return;
+            slow = true;
+            urgent.clear();
+            state = null;
+        }
+        log.warn("Broker {} is a slow consumer: {}", brokerId, reason);
+        onSlowConsumer.accept(brokerId);
+    }
+
+    private synchronized Pending poll() {
+        Pending next = urgent.pollFirst();
+
+        if (next != null) {
+            urgentWait.record(System.nanoTime() - next.queuedNanos(), TimeUnit.NANOSECONDS);
+            return next;
+        }
+        next = state;
+        state = null;
+        if (next != null)
+            stateWait.record(System.nanoTime() - next.queuedNanos(), TimeUnit.NANOSECONDS);
+        return next;
+    }
+
+    private record Pending(String message, long queuedNanos) {
+    }
+}
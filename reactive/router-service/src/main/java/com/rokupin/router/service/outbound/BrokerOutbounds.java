@@ -0,0 +1,135 @@
+package com.rokupin.router.service.outbound;
+
+import com.rokupin.router.service.fix.CommunicationKit;
+import com.rokupin.router.service.fix.FixSession;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Prioritized outbound of every connected broker. Time messages of each
+ * priority wait before they are written is exposed as
+ * {@code router.broker.outbound.wait}. Brokers that don't keep up with
+ * their traffic are disconnected, which keeps memory router spends on
+ * their backlog bounded.
+ */
+public class BrokerOutbounds {
+    private static final AttributeKey<BrokerOutbound> OUTBOUND_KEY = AttributeKey.valueOf("brokerOutbound");
+
+    private final CommunicationKit brokerCommunicationKit;
+    private final Duration gracePeriod;
+    private final int maxPending;
+    private final Timer urgentWait;
+    private final Timer stateWait;
+    private final Counter conflated;
+    private final Counter slowConsumers;
+
+    /**
+     * @param gracePeriod how long a broker connection may stay unwritable
+     * @param maxPending  urgent messages that may wait for a broker, 0 - no limit
+     */
+    public BrokerOutbounds(CommunicationKit brokerCommunicationKit,
+                           Duration gracePeriod,
+                           int maxPending,
+                           MeterRegistry meterRegistry) {
+        this.brokerCommunicationKit = brokerCommunicationKit;
+        this.gracePeriod = gracePeriod;
+        this.maxPending = maxPending;
+        this.urgentWait = waitTimer(OutboundPriority.URGENT, meterRegistry);
+        this.stateWait = waitTimer(OutboundPriority.STATE, meterRegistry);
+        this.conflated = Counter.builder("router.broker.state.conflated")
+                .register(meterRegistry);
+        this.slowConsumers = Counter.builder("router.broker.slow-consumers")
+                .register(meterRegistry);
+        Gauge.builder("router.broker.outbound.pending", this, BrokerOutbounds::pending)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return false if broker is not connected
+     */
+    public boolean send(String brokerId, OutboundPriority priority, String message) {
+        FixSession session = brokerCommunicationKit.getSession(brokerId);
+
+        if (Objects.isNull(session) || session.isClosed() || Objects.isNull(message))
+            return false;
+
+        outbound(session).send(priority, message);
+        return true;
+    }
+
+    public void broadcast(OutboundPriority priority, String message) {
+        broadcast(priority, message, session -> true);
+    }
+
+    /**
+     * Sends the message to the brokers whose sessions match the filter
+     */
+    public void broadcast(OutboundPriority priority, String message, Predicate<FixSession> filter) {
+        if (Objects.nonNull(message))
+            brokerCommunicationKit.forEachSession(session -> {
+                if (!session.isClosed() && filter.test(session))
+                    outbound(session).send(priority, message);
+            });
+    }
+
+    // outbound lives and goes away with broker's channel
+    private BrokerOutbound outbound(FixSession session) {
+        Attribute<BrokerOutbound> attribute = session.getConnection().channel().attr(OUTBOUND_KEY);
+        BrokerOutbound outbound = attribute.get();
+
+        if (Objects.isNull(outbound)) {
+            synchronized (session) {
+                outbound = attribute.get();
+                if (Objects.isNull(outbound)) {
+                    outbound = open(session);
+                    attribute.set(outbound);
+                }
+            }
+        }
+        return outbound;
+    }
+
+    private double pending() {
+        AtomicInteger pending = new AtomicInteger();
+
+        brokerCommunicationKit.forEachSession(session -> {
+            BrokerOutbound outbound = session.getConnection().channel().attr(OUTBOUND_KEY).get();
+            if (Objects.nonNull(outbound))
+                pending.addAndGet(outbound.size());
+        });
+        return pending.get();
+    }
+
+    private BrokerOutbound open(FixSession session) {
+        return new BrokerOutbound(session.getId(),
+                session.getConnection(),
+                gracePeriod,
+                maxPending,
+                urgentWait,
+                stateWait,
+                conflated,
+                brokerCommunicationKit::remove,
+                this::disconnectSlowConsumer);
+    }
+
+    private void disconnectSlowConsumer(String brokerId) {
+        slowConsumers.increment();
+        brokerCommunicationKit.remove(brokerId);
+    }
+
+    private static Timer waitTimer(OutboundPriority priority, MeterRegistry meterRegistry) {
+        return Timer.builder("router.broker.outbound.wait")
+                .tag("priority", priority.name().toLowerCase())
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
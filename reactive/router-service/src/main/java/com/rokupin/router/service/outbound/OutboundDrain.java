@@ -0,0 +1,106 @@
+package com.rokupin.router.service.outbound;
+
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoop;
+import reactor.netty.Connection;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes messages of a {@link Source} to a connection while it's writable,
+ * on the connection's event loop only, so that messages stay in sequence.
+ * Draining resumes when the connection becomes writable again, and is
+ * flushed once per batch rather than per message.
+ */
+public class OutboundDrain {
+
+    public interface Source {
+        /**
+         * @return next message to write, null if none waits
+         */
+        String poll();
+
+        /**
+         * Called on the event loop when the connection becomes writable,
+         * before draining resumes
+         */
+        default void onWritable() {
+        }
+
+        /**
+         * Called on the event loop when the connection is left unwritable
+         */
+        default void onUnwritable() {
+        }
+    }
+
+    private final Connection connection;
+    private final Source source;
+    private final ChannelFutureListener onWritten;
+    private final AtomicInteger wip;
+
+    /**
+     * @param handlerName name of the writability handler added to the connection
+     * @param onWritten   listener of each write
+     */
+    public OutboundDrain(Connection connection,
+                         String handlerName,
+                         Source source,
+                         ChannelFutureListener onWritten) {
+        this.connection = connection;
+        this.source = source;
+        this.onWritten = onWritten;
+        this.wip = new AtomicInteger();
+
+        connection.addHandlerLast(handlerName, new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+                if (ctx.channel().isWritable()) {
+                    source.onWritable();
+                    drain();
+                } else {
+                    source.onUnwritable();
+                }
+                ctx.fireChannelWritabilityChanged();
+            }
+        });
+    }
+
+    public void schedule() {
+        EventLoop eventLoop = connection.channel().eventLoop();
+
+        if (eventLoop.inEventLoop())
+            drain();
+        else
+            eventLoop.execute(this::drain);
+    }
+
+    // writes may re-enter via writability change, those just signal there is more to do
+    private void drain() {
+        if (wip.getAndIncrement() != 0)
+            return;
+
+        Channel channel = connection.channel();
+        int missed = 1;
+        do {
+            boolean written = false;
+            while (channel.isWritable()) {
+                String next = source.poll();
+                if (next == null)
+                    break;
+                channel.write(ByteBufUtil.writeUtf8(channel.alloc(), next))
+                        .addListener(onWritten);
+                written = true;
+            }
+            if (written)
+                channel.flush();
+            if (!channel.isWritable())
+                source.onUnwritable();
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+}
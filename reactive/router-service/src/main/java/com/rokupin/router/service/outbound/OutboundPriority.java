@@ -0,0 +1,16 @@
+package com.rokupin.router.service.outbound;
+
+/**
+ * Classes of traffic to a broker, in the order they are written
+ */
+public enum OutboundPriority {
+    /**
+     * Execution reports, rejects and errors - never dropped, written first
+     */
+    URGENT,
+    /**
+     * Stock state snapshots - each one replaces the previous one that
+     * wasn't written yet, since only the latest state matters
+     */
+    STATE
+}
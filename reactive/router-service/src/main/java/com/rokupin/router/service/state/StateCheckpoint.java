@@ -0,0 +1,197 @@
+package com.rokupin.router.service.state;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * Periodically saves {@link StockStateStore} to a local file, so a
+ * restarted router has the last known state of exchanges before they
+ * reconnect. The file holds a header (magic, format version, payload
+ * length), the payload written by {@link StockStateStore#writeTo} and
+ * its CRC32. It's written to a temporary file first and moved over the
+ * previous checkpoint, so a crash mid-write leaves the previous one intact.
+ * <p>
+ * Nothing is written while the state doesn't change. Only durable
+ * exchanges - groups, whose IDs are configured - are saved, as IDs of
+ * single exchanges mean someone else on the next run. Restored state that
+ * isn't refreshed by a report within the stale timeout is dropped.
+ */
+@Slf4j
+public class StateCheckpoint {
+    private static final int MAGIC = 0x52535443; // "RSTC"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+
+    private final StockStateStore stockState;
+    private final Path file;
+    private final Predicate<String> durable;
+    private final Duration staleTimeout;
+    private final Timer writeTimer;
+    private final Counter failures;
+    private long writtenVersion;
+    private Disposable schedule;
+    private Disposable staleDrop;
+    private Consumer<String> onStaleDropped;
+
+    /**
+     * @param durable      exchanges whose state is saved
+     * @param staleTimeout how long restored state may wait for a report
+     */
+    public StateCheckpoint(StockStateStore stockState,
+                           Path file,
+                           Predicate<String> durable,
+                           Duration staleTimeout,
+                           MeterRegistry meterRegistry) {
+        this.stockState = stockState;
+        this.file = file;
+        this.durable = durable;
+        this.staleTimeout = staleTimeout;
+        this.onStaleDropped = exchangeId -> {};
+        this.writeTimer = Timer.builder("router.state.checkpoint.write")
+                .register(meterRegistry);
+        this.failures = Counter.builder("router.state.checkpoint.failures")
+                .register(meterRegistry);
+        this.writtenVersion = -1;
+        Gauge.builder("router.state.stale-exchanges", stockState, StockStateStore::staleCount)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param onStaleDropped called with ID of each exchange whose restored
+     *                       state was dropped
+     */
+    public void setStaleDropHandler(Consumer<String> onStaleDropped) {
+        this.onStaleDropped = onStaleDropped;
+    }
+
+    /**
+     * Restores state from the checkpoint file, if there is a valid one
+     *
+     * @return number of exchanges restored
+     */
+    public int restore() {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (buffer.remaining() < HEADER_SIZE ||
+                    buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                log.warn("Ignoring state checkpoint {} of unknown format", file);
+                return 0;
+            }
+            int length = buffer.getInt();
+            if (length < 0 || buffer.remaining() != length + Long.BYTES) {
+                log.warn("Ignoring truncated state checkpoint {}", file);
+                return 0;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), HEADER_SIZE, length);
+            if (crc.getValue() != buffer.getLong(HEADER_SIZE + length)) {
+                log.warn("Ignoring corrupted state checkpoint {}", file);
+                return 0;
+            }
+            int restored = stockState.restore(new DataInputStream(
+                    new ByteArrayInputStream(buffer.array(), HEADER_SIZE, length)), durable);
+            log.info("Restored stale state of {} exchanges from {}", restored, file);
+            if (restored > 0)
+                staleDrop = Mono.delay(staleTimeout, Schedulers.boundedElastic())
+                        .subscribe(tick -> dropStale());
+            return restored;
+        } catch (NoSuchFileException e) {
+            log.info("No state checkpoint at {}, starting empty", file);
+        } catch (IOException e) {
+            failures.increment();
+            log.warn("Can't restore state checkpoint {}: {}", file, e.getMessage());
+        }
+        return 0;
+    }
+
+    public void start(Duration interval) {
+        schedule = Flux.interval(interval, Schedulers.boundedElastic())
+                .onBackpressureDrop()
+                .concatMap(tick -> Mono.fromRunnable(this::write))
+                .subscribe();
+    }
+
+    /**
+     * Stops checkpointing, writing the last state
+     */
+    public void close() {
+        if (Objects.nonNull(staleDrop))
+            staleDrop.dispose();
+        if (Objects.isNull(schedule))
+            return;
+        schedule.dispose();
+        write();
+    }
+
+    void dropStale() {
+        List<String> dropped = stockState.removeStale();
+
+        if (!dropped.isEmpty())
+            log.warn("No report from {} within {}, their restored state is dropped",
+                    dropped, staleTimeout);
+        dropped.forEach(onStaleDropped);
+    }
+
+    synchronized void write() {
+        long version = stockState.version();
+        if (version == writtenVersion)
+            return;
+
+        long start = System.nanoTime();
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+            DataOutputStream out = new DataOutputStream(bytes);
+
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(0); // payload length, set below
+            stockState.writeTo(out, durable);
+            out.flush();
+
+            byte[] checkpoint = Arrays.copyOf(bytes.toByteArray(), bytes.size() + Long.BYTES);
+            ByteBuffer buffer = ByteBuffer.wrap(checkpoint);
+            int length = checkpoint.length - HEADER_SIZE - Long.BYTES;
+            CRC32 crc = new CRC32();
+            crc.update(checkpoint, HEADER_SIZE, length);
+            buffer.putInt(HEADER_SIZE - Integer.BYTES, length);
+            buffer.putLong(HEADER_SIZE + length, crc.getValue());
+
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(temporary, checkpoint);
+            Files.move(temporary, file,
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            writtenVersion = version;
+        } catch (IOException e) {
+            failures.increment();
+            log.warn("Can't write state checkpoint {}: {}", file, e.getMessage());
+        } finally {
+            writeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.rokupin.router.service.state;
+
+import com.rokupin.model.fix.FixIdAssignationStockState;
+import com.rokupin.model.fix.FixMessageMisconfiguredException;
+import com.rokupin.model.fix.FixStockStateReport;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Full state frames, encoded once per state version and shared by all
+ * brokers: the state report answering state requests, and the welcome
+ * frame every new broker gets. Welcome frames differ only by the assigned
+ * ID, so the part after it is kept encoded, along with its checksum, and
+ * only the ID is added per broker.
+ * <p>
+ * Encodings are counted in {@code router.state.frames.encoded}.
+ */
+@Slf4j
+public class StateFrames {
+    private static final String ID_PLACEHOLDER = "\u0000";
+
+    private final String routerId;
+    private final StockStateStore stockState;
+    private final Counter encoded;
+    private volatile Snapshot snapshot;
+
+    public StateFrames(String routerId, StockStateStore stockState, MeterRegistry meterRegistry) {
+        this.routerId = routerId;
+        this.stockState = stockState;
+        this.encoded = Counter.builder("router.state.frames.encoded")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return full state report frame, null if it can't be made
+     */
+    public String stateReport() {
+        return current().report;
+    }
+
+    /**
+     * @return welcome frame assigning the ID to a new broker, with the full
+     * state, null if it can't be made
+     */
+    public String welcome(String brokerId) {
+        Snapshot current = current();
+
+        if (Objects.isNull(current.welcomeHead))
+            return null;
+        int checksum = current.welcomeChecksum;
+        for (byte b : brokerId.getBytes(StandardCharsets.US_ASCII))
+            checksum += b;
+
+        return current.welcomeHead +
+                (current.welcomeBodyLength + brokerId.length()) +
+                current.welcomeBodyStart +
+                brokerId +
+                current.welcomeBodyEnd +
+                String.format("%03d", checksum % 256) +
+                '\u0001';
+    }
+
+    private Snapshot current() {
+        long version = stockState.version();
+        Snapshot current = snapshot;
+
+        if (Objects.nonNull(current) && current.version == version)
+            return current;
+        synchronized (this) {
+            current = snapshot;
+            if (Objects.isNull(current) || current.version != version) {
+                current = encode(version);
+                snapshot = current;
+            }
+            return current;
+        }
+    }
+
+    // version is taken before the state, so a change made meanwhile is never missed
+    private Snapshot encode(long version) {
+        String json = stockState.toJson();
+        String report = null;
+        String welcome = null;
+
+        try {
+            report = new FixStockStateReport(routerId, json).asFix();
+            welcome = new FixIdAssignationStockState(routerId, ID_PLACEHOLDER, json).asFix();
+        } catch (FixMessageMisconfiguredException e) {
+            log.error("Can't make fix state frames: {}", e.getMessage());
+        }
+        encoded.increment();
+        return new Snapshot(version, report, welcome);
+    }
+
+    private static class Snapshot {
+        private final long version;
+        private final String report;
+        // welcome frame around the assigned ID: "8=FIX.5.0|9=" head, body
+        // length without the ID, body up to the ID, body after it and
+        // "10=" with checksum of the whole frame without the ID
+        private String welcomeHead;
+        private int welcomeBodyLength;
+        private String welcomeBodyStart;
+        private String welcomeBodyEnd;
+        private int welcomeChecksum;
+
+        private Snapshot(long version, String report, String welcome) {
+            this.version = version;
+            this.report = report;
+            if (Objects.nonNull(welcome))
+                split(welcome);
+        }
+
+        private void split(String welcome) {
+            int lengthStart = welcome.indexOf("\u00019=") + 3;
+            int bodyStart = welcome.indexOf('\u0001', lengthStart) + 1;
+            int checksumStart = welcome.lastIndexOf("\u000110=") + 1;
+            int id = welcome.indexOf(ID_PLACEHOLDER, bodyStart);
+
+            welcomeHead = welcome.substring(0, lengthStart);
+            welcomeBodyLength = checksumStart - bodyStart - ID_PLACEHOLDER.length();
+            welcomeBodyStart = welcome.substring(bodyStart - 1, id);
+            welcomeBodyEnd = welcome.substring(id + ID_PLACEHOLDER.length(), checksumStart + 3);
+            for (byte b : welcome.substring(bodyStart, checksumStart)
+                    .replace(ID_PLACEHOLDER, "")
+                    .getBytes(StandardCharsets.US_ASCII))
+                welcomeChecksum += b;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.rokupin.router.service.state;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Last reported stock state of every exchange (or exchange group).
+ * <p>
+ * Exchange IDs and instrument symbols are interned to ints, state of each
+ * exchange is a row of int amounts indexed by instrument. Rows are
+ * replaced as a whole on each report, so readers never lock and never see
+ * a half-applied report. A removed exchange gives its row back for reuse:
+ * each row carries the exchange ID it belongs to, so a reader racing with
+ * the reuse never takes one exchange's state for another's.
+ * <p>
+ * State restored from a checkpoint is stale until the exchange reports
+ * again: brokers get it, but it's not trusted to reject orders. Only
+ * exchanges whose IDs outlive their sessions - groups - are worth saving:
+ * IDs of single exchanges are assigned anew on each run.
+ */
+public class StockStateStore {
+    public static final int NOT_LISTED = -1;
+
+    private final SymbolTable exchanges;
+    private final SymbolTable instruments;
+    private final Set<String> stale;
+    private volatile Row[] rows;
+    private volatile long version;
+
+    public StockStateStore() {
+        this.exchanges = new SymbolTable();
+        this.instruments = new SymbolTable();
+        this.stale = ConcurrentHashMap.newKeySet();
+        this.rows = new Row[16];
+    }
+
+    /**
+     * Replaces state of the exchange
+     */
+    public synchronized void update(String exchangeId, Map<String, Integer> state) {
+        int exchange = exchanges.intern(exchangeId);
+        int[] symbols = new int[state.size()];
+        int[] amounts = new int[state.size()];
+        int i = 0;
+
+        for (Map.Entry<String, Integer> entry : state.entrySet()) {
+            symbols[i] = instruments.intern(entry.getKey());
+            amounts[i++] = Objects.isNull(entry.getValue()) ? NOT_LISTED : entry.getValue();
+        }
+
+        int[] row = new int[instruments.size()];
+        Arrays.fill(row, NOT_LISTED);
+        for (i = 0; i < symbols.length; i++)
+            row[symbols[i]] = amounts[i];
+
+        Row[] current = rows;
+        if (exchange >= current.length)
+            current = Arrays.copyOf(current, Math.max(current.length * 2, exchange + 1));
+        current[exchange] = new Row(exchangeId, exchanges.jsonNameOf(exchange), row);
+        rows = current; // publishes the row
+        stale.remove(exchangeId);
+        version++;
+    }
+
+    /**
+     * @return false if there was no state of the exchange
+     */
+    public synchronized boolean remove(String exchangeId) {
+        int exchange = exchanges.idOf(exchangeId);
+        Row[] current = rows;
+
+        if (exchange < 0 || exchange >= current.length || Objects.isNull(current[exchange]))
+            return false;
+        current[exchange] = null;
+        rows = current;
+        exchanges.release(exchangeId);
+        stale.remove(exchangeId);
+        version++;
+        return true;
+    }
+
+    /**
+     * Removes state of the exchanges that are still stale
+     *
+     * @return IDs of the removed exchanges
+     */
+    public synchronized List<String> removeStale() {
+        List<String> removed = new ArrayList<>(stale);
+
+        removed.forEach(this::remove);
+        return removed;
+    }
+
+    public boolean contains(String exchangeId) {
+        return Objects.nonNull(row(exchangeId));
+    }
+
+    /**
+     * @return true if exchange's state was restored from a checkpoint, and
+     * the exchange didn't report since
+     */
+    public boolean isStale(String exchangeId) {
+        return stale.contains(exchangeId);
+    }
+
+    public int staleCount() {
+        return stale.size();
+    }
+
+    /**
+     * @return number of changes made to the state so far
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * @return amount of the instrument exchange has, or {@link #NOT_LISTED}
+     */
+    public int amount(String exchangeId, String instrument) {
+        Row row = row(exchangeId);
+        int symbol = instruments.idOf(instrument);
+
+        if (Objects.isNull(row) || symbol < 0 || symbol >= row.amounts().length)
+            return NOT_LISTED;
+        return row.amounts()[symbol];
+    }
+
+    /**
+     * @return state as JSON object of exchange IDs to objects of instrument amounts
+     */
+    public String toJson() {
+        return toJson(Set.of(), Set.of());
+    }
+
+    /**
+     * @param exchangeIds exchanges to include, empty - all of them
+     * @param symbols     instruments to include, empty - all of them
+     * @return the part of the state as JSON object of exchange IDs to
+     * objects of instrument amounts
+     */
+    public String toJson(Set<String> exchangeIds, Set<String> symbols) {
+        return toJson(exchangeId ->
+                exchangeIds.isEmpty() || exchangeIds.contains(exchangeId) ? symbols : null);
+    }
+
+    /**
+     * @param symbolsOf instruments to include for the exchange, empty - all
+     *                  of them, null - none, exchange is left out
+     * @return the part of the state as JSON object of exchange IDs to
+     * objects of instrument amounts
+     */
+    public String toJson(Function<String, Set<String>> symbolsOf) {
+        Row[] current = rows;
+        StringBuilder json = new StringBuilder(256).append('{');
+        boolean firstExchange = true;
+
+        for (Row row : current) {
+            if (Objects.isNull(row))
+                continue;
+            Set<String> symbols = symbolsOf.apply(row.exchangeId());
+            if (Objects.isNull(symbols))
+                continue;
+            BitSet symbolMask = mask(instruments, symbols);
+            if (!firstExchange)
+                json.append(',');
+            firstExchange = false;
+            json.append(row.jsonName()).append(":{");
+
+            int[] amounts = row.amounts();
+            boolean firstInstrument = true;
+            for (int symbol = 0; symbol < amounts.length; symbol++) {
+                if (amounts[symbol] == NOT_LISTED || !selected(symbolMask, symbol))
+                    continue;
+                if (!firstInstrument)
+                    json.append(',');
+                firstInstrument = false;
+                json.append(instruments.jsonNameOf(symbol)).append(':').append(amounts[symbol]);
+            }
+            json.append('}');
+        }
+        return json.append('}').toString();
+    }
+
+    /**
+     * Writes the state as: instrument count, instrument symbols, exchange
+     * count, then for each exchange its ID, count of listed instruments and
+     * (instrument index, amount) pairs.
+     *
+     * @param durable exchanges to write
+     */
+    public synchronized void writeTo(DataOutput out, Predicate<String> durable) throws IOException {
+        Row[] current = rows;
+        int symbolCount = instruments.size();
+        int exchangeCount = 0;
+
+        out.writeInt(symbolCount);
+        for (int symbol = 0; symbol < symbolCount; symbol++)
+            out.writeUTF(instruments.nameOf(symbol));
+
+        for (Row row : current)
+            if (Objects.nonNull(row) && durable.test(row.exchangeId()))
+                exchangeCount++;
+        out.writeInt(exchangeCount);
+        for (Row row : current) {
+            if (Objects.isNull(row) || !durable.test(row.exchangeId()))
+                continue;
+            int[] amounts = row.amounts();
+            int listed = 0;
+            for (int amount : amounts)
+                if (amount != NOT_LISTED)
+                    listed++;
+            out.writeUTF(row.exchangeId());
+            out.writeInt(listed);
+            for (int symbol = 0; symbol < amounts.length; symbol++) {
+                if (amounts[symbol] == NOT_LISTED)
+                    continue;
+                out.writeInt(symbol);
+                out.writeInt(amounts[symbol]);
+            }
+        }
+    }
+
+    /**
+     * Reads state written by {@link #writeTo}, marking it stale. Exchanges
+     * that already reported their state keep it.
+     *
+     * @param durable exchanges to restore
+     * @return number of exchanges restored
+     */
+    public synchronized int restore(DataInput in, Predicate<String> durable) throws IOException {
+        String[] symbols = new String[in.readInt()];
+        for (int i = 0; i < symbols.length; i++)
+            symbols[i] = in.readUTF();
+
+        int exchangeCount = in.readInt();
+        int restored = 0;
+        for (int i = 0; i < exchangeCount; i++) {
+            String exchangeId = in.readUTF();
+            Map<String, Integer> state = new HashMap<>();
+            int listed = in.readInt();
+            for (int j = 0; j < listed; j++) {
+                String symbol = symbols[in.readInt()];
+                state.put(symbol, in.readInt());
+            }
+            if (contains(exchangeId) || !durable.test(exchangeId))
+                continue;
+            update(exchangeId, state);
+            stale.add(exchangeId);
+            restored++;
+        }
+        return restored;
+    }
+
+    // null stands for all names, names never seen yet select nothing
+    private static BitSet mask(SymbolTable table, Set<String> names) {
+        if (names.isEmpty())
+            return null;
+
+        BitSet mask = new BitSet(table.size());
+        for (String name : names) {
+            int id = table.idOf(name);
+            if (id >= 0)
+                mask.set(id);
+        }
+        return mask;
+    }
+
+    private static boolean selected(BitSet mask, int id) {
+        return Objects.isNull(mask) || mask.get(id);
+    }
+
+    private Row row(String exchangeId) {
+        int exchange = exchanges.idOf(exchangeId);
+        Row[] current = rows;
+
+        if (exchange < 0 || exchange >= current.length)
+            return null;
+        Row row = current[exchange];
+        return Objects.nonNull(row) && row.exchangeId().equals(exchangeId) ? row : null;
+    }
+
+    private record Row(String exchangeId, String jsonName, int[] amounts) {
+    }
+}
@@ -0,0 +1,107 @@
+package com.rokupin.router.service.state;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns names (exchange IDs, instrument symbols) to dense ints. Each name
+ * is also kept quoted for JSON output. A released name frees its ID for
+ * the next interned name, so a table of names that come and go (like
+ * per-connection exchange IDs) stays as large as the names in use.
+ */
+public class SymbolTable {
+    private final Map<String, Integer> ids;
+    private volatile String[] names;
+    private volatile String[] jsonNames;
+    private volatile int size;
+    private int[] free;
+    private int freeCount;
+
+    public SymbolTable() {
+        this.ids = new ConcurrentHashMap<>();
+        this.names = new String[16];
+        this.jsonNames = new String[16];
+        this.free = new int[16];
+    }
+
+    public int intern(String name) {
+        Integer id = ids.get(name);
+
+        if (Objects.nonNull(id))
+            return id;
+        synchronized (this) {
+            id = ids.get(name);
+            if (Objects.nonNull(id))
+                return id;
+            if (freeCount > 0) {
+                id = free[--freeCount];
+            } else {
+                if (size == names.length) {
+                    jsonNames = Arrays.copyOf(jsonNames, size * 2);
+                    names = Arrays.copyOf(names, size * 2);
+                }
+                id = size++;
+            }
+            jsonNames[id] = '"' + new String(JsonStringEncoder.getInstance().quoteAsString(name)) + '"';
+            names[id] = name;
+            ids.put(name, id); // publishes the name along with its ID
+            return id;
+        }
+    }
+
+    /**
+     * Forgets the name, its ID will be given to another one. Callers
+     * holding the ID must not rely on {@link #nameOf} for it anymore.
+     *
+     * @return ID the name had, -1 if it wasn't interned
+     */
+    public synchronized int release(String name) {
+        Integer id = ids.remove(name);
+
+        if (Objects.isNull(id))
+            return -1;
+        names[id] = null;
+        jsonNames[id] = null;
+        if (freeCount == free.length)
+            free = Arrays.copyOf(free, freeCount * 2);
+        free[freeCount++] = id;
+        return id;
+    }
+
+    /**
+     * @return ID of the name, -1 if it wasn't interned
+     */
+    public int idOf(String name) {
+        Integer id = ids.get(name);
+        return Objects.isNull(id) ? -1 : id;
+    }
+
+    /**
+     * @return the name, null if its ID was released
+     */
+    public String nameOf(int id) {
+        return names[id];
+    }
+
+    public String jsonNameOf(int id) {
+        return jsonNames[id];
+    }
+
+    /**
+     * @return upper bound of IDs given out, some of them may be released
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of names interned now
+     */
+    public int count() {
+        return ids.size();
+    }
+}
@@ -0,0 +1,114 @@
+package com.rokupin.router.service.subscription;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * Market data subscriptions of the brokers. A broker may hold several
+ * subscriptions, it gets the union of them. Brokers without subscriptions
+ * get the whole state, as they always did.
+ * <p>
+ * Brokers with the same effective filter share a fan-out list, so each
+ * state change is serialized once per distinct filter, and only for the
+ * filters covering the changed exchange. Subscriptions change rarely, so
+ * fan-out lists are rebuilt on each change and published as a whole.
+ */
+public class MarketDataSubscriptions {
+    private final Map<String, Map<String, StateFilter>> requests;
+    private volatile Map<String, StateFilter> effective;
+    private volatile Map<StateFilter, List<String>> fanOut;
+    private final Counter withheld;
+
+    public MarketDataSubscriptions(MeterRegistry meterRegistry) {
+        this.requests = new HashMap<>();
+        this.effective = Map.of();
+        this.fanOut = Map.of();
+        this.withheld = Counter.builder("router.market-data.withheld")
+                .register(meterRegistry);
+        Gauge.builder("router.market-data.subscribers", this, s -> s.effective.size())
+                .register(meterRegistry);
+        Gauge.builder("router.market-data.fan-outs", this, s -> s.fanOut.size())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Adds the subscription, or replaces one with the same request ID
+     *
+     * @return effective filter of the broker
+     */
+    public synchronized StateFilter subscribe(String brokerId, String reqId, StateFilter filter) {
+        requests.computeIfAbsent(brokerId, id -> new HashMap<>()).put(reqId, filter);
+        rebuild();
+        return effective.get(brokerId);
+    }
+
+    /**
+     * @return effective filter of the broker, null if it's left without subscriptions
+     */
+    public synchronized StateFilter unsubscribe(String brokerId, String reqId) {
+        Map<String, StateFilter> subscriptions = requests.get(brokerId);
+
+        if (Objects.nonNull(subscriptions) && Objects.nonNull(subscriptions.remove(reqId))) {
+            if (subscriptions.isEmpty())
+                requests.remove(brokerId);
+            rebuild();
+        }
+        return effective.get(brokerId);
+    }
+
+    public synchronized void remove(String brokerId) {
+        if (Objects.nonNull(requests.remove(brokerId)))
+            rebuild();
+    }
+
+    /**
+     * @return effective filter of the broker, null if it has no subscriptions
+     */
+    public StateFilter filterOf(String brokerId) {
+        return effective.get(brokerId);
+    }
+
+    public boolean isSubscribed(String brokerId) {
+        return effective.containsKey(brokerId);
+    }
+
+    public int subscriberCount() {
+        return effective.size();
+    }
+
+    /**
+     * Calls the action for each fan-out list whose filter covers the changed exchange
+     */
+    public void forEachCovering(String exchangeId, BiConsumer<StateFilter, List<String>> action) {
+        fanOut.forEach((filter, brokers) -> {
+            if (filter.covers(exchangeId))
+                action.accept(filter, brokers);
+            else
+                withheld.increment(brokers.size());
+        });
+    }
+
+    private void rebuild() {
+        Map<String, StateFilter> effective = new HashMap<>();
+        Map<StateFilter, List<String>> fanOut = new HashMap<>();
+
+        requests.forEach((brokerId, subscriptions) -> {
+            StateFilter filter = subscriptions.values().stream()
+                    .reduce(StateFilter::union)
+                    .orElse(StateFilter.ALL);
+            effective.put(brokerId, filter);
+            fanOut.computeIfAbsent(filter, f -> new ArrayList<>()).add(brokerId);
+        });
+        fanOut.replaceAll((filter, brokers) -> List.copyOf(brokers));
+        this.effective = Map.copyOf(effective);
+        this.fanOut = Map.copyOf(fanOut);
+    }
+}
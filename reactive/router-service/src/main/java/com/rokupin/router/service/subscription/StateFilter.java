@@ -0,0 +1,78 @@
+package com.rokupin.router.service.subscription;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Part of the stock state a broker subscribed to: the instruments of each
+ * subscription, on that subscription's exchanges only. Empty set of
+ * exchanges or instruments of a subscription stands for all of them.
+ */
+public record StateFilter(Set<Part> parts) {
+    public static final StateFilter ALL = new StateFilter(Set.of(), Set.of());
+
+    public record Part(Set<String> exchanges, Set<String> instruments) {
+        public Part {
+            exchanges = Set.copyOf(exchanges);
+            instruments = Set.copyOf(instruments);
+        }
+
+        boolean isAll() {
+            return exchanges.isEmpty() && instruments.isEmpty();
+        }
+
+        boolean covers(String exchangeId) {
+            return exchanges.isEmpty() || exchanges.contains(exchangeId);
+        }
+    }
+
+    public StateFilter {
+        parts = Set.copyOf(parts);
+    }
+
+    public StateFilter(Set<String> exchanges, Set<String> instruments) {
+        this(Set.of(new Part(exchanges, instruments)));
+    }
+
+    public boolean isAll() {
+        return parts.stream().anyMatch(Part::isAll);
+    }
+
+    /**
+     * @return whether change of the exchange's state is visible through the filter
+     */
+    public boolean covers(String exchangeId) {
+        return parts.stream().anyMatch(part -> part.covers(exchangeId));
+    }
+
+    /**
+     * @return instruments of the exchange visible through the filter, empty
+     * set - all of them, null if the exchange isn't visible at all
+     */
+    public Set<String> instrumentsOf(String exchangeId) {
+        Set<String> instruments = null;
+
+        for (Part part : parts) {
+            if (!part.covers(exchangeId))
+                continue;
+            if (part.instruments().isEmpty())
+                return Set.of();
+            if (instruments == null)
+                instruments = new HashSet<>();
+            instruments.addAll(part.instruments());
+        }
+        return instruments;
+    }
+
+    /**
+     * @return filter letting through everything either of the two does
+     */
+    public StateFilter union(StateFilter other) {
+        if (isAll() || other.isAll())
+            return ALL;
+
+        Set<Part> union = new HashSet<>(parts);
+        union.addAll(other.parts);
+        return new StateFilter(union);
+    }
+}
@@ -0,0 +1,236 @@
+package com.rokupin.router.service.tracking;
+
+import com.rokupin.model.fix.FixRequest;
+import com.rokupin.model.fix.FixResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Orders written to exchanges, that weren't answered yet. Each of them is
+ * given a deadline on a hashed wheel timer, orders that outlive it are
+ * handed to the timeout handler.
+ * <p>
+ * Every order gets a tracking ID of its own, which exchange echoes in its
+ * response, so responses are matched exactly whatever order they come in,
+ * and whether client set its order ID or not. A response that matches no
+ * order answers one that was given up on already.
+ */
+@Slf4j
+public class InFlightOrders {
+    private final long timeoutMillis;
+    private final HashedWheelTimer timer;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ExchangeOrders> exchanges;
+    private final String trackingPrefix;
+    private final AtomicLong trackingIds;
+    private final Counter lateResponses;
+    private Consumer<FixRequest> onTimeout;
+
+    public InFlightOrders(Duration timeout, MeterRegistry meterRegistry) {
+        this.timeoutMillis = timeout.toMillis();
+        this.timer = new HashedWheelTimer(r -> {
+            Thread thread = new Thread(r, "in-flight-timer");
+            thread.setDaemon(true);
+            return thread;
+        }, 10, TimeUnit.MILLISECONDS);
+        this.meterRegistry = meterRegistry;
+        this.exchanges = new ConcurrentHashMap<>();
+        // responses to orders of a previous run never match
+        this.trackingPrefix = Long.toString(System.currentTimeMillis(), 36) + '-';
+        this.trackingIds = new AtomicLong();
+        this.lateResponses = Counter.builder("router.exchange.late-responses")
+                .register(meterRegistry);
+        this.onTimeout = request -> {};
+    }
+
+    public void setTimeoutHandler(Consumer<FixRequest> onTimeout) {
+        this.onTimeout = onTimeout;
+    }
+
+    /**
+     * Sets tracking ID of the order, to be done before it's written to exchange
+     */
+    public void assignTrackingId(FixRequest request) {
+        request.setTrackingId(trackingPrefix + trackingIds.incrementAndGet());
+    }
+
+    public void track(FixRequest request) {
+        ExchangeOrders orders = exchanges.computeIfAbsent(
+                request.getTarget(), ExchangeOrders::new);
+        String trackingId = request.getTrackingId();
+        InFlightOrder order = new InFlightOrder(request, System.nanoTime());
+
+        synchronized (orders) {
+            orders.pending.put(trackingId, order);
+            order.timeout = timer.newTimeout(
+                    t -> expire(orders, trackingId, order), timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return false if response answers no tracked order: the order was
+     * rejected already - answered after its deadline, or its exchange or
+     * broker went away meanwhile
+     */
+    public boolean complete(FixResponse response) {
+        ExchangeOrders orders = exchanges.get(response.getSender());
+        InFlightOrder order = null;
+
+        if (Objects.nonNull(orders) && Objects.nonNull(response.getTrackingId())) {
+            synchronized (orders) {
+                order = orders.remove(response.getTrackingId());
+            }
+        }
+        if (Objects.isNull(order)) {
+            lateResponses.increment();
+            return false;
+        }
+        order.timeout.cancel();
+        orders.latency.record(System.nanoTime() - order.sentNanos, TimeUnit.NANOSECONDS);
+        return true;
+    }
+
+    /**
+     * @return orders written to the exchange and not answered yet
+     */
+    public int outstanding(String exchangeId) {
+        ExchangeOrders orders = exchanges.get(exchangeId);
+
+        if (Objects.isNull(orders))
+            return 0;
+        synchronized (orders) {
+            return orders.pending.size();
+        }
+    }
+
+    /**
+     * Stops tracking orders of the request that could not be written
+     */
+    public void forget(FixRequest request) {
+        ExchangeOrders orders = exchanges.get(request.getTarget());
+
+        if (Objects.nonNull(orders)) {
+            InFlightOrder order;
+            synchronized (orders) {
+                order = orders.remove(request.getTrackingId());
+            }
+            if (Objects.nonNull(order))
+                order.timeout.cancel();
+        }
+    }
+
+    /**
+     * @return orders, that disconnected exchange left unanswered
+     */
+    public List<FixRequest> closeExchange(String exchangeId) {
+        ExchangeOrders orders = exchanges.remove(exchangeId);
+        List<FixRequest> outstanding = new ArrayList<>();
+
+        if (Objects.nonNull(orders)) {
+            synchronized (orders) {
+                orders.pending.values().forEach(order -> {
+                    order.timeout.cancel();
+                    outstanding.add(order.request);
+                });
+                orders.pending.clear();
+            }
+            orders.unregister();
+        }
+        return outstanding;
+    }
+
+    /**
+     * Drops orders of disconnected broker, nobody is waiting for them
+     */
+    public void closeBroker(String brokerId) {
+        exchanges.values().forEach(orders -> {
+            synchronized (orders) {
+                Iterator<InFlightOrder> it = orders.pending.values().iterator();
+                while (it.hasNext()) {
+                    InFlightOrder order = it.next();
+                    if (order.request.getSender().equals(brokerId)) {
+                        order.timeout.cancel();
+                        it.remove();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops the timeout timer, outstanding orders are no longer timed out
+     */
+    public void close() {
+        timer.stop();
+    }
+
+    private void expire(ExchangeOrders orders, String trackingId, InFlightOrder order) {
+        boolean expired;
+
+        synchronized (orders) {
+            expired = orders.pending.remove(trackingId, order);
+        }
+        if (expired) {
+            log.warn("Exchange {} didn't answer order {} of {} in {} ms",
+                    orders.exchangeId, trackingId, order.request.getSender(), timeoutMillis);
+            orders.timeouts.increment();
+            onTimeout.accept(order.request);
+        }
+    }
+
+    private static class InFlightOrder {
+        private final FixRequest request;
+        private final long sentNanos;
+        private Timeout timeout;
+
+        private InFlightOrder(FixRequest request, long sentNanos) {
+            this.request = request;
+            this.sentNanos = sentNanos;
+        }
+    }
+
+    private class ExchangeOrders {
+        private final String exchangeId;
+        private final Map<String, InFlightOrder> pending;
+        private final Timer latency;
+        private final Counter timeouts;
+        private final Gauge outstanding;
+
+        private ExchangeOrders(String exchangeId) {
+            this.exchangeId = exchangeId;
+            this.pending = new HashMap<>();
+            this.latency = Timer.builder("router.exchange.response.latency")
+                    .tag("exchange", exchangeId)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            this.timeouts = Counter.builder("router.exchange.timeouts")
+                    .tag("exchange", exchangeId)
+                    .register(meterRegistry);
+            this.outstanding = Gauge.builder("router.exchange.in-flight", this, o -> o.pending.size())
+                    .tag("exchange", exchangeId)
+                    .register(meterRegistry);
+        }
+
+        private InFlightOrder remove(String trackingId) {
+            return Objects.isNull(trackingId) ? null : pending.remove(trackingId);
+        }
+
+        private void unregister() {
+            meterRegistry.remove(latency);
+            meterRegistry.remove(timeouts);
+            meterRegistry.remove(outstanding);
+        }
+    }
+}
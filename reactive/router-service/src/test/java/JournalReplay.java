@@ -0,0 +1,213 @@
+import com.rokupin.fix.FixMessageProcessor;
+import com.rokupin.model.fix.*;
+import com.rokupin.router.journal.JournalReader;
+import com.rokupin.router.journal.JournalRecord;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Feeds broker traffic, recorded in the journal, to the router's broker port.
+ * <p>
+ * Every recorded broker session is replayed over its own connection. Router
+ * assigns new IDs to them, so recorded sender IDs are replaced with the new
+ * ones. Session-level messages are not replayed, test requests of the router
+ * are answered. Frames are sent with recorded pauses between them, scaled
+ * by the speed factor, or back to back if speed is "max". Journal is read
+ * segment by segment while it's replayed. Not a test - run it manually:
+ * <pre>
+ * java -cp ... JournalReplay &lt;journal dir&gt; &lt;router host&gt; &lt;broker port&gt; [speed|max]
+ * </pre>
+ */
+public class JournalReplay {
+    private final String host;
+    private final int port;
+    private final double speed;
+    private final Map<String, ReplaySession> sessions;
+    private final AtomicLong responses;
+    private boolean started;
+    private long sent;
+    private long firstRecorded;
+    private long start;
+
+    public JournalReplay(String host, int port, double speed) {
+        this.host = host;
+        this.port = port;
+        this.speed = speed;
+        this.sessions = new LinkedHashMap<>();
+        this.responses = new AtomicLong();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: JournalReplay <journal dir> <router host> " +
+                    "<broker port> [speed|max]");
+            System.exit(1);
+        }
+        double speed = args.length > 3 && !args[3].equals("max") ?
+                Double.parseDouble(args[3]) : Double.POSITIVE_INFINITY;
+        JournalReplay replay = new JournalReplay(args[1], Integer.parseInt(args[2]), speed);
+
+        replay.run(new JournalReader(Path.of(args[0])));
+    }
+
+    public void run(JournalReader reader) throws IOException, InterruptedException {
+        reader.forEach(record -> {
+            if (record.inbound() && record.sessionId().startsWith("B"))
+                replay(record);
+        });
+        if (!started) {
+            System.out.println("No broker frames in the journal");
+            return;
+        }
+
+        long elapsed = System.nanoTime() - start;
+        TimeUnit.SECONDS.sleep(1); // let the last responses arrive
+        for (ReplaySession session : sessions.values())
+            session.close();
+        System.out.printf("Replayed %d orders over %d sessions in %d ms (%.0f msg/s), " +
+                        "%d responses received%n",
+                sent, sessions.size(), elapsed / 1_000_000,
+                sent / (elapsed / 1e9), responses.get());
+    }
+
+    private void replay(JournalRecord record) throws IOException, InterruptedException {
+        if (!started) {
+            started = true;
+            firstRecorded = record.timestampMicros();
+            start = System.nanoTime();
+        }
+        if (!Double.isInfinite(speed))
+            pace(start, (long) ((record.timestampMicros() - firstRecorded) * 1000 / speed));
+        sent += session(record.sessionId()).send(record.frameAsString());
+    }
+
+    private void pace(long start, long offsetNanos) throws InterruptedException {
+        long wait = start + offsetNanos - System.nanoTime();
+        if (wait > 0)
+            TimeUnit.NANOSECONDS.sleep(wait);
+    }
+
+    private ReplaySession session(String recordedId) throws IOException, InterruptedException {
+        ReplaySession session = sessions.get(recordedId);
+        if (session == null) {
+            session = new ReplaySession(new Socket(host, port));
+            session.awaitId();
+            sessions.put(recordedId, session);
+        }
+        return session;
+    }
+
+    private class ReplaySession {
+        private final Socket socket;
+        private final OutputStream out;
+        private final FixMessageProcessor fromRecording;
+        private final FixMessageProcessor fromRouter;
+        private final CountDownLatch welcomed;
+        private final List<String> outgoing;
+        private volatile String assignedId;
+
+        ReplaySession(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = socket.getOutputStream();
+            this.fromRecording = new FixMessageProcessor();
+            this.fromRouter = new FixMessageProcessor();
+            this.welcomed = new CountDownLatch(1);
+            this.outgoing = new ArrayList<>();
+
+            fromRecording.getFlux().subscribe(this::rewrite);
+            fromRouter.getFlux().subscribe(this::onRouterMessage);
+
+            Thread reader = new Thread(this::readLoop, "replay-reader");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        void awaitId() throws InterruptedException, IOException {
+            if (!welcomed.await(10, TimeUnit.SECONDS))
+                throw new IOException("Router didn't assign an ID");
+        }
+
+        /**
+         * @return number of messages sent
+         */
+        int send(String frame) throws IOException {
+            fromRecording.processInput(frame);
+            if (outgoing.isEmpty())
+                return 0;
+
+            int count = outgoing.size();
+            write(String.join("", outgoing));
+            outgoing.clear();
+            return count;
+        }
+
+        void close() throws IOException {
+            socket.close();
+        }
+
+        private void rewrite(String msg) {
+            try {
+                if (FixMessage.isOfType(msg, FixHeartbeat.MSG_HEARTBEAT))
+                    return;
+                if (FixMessage.isOfType(msg, "D")) {
+                    FixRequest request = FixMessage.fromFix(msg, new FixRequest());
+                    request.setSender(assignedId);
+                    request.setTimestamps(new HopTimestamps());
+                    outgoing.add(request.asFix());
+                } else if (FixMessage.isOfType(msg, "U4")) {
+                    FixStateUpdateRequest request =
+                            FixMessage.fromFix(msg, new FixStateUpdateRequest());
+                    request.setSender(assignedId);
+                    outgoing.add(request.asFix());
+                }
+            } catch (FixMessageMisconfiguredException e) {
+                System.err.println("Skipping recorded message: " + e.getMessage());
+            }
+        }
+
+        private void onRouterMessage(String msg) {
+            try {
+                if (FixMessage.isOfType(msg, "U3")) {
+                    assignedId = FixMessage.fromFix(msg,
+                            new FixIdAssignationStockState()).getTarget();
+                    welcomed.countDown();
+                } else if (FixMessage.isOfType(msg, FixTestRequest.MSG_TEST_REQUEST)) {
+                    FixTestRequest request = FixMessage.fromFix(msg, new FixTestRequest());
+                    write(FixHeartbeat.answer(request, assignedId).asFix());
+                } else if (FixMessage.isOfType(msg, FixResponse.MSG_EXECUTION_REPORT)) {
+                    responses.incrementAndGet();
+                }
+            } catch (FixMessageMisconfiguredException | IOException e) {
+                System.err.println("Router message handling failed: " + e.getMessage());
+            }
+        }
+
+        private synchronized void write(String fix) throws IOException {
+            out.write(fix.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+
+        private void readLoop() {
+            byte[] buffer = new byte[8192];
+            try (InputStream in = socket.getInputStream()) {
+                int read;
+                while ((read = in.read(buffer)) > 0)
+                    fromRouter.processInput(new String(buffer, 0, read, StandardCharsets.UTF_8));
+            } catch (IOException ignored) {
+                // socket closed
+            }
+        }
+    }
+}
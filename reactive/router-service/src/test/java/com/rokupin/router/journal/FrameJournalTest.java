@@ -0,0 +1,66 @@
+package com.rokupin.router.journal;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRecord_readBackInOrder() throws Exception {
+        // --- ARRANGEMENT
+        FrameJournal journal = FrameJournal.open(directory, 4096, 0, 16, new SimpleMeterRegistry());
+
+        // --- ACTION
+        journal.record(true, "B00001", bytes("first"));
+        journal.record(false, null, bytes("second"));
+        journal.close();
+
+        // --- ASSERTION
+        List<JournalRecord> records = read();
+        assertEquals(2, records.size());
+        assertTrue(records.get(0).inbound());
+        assertEquals("B00001", records.get(0).sessionId());
+        assertEquals("first", records.get(0).frameAsString());
+        assertFalse(records.get(1).inbound());
+        assertEquals("-", records.get(1).sessionId());
+        assertEquals("second", records.get(1).frameAsString());
+    }
+
+    @Test
+    void testRecord_oldestSegmentsAreDeleted() throws Exception {
+        // --- ARRANGEMENT
+        // a single record fits in a segment
+        FrameJournal journal = FrameJournal.open(directory, 40, 2, 16, new SimpleMeterRegistry());
+
+        // --- ACTION
+        for (int i = 0; i < 5; i++)
+            journal.record(true, "B00001", bytes("frame-" + i));
+        journal.close();
+
+        // --- ASSERTION
+        assertEquals(2, FrameJournal.segments(directory).size());
+        assertEquals(List.of("frame-3", "frame-4"),
+                read().stream().map(JournalRecord::frameAsString).toList());
+    }
+
+    private List<JournalRecord> read() throws Exception {
+        List<JournalRecord> records = new ArrayList<>();
+        new JournalReader(directory).forEach(records::add);
+        return records;
+    }
+
+    private static byte[] bytes(String frame) {
+        return frame.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,102 @@
+package com.rokupin.router.service.admission;
+
+import com.rokupin.model.fix.FixRequest;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+import reactor.netty.Connection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExchangeOrderQueueTest {
+
+    @Test
+    void testDrain_brokersTakeWeightedTurns() throws Exception {
+        // --- ARRANGEMENT
+        EmbeddedChannel channel = new EmbeddedChannel();
+        List<String> written = new ArrayList<>();
+        ExchangeOrderQueue queue = new ExchangeOrderQueue("E00000",
+                Connection.from(channel),
+                100,
+                broker -> Map.of("alpha", 2).getOrDefault(broker, 1),
+                listener(written, new ArrayList<>()));
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+
+        for (int i = 0; i < 4; i++) {
+            queue.offer("alpha", request("B00001", "a" + i), "a" + i);
+            queue.offer("beta", request("B00002", "b" + i), "b" + i);
+        }
+
+        // --- ACTION
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, true);
+        channel.runPendingTasks();
+
+        // --- ASSERTION
+        assertEquals(List.of("a0", "a1", "b0", "a2", "a3", "b1", "b2", "b3"), written);
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void testOffer_fullLaneRejectsOnlyItsBroker() throws Exception {
+        // --- ARRANGEMENT
+        EmbeddedChannel channel = new EmbeddedChannel();
+        ExchangeOrderQueue queue = new ExchangeOrderQueue("E00000",
+                Connection.from(channel),
+                2,
+                broker -> 1,
+                listener(new ArrayList<>(), new ArrayList<>()));
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+
+        // --- ACTION & ASSERTION
+        assertTrue(queue.offer("alpha", request("B00001", "a0"), "a0"));
+        assertTrue(queue.offer("alpha", request("B00001", "a1"), "a1"));
+        assertFalse(queue.offer("alpha", request("B00001", "a2"), "a2"));
+        assertTrue(queue.offer("beta", request("B00002", "b0"), "b0"));
+        assertEquals(3, queue.size());
+    }
+
+    @Test
+    void testClose_queuedOrdersAreUndelivered() throws Exception {
+        // --- ARRANGEMENT
+        EmbeddedChannel channel = new EmbeddedChannel();
+        List<String> undelivered = new ArrayList<>();
+        ExchangeOrderQueue queue = new ExchangeOrderQueue("E00000",
+                Connection.from(channel),
+                10,
+                broker -> 1,
+                listener(new ArrayList<>(), undelivered));
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+        queue.offer("alpha", request("B00001", "a0"), "a0");
+        queue.offer("beta", request("B00002", "b0"), "b0");
+
+        // --- ACTION
+        queue.close();
+
+        // --- ASSERTION
+        assertEquals(List.of("a0", "b0"), undelivered.stream().sorted().toList());
+        assertEquals(0, queue.size());
+    }
+
+    private static FixRequest request(String sender, String clOrdId) throws Exception {
+        FixRequest request = new FixRequest(sender, "client", "E00000", "TEST1", 1, 1);
+        request.setClOrdId(clOrdId);
+        return request;
+    }
+
+    private static ExchangeOrderListener listener(List<String> written, List<String> undelivered) {
+        return new ExchangeOrderListener() {
+            @Override
+            public void onWritten(FixRequest request) {
+                written.add(request.getClOrdId());
+            }
+
+            @Override
+            public void onUndelivered(FixRequest request) {
+                undelivered.add(request.getClOrdId());
+            }
+        };
+    }
+}
@@ -0,0 +1,74 @@
+package com.rokupin.router.service.fix;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionTableTest {
+
+    @Test
+    void testPut_collidingIndicesShareTable() {
+        // --- ARRANGEMENT
+        SessionTable table = new SessionTable();
+        FixSession longLived = new FixSession(1, "B00001", null);
+        table.put(longLived);
+
+        // --- ACTION
+        // every one of them maps to the slot of the long-lived session
+        for (int i = 1; i <= 10; i++) {
+            table.put(new FixSession(1 + i * 64, "B" + (1 + i * 64), null));
+            table.remove(1 + i * 64);
+        }
+
+        // --- ASSERTION
+        assertEquals(64, table.capacity());
+        assertEquals(1, table.size());
+        assertSame(longLived, table.get(1));
+        assertNull(table.get(65));
+    }
+
+    @Test
+    void testPut_growsWithLiveSessions() {
+        // --- ARRANGEMENT
+        SessionTable table = new SessionTable();
+
+        // --- ACTION
+        for (int i = 0; i < 1000; i++)
+            table.put(new FixSession(i, "B" + i, null));
+
+        // --- ASSERTION
+        assertEquals(1000, table.size());
+        assertTrue(table.capacity() >= 2000);
+        for (int i = 0; i < 1000; i++)
+            assertEquals(i, table.get(i).getIndex());
+        assertNull(table.get(1000));
+        assertNull(table.get(-1));
+    }
+
+    @Test
+    void testRemove_shrinksAndKeepsRemainingSessions() {
+        // --- ARRANGEMENT
+        SessionTable table = new SessionTable();
+        for (int i = 0; i < 1000; i++)
+            table.put(new FixSession(i, "B" + i, null));
+        int grown = table.capacity();
+
+        // --- ACTION
+        for (int i = 0; i < 1000; i++)
+            if (i % 100 != 0)
+                assertNotNull(table.remove(i));
+
+        // --- ASSERTION
+        assertEquals(10, table.size());
+        assertTrue(table.capacity() < grown);
+        assertNull(table.remove(1));
+        List<Integer> left = new ArrayList<>();
+        table.forEach(session -> left.add(session.getIndex()));
+        assertEquals(10, left.size());
+        for (int i = 0; i < 1000; i += 100)
+            assertTrue(left.contains(i));
+    }
+}
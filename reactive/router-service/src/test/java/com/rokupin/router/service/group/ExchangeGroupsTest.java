@@ -0,0 +1,77 @@
+package com.rokupin.router.service.group;
+
+import com.rokupin.router.service.tracking.InFlightOrders;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExchangeGroupsTest {
+    private final InFlightOrders inFlightOrders =
+            new InFlightOrders(Duration.ofSeconds(5), new SimpleMeterRegistry());
+
+    @AfterEach
+    void closeTimer() {
+        inFlightOrders.close();
+    }
+
+    @Test
+    void testLeave_dropsAmountsOnlyMemberReported() {
+        // --- ARRANGEMENT
+        ExchangeGroups groups = groups(GroupRouting.LEAST_OUTSTANDING, new SimpleMeterRegistry());
+        groups.join("E00001", "NYSE");
+        groups.join("E00002", "NYSE");
+        groups.merge("NYSE", "E00001", Map.of("TEST1", 10, "TEST2", 20));
+        groups.merge("NYSE", "E00002", Map.of("TEST2", 25));
+
+        // --- ACTION
+        assertEquals("NYSE", groups.leave("E00002"));
+
+        // --- ASSERTION
+        assertEquals(Map.of("TEST1", 10, "TEST2", 20), groups.stateOf("NYSE"));
+        assertNull(groups.groupOf("E00002"));
+    }
+
+    @Test
+    void testLeave_ownedAmountsTakenFromRemainingMember() {
+        // --- ARRANGEMENT
+        ExchangeGroups groups = groups(GroupRouting.AFFINITY, new SimpleMeterRegistry());
+        groups.join("E00001", "NYSE");
+        groups.join("E00002", "NYSE");
+        groups.merge("NYSE", "E00001", Map.of("TEST1", 1, "TEST2", 1, "TEST3", 1));
+        groups.merge("NYSE", "E00002", Map.of("TEST1", 2, "TEST2", 2, "TEST3", 2, "TEST4", 2));
+
+        // --- ACTION
+        groups.leave("E00002");
+
+        // --- ASSERTION
+        assertEquals(Map.of("TEST1", 1, "TEST2", 1, "TEST3", 1), groups.stateOf("NYSE"));
+    }
+
+    @Test
+    void testLeave_lastMemberRemovesGroup() {
+        // --- ARRANGEMENT
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ExchangeGroups groups = groups(GroupRouting.AFFINITY, meterRegistry);
+        groups.join("E00001", "NYSE");
+        groups.merge("NYSE", "E00001", Map.of("TEST1", 10));
+
+        // --- ACTION
+        assertEquals("NYSE", groups.leave("E00001"));
+
+        // --- ASSERTION
+        assertFalse(groups.isGroup("NYSE"));
+        assertNull(groups.stateOf("NYSE"));
+        assertNull(groups.merge("NYSE", "E00001", Map.of("TEST1", 5)));
+        assertNull(groups.leave("E00001"));
+        assertNull(meterRegistry.find("router.exchange.group.members").gauge());
+    }
+
+    private ExchangeGroups groups(GroupRouting routing, SimpleMeterRegistry meterRegistry) {
+        return new ExchangeGroups(routing, inFlightOrders, meterRegistry);
+    }
+}
@@ -0,0 +1,60 @@
+package com.rokupin.router.service.identity;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BrokerIdentitiesTest {
+
+    @Test
+    void testLogon_linksShareIdentityAndFirstGetsState() {
+        // --- ARRANGEMENT
+        BrokerIdentities identities = new BrokerIdentities(new SimpleMeterRegistry());
+
+        // --- ACTION
+        assertTrue(identities.logon("B00001", "alpha"));
+        assertTrue(identities.logon("B00002", "alpha"));
+
+        // --- ASSERTION
+        assertEquals("alpha", identities.identityOf("B00001"));
+        assertEquals("alpha", identities.identityOf("B00002"));
+        assertEquals("B00003", identities.identityOf("B00003"));
+        assertTrue(identities.isStateLink("B00001"));
+        assertFalse(identities.isStateLink("B00002"));
+        assertTrue(identities.isStateLink("B00003"));
+    }
+
+    @Test
+    void testLogon_rejectsSessionIdsAndSecondLogon() {
+        // --- ARRANGEMENT
+        BrokerIdentities identities = new BrokerIdentities(new SimpleMeterRegistry());
+
+        // --- ACTION & ASSERTION
+        assertFalse(identities.logon("B00001", "B00002"));
+        assertFalse(identities.logon("B00001", " "));
+        assertTrue(identities.logon("B00001", "alpha"));
+        assertFalse(identities.logon("B00001", "beta"));
+        assertEquals("alpha", identities.identityOf("B00001"));
+    }
+
+    @Test
+    void testLeave_nextLinkTakesOverState() {
+        // --- ARRANGEMENT
+        BrokerIdentities identities = new BrokerIdentities(new SimpleMeterRegistry());
+        identities.logon("B00001", "alpha");
+        identities.logon("B00002", "alpha");
+        identities.logon("B00003", "alpha");
+
+        // --- ACTION & ASSERTION
+        assertEquals(new BrokerIdentities.Departure("alpha", false, null),
+                identities.leave("B00003"));
+        assertEquals(new BrokerIdentities.Departure("alpha", false, "B00002"),
+                identities.leave("B00001"));
+        assertTrue(identities.isStateLink("B00002"));
+        assertEquals(new BrokerIdentities.Departure("alpha", true, null),
+                identities.leave("B00002"));
+        assertEquals(new BrokerIdentities.Departure("B00004", true, null),
+                identities.leave("B00004"));
+    }
+}
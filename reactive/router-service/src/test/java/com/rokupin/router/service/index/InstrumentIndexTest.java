@@ -0,0 +1,72 @@
+package com.rokupin.router.service.index;
+
+import com.rokupin.model.fix.FixRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InstrumentIndexTest {
+
+    @Test
+    void testUpdate_venuesFollowAmounts() {
+        // --- ARRANGEMENT
+        InstrumentIndex index = new InstrumentIndex();
+        index.update("E00001", Map.of("TEST1", 10, "TEST2", 5));
+        index.update("E00002", Map.of("TEST1", 20));
+
+        // --- ACTION & ASSERTION
+        assertEquals("E00002", index.bestVenue("TEST1", FixRequest.SIDE_BUY));
+        assertEquals("E00001", index.bestVenue("TEST1", FixRequest.SIDE_SELL));
+
+        index.update("E00001", Map.of("TEST1", 30));
+        assertEquals("E00001", index.bestVenue("TEST1", FixRequest.SIDE_BUY));
+        assertEquals("E00002", index.bestVenue("TEST1", FixRequest.SIDE_SELL));
+        // dropped from the new report
+        assertNull(index.bestVenue("TEST2", FixRequest.SIDE_BUY));
+    }
+
+    @Test
+    void testRemove_exchangeIsUnlisted() {
+        // --- ARRANGEMENT
+        InstrumentIndex index = new InstrumentIndex();
+        index.update("E00001", Map.of("TEST1", 10));
+        index.update("E00002", Map.of("TEST1", 20, "TEST2", 5));
+
+        // --- ACTION
+        index.remove("E00002");
+        index.remove("E00003");
+
+        // --- ASSERTION
+        assertEquals("E00001", index.bestVenue("TEST1", FixRequest.SIDE_BUY));
+        assertEquals("E00001", index.bestVenue("TEST1", FixRequest.SIDE_SELL));
+        assertNull(index.bestVenue("TEST2", FixRequest.SIDE_SELL));
+    }
+
+    @Test
+    void testUpdate_amountChangeKeepsInstrumentListed() throws Exception {
+        // --- ARRANGEMENT
+        InstrumentIndex index = new InstrumentIndex();
+        index.update("E00001", Map.of("TEST1", 0));
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger misses = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            while (!done.get())
+                if (index.bestVenue("TEST1", FixRequest.SIDE_BUY) == null)
+                    misses.incrementAndGet();
+        });
+        reader.start();
+
+        // --- ACTION
+        for (int amount = 1; amount <= 100_000; amount++)
+            index.update("E00001", Map.of("TEST1", amount));
+        done.set(true);
+        reader.join();
+
+        // --- ASSERTION
+        assertEquals(0, misses.get());
+    }
+}
@@ -0,0 +1,83 @@
+package com.rokupin.router.service.outbound;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+import reactor.netty.Connection;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BrokerOutboundTest {
+
+    @Test
+    void testSend_urgentGoesAheadOfLatestState() {
+        // --- ARRANGEMENT
+        EmbeddedChannel channel = new EmbeddedChannel();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        BrokerOutbound outbound = outbound(channel, meterRegistry, new ArrayList<>());
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+
+        outbound.send(OutboundPriority.STATE, "state-1");
+        outbound.send(OutboundPriority.URGENT, "report-1");
+        outbound.send(OutboundPriority.STATE, "state-2");
+        outbound.send(OutboundPriority.URGENT, "report-2");
+        channel.runPendingTasks();
+
+        // --- ACTION
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, true);
+        channel.runPendingTasks();
+
+        // --- ASSERTION
+        assertEquals(List.of("report-1", "report-2", "state-2"), written(channel));
+        assertEquals(0, outbound.size());
+        assertEquals(1, meterRegistry.get("router.broker.state.conflated").counter().count());
+    }
+
+    @Test
+    void testSend_backlogOverLimitMakesSlowConsumer() {
+        // --- ARRANGEMENT
+        EmbeddedChannel channel = new EmbeddedChannel();
+        List<String> slow = new ArrayList<>();
+        BrokerOutbound outbound = outbound(channel, new SimpleMeterRegistry(), slow);
+        channel.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+
+        // --- ACTION
+        for (int i = 0; i < 3; i++)
+            outbound.send(OutboundPriority.URGENT, "report-" + i);
+        channel.runPendingTasks();
+
+        // --- ASSERTION
+        assertEquals(List.of("B00001"), slow);
+        assertEquals(0, outbound.size());
+        assertTrue(written(channel).isEmpty());
+    }
+
+    private static BrokerOutbound outbound(EmbeddedChannel channel,
+                                           SimpleMeterRegistry meterRegistry,
+                                           List<String> slow) {
+        return new BrokerOutbound("B00001",
+                Connection.from(channel),
+                Duration.ofSeconds(10),
+                2,
+                meterRegistry.timer("urgent"),
+                meterRegistry.timer("state"),
+                meterRegistry.counter("router.broker.state.conflated"),
+                id -> fail("write failed"),
+                slow::add);
+    }
+
+    private static List<String> written(EmbeddedChannel channel) {
+        List<String> written = new ArrayList<>();
+        for (ByteBuf buf = channel.readOutbound(); buf != null; buf = channel.readOutbound()) {
+            written.add(buf.toString(StandardCharsets.UTF_8));
+            buf.release();
+        }
+        return written;
+    }
+}
@@ -0,0 +1,96 @@
+package com.rokupin.router.service.state;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StateCheckpointTest {
+    private static final Predicate<String> GROUPS = exchangeId -> !exchangeId.startsWith("E");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRestore_roundTripKeepsGroupsOnly() {
+        // --- ARRANGEMENT
+        Path file = directory.resolve("state.checkpoint");
+        StockStateStore saved = new StockStateStore();
+        saved.update("NYSE", Map.of("TEST1", 10));
+        saved.update("E00001", Map.of("TEST2", 5));
+        checkpoint(saved, file, Duration.ofMinutes(1)).write();
+
+        StockStateStore restored = new StockStateStore();
+
+        // --- ACTION
+        int count = checkpoint(restored, file, Duration.ofMinutes(1)).restore();
+
+        // --- ASSERTION
+        assertEquals(1, count);
+        assertEquals(10, restored.amount("NYSE", "TEST1"));
+        assertTrue(restored.isStale("NYSE"));
+        assertFalse(restored.contains("E00001"));
+    }
+
+    @Test
+    void testRestore_corruptedFileIsIgnored() throws Exception {
+        // --- ARRANGEMENT
+        Path file = directory.resolve("state.checkpoint");
+        StockStateStore saved = new StockStateStore();
+        saved.update("NYSE", Map.of("TEST1", 10));
+        checkpoint(saved, file, Duration.ofMinutes(1)).write();
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 0x7f;
+        Files.write(file, bytes);
+
+        StockStateStore restored = new StockStateStore();
+
+        // --- ACTION
+        int count = checkpoint(restored, file, Duration.ofMinutes(1)).restore();
+
+        // --- ASSERTION
+        assertEquals(0, count);
+        assertFalse(restored.contains("NYSE"));
+    }
+
+    @Test
+    void testDropStale_onlyUnrefreshedStateIsDropped() {
+        // --- ARRANGEMENT
+        Path file = directory.resolve("state.checkpoint");
+        StockStateStore saved = new StockStateStore();
+        saved.update("NYSE", Map.of("TEST1", 10));
+        saved.update("LSE", Map.of("TEST2", 5));
+        checkpoint(saved, file, Duration.ofMinutes(1)).write();
+
+        StockStateStore restored = new StockStateStore();
+        StateCheckpoint checkpoint = checkpoint(restored, file, Duration.ofMinutes(1));
+        List<String> dropped = new ArrayList<>();
+        checkpoint.setStaleDropHandler(dropped::add);
+        checkpoint.restore();
+        restored.update("LSE", Map.of("TEST2", 7));
+
+        // --- ACTION
+        checkpoint.dropStale();
+        checkpoint.close();
+
+        // --- ASSERTION
+        assertEquals(List.of("NYSE"), dropped);
+        assertFalse(restored.contains("NYSE"));
+        assertEquals(7, restored.amount("LSE", "TEST2"));
+        assertEquals(0, restored.staleCount());
+    }
+
+    private static StateCheckpoint checkpoint(StockStateStore store, Path file, Duration staleTimeout) {
+        return new StateCheckpoint(store, file, GROUPS, staleTimeout, new SimpleMeterRegistry());
+    }
+}
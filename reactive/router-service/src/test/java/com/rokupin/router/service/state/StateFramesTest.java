@@ -0,0 +1,48 @@
+package com.rokupin.router.service.state;
+
+import com.rokupin.model.fix.FixIdAssignationStockState;
+import com.rokupin.model.fix.FixStockStateReport;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StateFramesTest {
+
+    @Test
+    void testWelcome_sameAsEncodedFrame() throws Exception {
+        // --- ARRANGEMENT
+        StockStateStore store = new StockStateStore();
+        store.update("E00001", Map.of("TEST1", 10));
+        StateFrames frames = new StateFrames("R00000", store, new SimpleMeterRegistry());
+
+        // --- ACTION & ASSERTION
+        // length and checksum depend on the ID, IDs grow past 5 digits
+        for (String brokerId : new String[]{"B00001", "B99999", "B123456"})
+            assertEquals(new FixIdAssignationStockState("R00000", brokerId, store.toJson()).asFix(),
+                    frames.welcome(brokerId));
+        assertEquals(new FixStockStateReport("R00000", store.toJson()).asFix(),
+                frames.stateReport());
+    }
+
+    @Test
+    void testStateReport_encodedOncePerVersion() throws Exception {
+        // --- ARRANGEMENT
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        StockStateStore store = new StockStateStore();
+        store.update("E00001", Map.of("TEST1", 10));
+        StateFrames frames = new StateFrames("R00000", store, meterRegistry);
+
+        // --- ACTION
+        frames.stateReport();
+        frames.welcome("B00001");
+        store.update("E00001", Map.of("TEST1", 11));
+        String report = frames.welcome("B00002");
+
+        // --- ASSERTION
+        assertEquals(2, meterRegistry.get("router.state.frames.encoded").counter().count());
+        assertEquals(new FixIdAssignationStockState("R00000", "B00002", store.toJson()).asFix(), report);
+    }
+}
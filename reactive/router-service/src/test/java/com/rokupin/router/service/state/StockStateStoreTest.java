@@ -0,0 +1,103 @@
+package com.rokupin.router.service.state;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StockStateStoreTest {
+
+    @Test
+    void testToJson_filtersExchangesAndInstruments() {
+        // --- ARRANGEMENT
+        StockStateStore store = new StockStateStore();
+        store.update("E00001", state("TEST1", 10, "TEST2", 20));
+        store.update("E00002", state("TEST2", 5));
+
+        // --- ACTION & ASSERTION
+        assertEquals("{\"E00001\":{\"TEST1\":10,\"TEST2\":20},\"E00002\":{\"TEST2\":5}}",
+                store.toJson());
+        assertEquals("{\"E00002\":{\"TEST2\":5}}",
+                store.toJson(Set.of("E00002"), Set.of()));
+        assertEquals("{\"E00001\":{\"TEST2\":20},\"E00002\":{\"TEST2\":5}}",
+                store.toJson(Set.of(), Set.of("TEST2")));
+        assertEquals("{\"E00001\":{}}",
+                store.toJson(Set.of("E00001"), Set.of("UNKNOWN")));
+    }
+
+    @Test
+    void testUpdate_replacesWholeRow() {
+        // --- ARRANGEMENT
+        StockStateStore store = new StockStateStore();
+        store.update("E00001", state("TEST1", 10, "TEST2", 20));
+
+        // --- ACTION
+        store.update("E00001", state("TEST2", 15));
+
+        // --- ASSERTION
+        assertEquals(StockStateStore.NOT_LISTED, store.amount("E00001", "TEST1"));
+        assertEquals(15, store.amount("E00001", "TEST2"));
+        assertEquals(StockStateStore.NOT_LISTED, store.amount("E00002", "TEST2"));
+    }
+
+    @Test
+    void testRemove_rowIsReusedByNextExchange() {
+        // --- ARRANGEMENT
+        StockStateStore store = new StockStateStore();
+        store.update("E00001", state("TEST1", 10));
+
+        // --- ACTION
+        assertTrue(store.remove("E00001"));
+        store.update("E00002", state("TEST1", 7));
+
+        // --- ASSERTION
+        assertFalse(store.remove("E00001"));
+        assertFalse(store.contains("E00001"));
+        assertEquals(StockStateStore.NOT_LISTED, store.amount("E00001", "TEST1"));
+        assertEquals(7, store.amount("E00002", "TEST1"));
+        assertEquals("{\"E00002\":{\"TEST1\":7}}", store.toJson());
+    }
+
+    @Test
+    void testRestore_roundTripMarksStale() throws Exception {
+        // --- ARRANGEMENT
+        StockStateStore saved = new StockStateStore();
+        saved.update("E00001", state("TEST1", 10, "TEST2", 20));
+        saved.update("E00002", state("TEST2", 5));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        saved.writeTo(new DataOutputStream(bytes), exchangeId -> true);
+
+        StockStateStore restored = new StockStateStore();
+        restored.update("E00002", state("TEST2", 6));
+
+        // --- ACTION
+        int count = restored.restore(new DataInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())), exchangeId -> true);
+
+        // --- ASSERTION
+        assertEquals(1, count);
+        assertTrue(restored.isStale("E00001"));
+        assertFalse(restored.isStale("E00002"));
+        assertEquals(1, restored.staleCount());
+        assertEquals(20, restored.amount("E00001", "TEST2"));
+        assertEquals(6, restored.amount("E00002", "TEST2"));
+
+        restored.update("E00001", state("TEST1", 1));
+        assertFalse(restored.isStale("E00001"));
+        assertEquals(0, restored.staleCount());
+    }
+
+    private static Map<String, Integer> state(Object... pairs) {
+        Map<String, Integer> state = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.length; i += 2)
+            state.put((String) pairs[i], (Integer) pairs[i + 1]);
+        return state;
+    }
+}
@@ -0,0 +1,45 @@
+package com.rokupin.router.service.state;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SymbolTableTest {
+
+    @Test
+    void testIntern_sameNameSameId() {
+        // --- ARRANGEMENT
+        SymbolTable table = new SymbolTable();
+
+        // --- ACTION
+        int first = table.intern("E00001");
+        int second = table.intern("E00002");
+
+        // --- ASSERTION
+        assertEquals(first, table.intern("E00001"));
+        assertNotEquals(first, second);
+        assertEquals("E00002", table.nameOf(second));
+        assertEquals("\"E00002\"", table.jsonNameOf(second));
+        assertEquals(-1, table.idOf("E00003"));
+    }
+
+    @Test
+    void testRelease_idIsReused() {
+        // --- ARRANGEMENT
+        SymbolTable table = new SymbolTable();
+        int released = table.intern("E00001");
+        table.intern("E00002");
+
+        // --- ACTION
+        assertEquals(released, table.release("E00001"));
+        int reused = table.intern("E00003");
+
+        // --- ASSERTION
+        assertEquals(released, reused);
+        assertEquals("E00003", table.nameOf(reused));
+        assertEquals(-1, table.idOf("E00001"));
+        assertEquals(-1, table.release("E00001"));
+        assertEquals(2, table.size());
+        assertEquals(2, table.count());
+    }
+}
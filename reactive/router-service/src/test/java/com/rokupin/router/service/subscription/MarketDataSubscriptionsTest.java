@@ -0,0 +1,56 @@
+package com.rokupin.router.service.subscription;
+
+import com.rokupin.router.service.state.StockStateStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MarketDataSubscriptionsTest {
+
+    @Test
+    void testSubscribe_subscriptionsDontMixExchangesAndInstruments() {
+        // --- ARRANGEMENT
+        MarketDataSubscriptions subscriptions = new MarketDataSubscriptions(new SimpleMeterRegistry());
+        StockStateStore store = new StockStateStore();
+        Map<String, Integer> state = new LinkedHashMap<>();
+        state.put("TEST1", 10);
+        state.put("TEST2", 20);
+        store.update("E00001", state);
+        store.update("E00002", state);
+        store.update("E00003", state);
+
+        // --- ACTION
+        subscriptions.subscribe("B00001", "md-1",
+                new StateFilter(Set.of("E00001"), Set.of("TEST1")));
+        StateFilter filter = subscriptions.subscribe("B00001", "md-2",
+                new StateFilter(Set.of("E00002"), Set.of("TEST2")));
+
+        // --- ASSERTION
+        assertEquals(Set.of("TEST1"), filter.instrumentsOf("E00001"));
+        assertEquals(Set.of("TEST2"), filter.instrumentsOf("E00002"));
+        assertNull(filter.instrumentsOf("E00003"));
+        assertFalse(filter.covers("E00003"));
+        assertEquals("{\"E00001\":{\"TEST1\":10},\"E00002\":{\"TEST2\":20}}",
+                store.toJson(filter::instrumentsOf));
+    }
+
+    @Test
+    void testUnsubscribe_lastSubscriptionGivesWholeState() {
+        // --- ARRANGEMENT
+        MarketDataSubscriptions subscriptions = new MarketDataSubscriptions(new SimpleMeterRegistry());
+        subscriptions.subscribe("B00001", "md-1",
+                new StateFilter(Set.of("E00001"), Set.of("TEST1")));
+        subscriptions.subscribe("B00001", "md-2", StateFilter.ALL);
+
+        // --- ACTION & ASSERTION
+        assertTrue(subscriptions.filterOf("B00001").isAll());
+        assertFalse(subscriptions.unsubscribe("B00001", "md-2").isAll());
+        assertNull(subscriptions.unsubscribe("B00001", "md-1"));
+        assertFalse(subscriptions.isSubscribed("B00001"));
+    }
+}
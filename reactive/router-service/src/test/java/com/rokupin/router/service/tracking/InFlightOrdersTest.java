@@ -0,0 +1,102 @@
+package com.rokupin.router.service.tracking;
+
+import com.rokupin.model.fix.FixRequest;
+import com.rokupin.model.fix.FixResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InFlightOrdersTest {
+    private final List<InFlightOrders> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeTimers() {
+        opened.forEach(InFlightOrders::close);
+    }
+
+    @Test
+    void testComplete_outOfOrderResponsesMatchTheirOrders() throws Exception {
+        // --- ARRANGEMENT
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        InFlightOrders inFlight = inFlight(Duration.ofSeconds(5), meterRegistry);
+        // same broker and session, no ClOrdID
+        FixRequest first = order(inFlight, "B00001", 1);
+        FixRequest second = order(inFlight, "B00001", 2);
+        inFlight.track(first);
+        inFlight.track(second);
+
+        // --- ACTION & ASSERTION
+        assertNotEquals(first.getTrackingId(), second.getTrackingId());
+        assertEquals(2, inFlight.outstanding("E00000"));
+        assertTrue(inFlight.complete(response(second)));
+        assertEquals(1, inFlight.outstanding("E00000"));
+        assertFalse(inFlight.complete(response(second)));
+        assertTrue(inFlight.complete(response(first)));
+        assertEquals(0, inFlight.outstanding("E00000"));
+        assertEquals(1, meterRegistry.get("router.exchange.late-responses").counter().count());
+    }
+
+    @Test
+    void testTimeout_expiredOrderIsRejectedAndItsAnswerIsLate() throws Exception {
+        // --- ARRANGEMENT
+        InFlightOrders inFlight = inFlight(Duration.ofMillis(50), new SimpleMeterRegistry());
+        CompletableFuture<FixRequest> timedOut = new CompletableFuture<>();
+        inFlight.setTimeoutHandler(timedOut::complete);
+        FixRequest order = order(inFlight, "B00001", 1);
+
+        // --- ACTION
+        inFlight.track(order);
+
+        // --- ASSERTION
+        assertSame(order, timedOut.get(5, TimeUnit.SECONDS));
+        assertEquals(0, inFlight.outstanding("E00000"));
+        assertFalse(inFlight.complete(response(order)));
+    }
+
+    @Test
+    void testCloseExchange_returnsOutstandingOrders() throws Exception {
+        // --- ARRANGEMENT
+        InFlightOrders inFlight = inFlight(Duration.ofSeconds(5), new SimpleMeterRegistry());
+        FixRequest kept = order(inFlight, "B00001", 1);
+        FixRequest dropped = order(inFlight, "B00002", 1);
+        inFlight.track(kept);
+        inFlight.track(dropped);
+
+        // --- ACTION
+        inFlight.closeBroker("B00002");
+        List<FixRequest> outstanding = inFlight.closeExchange("E00000");
+
+        // --- ASSERTION
+        assertEquals(List.of(kept), outstanding);
+        assertEquals(0, inFlight.outstanding("E00000"));
+    }
+
+    private InFlightOrders inFlight(Duration timeout, SimpleMeterRegistry meterRegistry) {
+        InFlightOrders inFlight = new InFlightOrders(timeout, meterRegistry);
+        opened.add(inFlight);
+        return inFlight;
+    }
+
+    private static FixRequest order(InFlightOrders inFlight, String broker, int amount) throws Exception {
+        FixRequest request = new FixRequest(broker, "session", "E00000", "TEST1",
+                FixRequest.SIDE_BUY, amount);
+        inFlight.assignTrackingId(request);
+        return request;
+    }
+
+    private static FixResponse response(FixRequest request) throws Exception {
+        FixResponse response = new FixResponse("E00000", request.getSender(),
+                request.getSenderSubId(), request.getInstrument(), request.getAction(),
+                request.getAmount(), FixResponse.MSG_ORD_FILLED, FixResponse.UNSPECIFIED);
+        response.echoRequest(request);
+        return response;
+    }
+}